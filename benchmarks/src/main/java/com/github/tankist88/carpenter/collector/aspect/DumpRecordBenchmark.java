@@ -0,0 +1,100 @@
+package com.github.tankist88.carpenter.collector.aspect;
+
+import com.github.tankist88.carpenter.collector.benchmark.SampleRecords;
+import com.github.tankist88.carpenter.collector.benchmark.SampleRecords.Customer;
+import com.github.tankist88.carpenter.collector.benchmark.SampleRecords.CustomerService;
+import com.github.tankist88.carpenter.collector.dto.MethodCallInfo;
+import com.github.tankist88.carpenter.collector.snapshot.ProviderSnapshot;
+import com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Modifier;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.PREFIX;
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.SG;
+import static com.github.tankist88.carpenter.collector.util.DumpUtils.closeSink;
+
+/**
+ * Cost of handling one captured call on a dump worker, {@code MethodCallHandler.handle}: building the
+ * record from the captured call and writing it, per storage. Providers are generated beforehand, as in
+ * the default SYNC providerGeneration. Every call gets a new key, so FILES write a new file and SEGMENTS
+ * append a record, like for distinct calls of a real run; the dump directory grows accordingly.
+ * <p>
+ * Storage is FILES, or SEGMENTS with the codec after the underscore, FILES are always written with Java
+ * serialization. Every storage runs in its own fork, so it is set before the collector initializes.
+ * The benchmark is in the aspect package to reach the package-private handler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DumpRecordBenchmark {
+    private static final int RECORD_COUNT = 64;
+
+    @Param({"FILES", "SEGMENTS_JAVA", "SEGMENTS_COMPACT"})
+    public String storage;
+
+    private AbstractTraceCollectorAspect.MethodCallHandler handler;
+    private MethodCallInfo[] calls;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        String[] modeAndCodec = storage.split("_");
+        System.setProperty(PREFIX + "storageMode", modeAndCodec[0]);
+        if (modeAndCodec.length > 1) {
+            System.setProperty(PREFIX + "codec", modeAndCodec[1]);
+        }
+        handler = new AbstractTraceCollectorAspect.MethodCallHandler();
+        calls = new MethodCallInfo[RECORD_COUNT];
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            calls[i] = createCall(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        closeSink();
+    }
+
+    /**
+     * Captured call of {@code CustomerService.save}, shaped like {@link SampleRecords#createRecord(long)}.
+     */
+    private static MethodCallInfo createCall(long id) throws NoSuchMethodException {
+        Class clazz = CustomerService.class;
+        Customer customer = SampleRecords.createCustomer(id, 3);
+        TraceAnalyzeDto traceAnalyzeDto = new TraceAnalyzeDto();
+        traceAnalyzeDto.setUpLevelElementKey("main" + (id * 31) + "_com.example.CustomerController_post");
+        traceAnalyzeDto.setUpLevelElementClassName("com.example.CustomerController");
+
+        MethodCallInfo call = new MethodCallInfo();
+        call.setClazz(clazz);
+        call.setDeclaringTypeName(clazz.getName());
+        call.setMethodName("save");
+        call.setParameterTypes(clazz.getMethod("save", Customer.class, boolean.class).getParameterTypes());
+        call.setArgTypes(new Class[] {Customer.class, Boolean.class});
+        call.setArgsSnapshots(new ProviderSnapshot[] {
+                ProviderSnapshot.generated(SG.createDataProviderMethod(customer)),
+                ProviderSnapshot.generated(SG.createDataProviderMethod(Boolean.TRUE))
+        });
+        call.setMethodModifiers(Modifier.PUBLIC);
+        call.setRetType(Customer.class);
+        call.setTraceAnalyze(traceAnalyzeDto);
+        call.setTargetSnapshot(ProviderSnapshot.generated(SG.createFillObjectMethod(new CustomerService())));
+        call.setReturnSnapshot(ProviderSnapshot.generated(SG.createDataProviderMethod(customer)));
+        call.setStartTime(id);
+        return call;
+    }
+
+    @Benchmark
+    public void handle() {
+        long id = next++;
+        MethodCallInfo call = calls[(int) (id & (RECORD_COUNT - 1))];
+        call.setMethodKey("main" + id + "_" + CustomerService.class.getName() + "_save");
+        call.setEndTime(System.nanoTime());
+        handler.handle(call);
+    }
+}
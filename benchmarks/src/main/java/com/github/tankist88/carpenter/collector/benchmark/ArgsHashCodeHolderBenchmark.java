@@ -0,0 +1,79 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import com.github.tankist88.carpenter.collector.util.ArgsHashCodeHolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Call stack bookkeeping of a recursive call chain: every level peeks the caller, pushes itself and
+ * pops on return. {@code stack} is the former {@code ThreadLocal<Stack>} implementation, kept here
+ * for comparison. Depths above 150 overflow the stack. Run with {@code -prof gc} to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ArgsHashCodeHolderBenchmark {
+    private static final String CLASS_NAME = "com.example.TreeService";
+    private static final String METHOD_NAME = "visit";
+
+    @Param({"20", "150", "1000"})
+    public int depth;
+
+    private final ThreadLocal<Stack<Element>> legacy = new ThreadLocal<Stack<Element>>() {
+        @Override
+        protected Stack<Element> initialValue() {
+            return new Stack<Element>();
+        }
+    };
+
+    @Benchmark
+    public int ringStack() {
+        return ringStack(depth);
+    }
+
+    @Benchmark
+    public int stack() {
+        return stack(depth);
+    }
+
+    private int ringStack(int level) {
+        int caller = ArgsHashCodeHolder.peekArgsHashCode();
+        ArgsHashCodeHolder.put(caller * 31 + level, CLASS_NAME, METHOD_NAME);
+        try {
+            return level > 0 ? ringStack(level - 1) : caller;
+        } finally {
+            ArgsHashCodeHolder.pop();
+        }
+    }
+
+    private int stack(int level) {
+        Stack<Element> stack = legacy.get();
+        int caller = stack.size() > 0 ? stack.peek().hash : new Element(0, null, null).hash;
+        if (stack.size() + 1 >= 150) {
+            stack.removeElementAt(0);
+        }
+        stack.push(new Element(caller * 31 + level, CLASS_NAME, METHOD_NAME));
+        try {
+            return level > 0 ? stack(level - 1) : caller;
+        } finally {
+            if (stack.size() > 0) stack.pop();
+        }
+    }
+
+    private static class Element {
+        private final int hash;
+        private final String className;
+        private final String methodName;
+
+        private Element(int hash, String className, String methodName) {
+            this.hash = hash;
+            this.className = className;
+            this.methodName = methodName;
+        }
+    }
+}
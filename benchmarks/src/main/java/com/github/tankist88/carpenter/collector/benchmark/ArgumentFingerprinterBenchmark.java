@@ -0,0 +1,52 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import com.github.tankist88.carpenter.collector.fingerprint.ArgumentFingerprinter;
+import com.github.tankist88.carpenter.collector.fingerprint.FieldCacheFingerprinter;
+import com.github.tankist88.carpenter.collector.fingerprint.IdentityFingerprinter;
+import com.github.tankist88.carpenter.collector.fingerprint.ReflectionFingerprinter;
+import com.github.tankist88.carpenter.collector.fingerprint.ShallowFingerprinter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.fingerprintArgs;
+
+/**
+ * Cost of fingerprinting the arguments of a service call. REFLECTION is the behavior before
+ * the fingerprinters were introduced. Run with {@code -prof gc} to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArgumentFingerprinterBenchmark {
+    @Param({"REFLECTION", "FIELDS", "SHALLOW", "IDENTITY"})
+    public String mode;
+
+    @Param({"3", "50"})
+    public int phones;
+
+    private ArgumentFingerprinter fingerprinter;
+    private Object[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("REFLECTION".equals(mode)) {
+            fingerprinter = new ReflectionFingerprinter();
+        } else if ("FIELDS".equals(mode)) {
+            fingerprinter = new FieldCacheFingerprinter(3, 256);
+        } else if ("SHALLOW".equals(mode)) {
+            fingerprinter = new ShallowFingerprinter();
+        } else {
+            fingerprinter = new IdentityFingerprinter();
+        }
+        args = new Object[] {SampleRecords.createCustomer(1, phones), Boolean.TRUE};
+    }
+
+    @Benchmark
+    public int fingerprintArguments() {
+        return fingerprintArgs(fingerprinter, args);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import org.carpenter.bench.captured.CapturedService;
+import org.carpenter.bench.captured.Category;
+import org.carpenter.bench.captured.Order;
+import org.carpenter.bench.outside.OutsideService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code AbstractTraceCollectorAspect.aroundMethod} on the application thread, per path through it.
+ * Services of {@code org.carpenter.bench} are woven at build time, see benchmarks carpenter.xml.
+ * Captured calls are dropped instead of waiting for dump workers, so dumping doesn't throttle the caller;
+ * its cost is measured by {@link com.github.tankist88.carpenter.collector.aspect.DumpRecordBenchmark}. Run with {@code -prof gc} for allocated bytes per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dcarpenter.collector.overflowPolicy=DROP_NEWEST")
+@State(Scope.Thread)
+public class CollectorOverheadBenchmark {
+    private PlainService plainService;
+    private CapturedService capturedService;
+    private OutsideService outsideService;
+    private Order order;
+    private Category category;
+    private int value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        plainService = new PlainService();
+        capturedService = new CapturedService();
+        outsideService = new OutsideService();
+        order = new Order(1, "Customer 1", 10);
+        category = new Category("root", 3, 3);
+    }
+
+    @Benchmark
+    public int notWoven() {
+        return plainService.small(value++, "name");
+    }
+
+    @Benchmark
+    public int skipped() {
+        return capturedService.compareRegion("south");
+    }
+
+    @Benchmark
+    public int outsideInstance() {
+        return outsideService.small(value++, "name");
+    }
+
+    @Benchmark
+    public int outsideStatic() {
+        return OutsideService.staticSmall(value++, "name");
+    }
+
+    @Benchmark
+    public int capturedInstanceSmall() {
+        return capturedService.small(value++, "name");
+    }
+
+    @Benchmark
+    public int capturedStaticSmall() {
+        return CapturedService.staticSmall(value++, "name");
+    }
+
+    @Benchmark
+    public int capturedMedium() {
+        return capturedService.medium(order);
+    }
+
+    @Benchmark
+    public int capturedDeep() {
+        return capturedService.deep(category);
+    }
+}
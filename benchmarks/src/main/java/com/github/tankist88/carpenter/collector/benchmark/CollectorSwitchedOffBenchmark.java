@@ -0,0 +1,38 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import org.carpenter.bench.captured.CapturedService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a woven call while capture is switched off by {@code carpenter.collector.enabled=false},
+ * compared with the same call not woven.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dcarpenter.collector.enabled=false")
+@State(Scope.Thread)
+public class CollectorSwitchedOffBenchmark {
+    private PlainService plainService;
+    private CapturedService capturedService;
+    private int value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        plainService = new PlainService();
+        capturedService = new CapturedService();
+    }
+
+    @Benchmark
+    public int notWoven() {
+        return plainService.small(value++, "name");
+    }
+
+    @Benchmark
+    public int switchedOff() {
+        return capturedService.small(value++, "name");
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+/**
+ * Same method as the woven services. The collector's own packages are never woven, so this is the baseline.
+ */
+public class PlainService {
+    public int small(int value, String name) {
+        return value + name.length();
+    }
+}
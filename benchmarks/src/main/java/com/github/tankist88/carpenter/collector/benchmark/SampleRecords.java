@@ -0,0 +1,82 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import com.github.tankist88.carpenter.core.dto.argument.GeneratedArgument;
+import com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.SG;
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.createGeneratedArgument;
+import static com.github.tankist88.object2source.util.GenerationUtil.*;
+
+/**
+ * Dump records shaped like the ones the aspect produces for a typical service call.
+ */
+public class SampleRecords {
+    public static class Address {
+        private String city = "Saint Petersburg";
+        private String street = "Nevsky prospekt";
+        private int building = 28;
+    }
+
+    public static class Customer {
+        private long id;
+        private String name;
+        private Date created = new Date(0);
+        private Address address = new Address();
+        private List<String> phones = new ArrayList<String>();
+    }
+
+    public static class CustomerService {
+        private String region = "north-west";
+
+        public Customer save(Customer customer, boolean notify) {
+            return customer;
+        }
+    }
+
+    public static Customer createCustomer(long id, int phones) {
+        Customer customer = new Customer();
+        customer.id = id;
+        customer.name = "Customer " + id;
+        for (int i = 0; i < phones; i++) {
+            customer.phones.add("+7 812 000-00-" + i);
+        }
+        return customer;
+    }
+
+    public static MethodCallTraceInfo createRecord(long id) {
+        Class clazz = CustomerService.class;
+        Customer customer = createCustomer(id, 3);
+        TraceAnalyzeDto traceAnalyzeDto = new TraceAnalyzeDto();
+        traceAnalyzeDto.setUpLevelElementKey("main" + (id * 31) + "_com.example.CustomerController_post");
+        traceAnalyzeDto.setUpLevelElementClassName("com.example.CustomerController");
+
+        List<GeneratedArgument> arguments = new ArrayList<GeneratedArgument>();
+        arguments.add(createGeneratedArgument(Customer.class, SG.createDataProviderMethod(customer), 0));
+        arguments.add(createGeneratedArgument(Boolean.class, SG.createDataProviderMethod(Boolean.TRUE), 0));
+
+        MethodCallTraceInfo record = new MethodCallTraceInfo();
+        record.setClassName(clazz.getName());
+        record.setNearestInstantAbleClass(clazz.getName());
+        record.setDeclaringTypeName(clazz.getName());
+        record.setUnitName("save");
+        record.setMemberClass(clazz.isMemberClass());
+        record.setArguments(arguments);
+        record.setClassModifiers(clazz.getModifiers());
+        record.setMethodModifiers(1);
+        record.setVoidMethod(false);
+        record.setClassHierarchy(getClassHierarchyStr(getClassHierarchy(clazz)));
+        record.setInterfacesHierarchy(getInterfacesHierarchyStr(clazz));
+        record.setKey("main" + id + "_" + clazz.getName() + "_save");
+        record.setTraceAnalyzeData(traceAnalyzeDto);
+        record.setTargetObj(createGeneratedArgument(clazz, SG.createFillObjectMethod(new CustomerService()), 0));
+        record.setReturnArg(createGeneratedArgument(Customer.class, SG.createDataProviderMethod(customer), 0));
+        record.setStartTime(id);
+        record.setEndTime(id + 1000);
+        return record;
+    }
+}
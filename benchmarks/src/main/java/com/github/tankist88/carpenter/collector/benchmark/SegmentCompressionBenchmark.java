@@ -0,0 +1,85 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import com.github.tankist88.carpenter.collector.codec.CodecType;
+import com.github.tankist88.carpenter.collector.compress.BlockCompressor;
+import com.github.tankist88.carpenter.collector.compress.CompressionDictionary;
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.storage.SegmentedTraceLog;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * CPU cost of block compression on the dump write path against the bytes it saves. Bytes written
+ * to segments per record are printed at the end of every trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentCompressionBenchmark {
+    private static final int RECORD_COUNT = 64;
+
+    @Param({"NONE", "DEFLATE", "DEFLATE_DICTIONARY"})
+    public String compression;
+
+    @Param({"JAVA", "COMPACT"})
+    public String codec;
+
+    private File dir;
+    private SegmentedTraceLog log;
+    private MethodCallTraceInfo[] records;
+    private long written;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = new File(System.getProperty("java.io.tmpdir"), "segment_compression_" + System.nanoTime());
+        BlockCompressor compressor = null;
+        if ("DEFLATE".equals(compression)) {
+            compressor = CompressionType.DEFLATE.create(Deflater.BEST_SPEED, null);
+        } else if ("DEFLATE_DICTIONARY".equals(compression)) {
+            byte[] dictionary = CompressionDictionary.build(new String[] {"com.github.tankist88.carpenter.collector.benchmark"});
+            compressor = CompressionType.DEFLATE.create(Deflater.BEST_SPEED, dictionary);
+        }
+        log = new SegmentedTraceLog(
+                dir,
+                64L * 1024 * 1024,
+                1000,
+                1000L,
+                CodecType.valueOf(codec).getCodec(),
+                null,
+                compressor,
+                64 * 1024);
+        records = new MethodCallTraceInfo[RECORD_COUNT];
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            records[i] = SampleRecords.createRecord(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        long diskBytes = 0;
+        for (File file : FileUtils.listFiles(dir, new String[] {"seg"}, false)) {
+            diskBytes += file.length();
+        }
+        System.out.println();
+        System.out.println(compression + "/" + codec + " bytes/record: raw " + written / Math.max(next, 1)
+                + ", on disk " + diskBytes / Math.max(next, 1));
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void writeRecord() throws IOException {
+        MethodCallTraceInfo record = records[next++ & (RECORD_COUNT - 1)];
+        written += log.write(record.getKey(), record.getClassName(), record);
+    }
+}
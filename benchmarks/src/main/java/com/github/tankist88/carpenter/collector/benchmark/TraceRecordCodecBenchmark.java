@@ -0,0 +1,60 @@
+package com.github.tankist88.carpenter.collector.benchmark;
+
+import com.github.tankist88.carpenter.collector.codec.CompactBinaryCodec;
+import com.github.tankist88.carpenter.collector.codec.JavaSerializationCodec;
+import com.github.tankist88.carpenter.collector.codec.StringDictionary;
+import com.github.tankist88.carpenter.collector.codec.TraceRecordCodec;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode throughput of dump record codecs. Bytes per record of each codec are printed
+ * at the end of every trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraceRecordCodecBenchmark {
+    private static final int RECORD_COUNT = 64;
+
+    @Param({"JAVA", "COMPACT"})
+    public String codecName;
+
+    private TraceRecordCodec codec;
+    private StringDictionary dictionary;
+    private MethodCallTraceInfo[] records;
+    private byte[][] encoded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        codec = "JAVA".equals(codecName) ? new JavaSerializationCodec() : new CompactBinaryCodec();
+        dictionary = new StringDictionary();
+        records = new MethodCallTraceInfo[RECORD_COUNT];
+        encoded = new byte[RECORD_COUNT][];
+        long totalBytes = 0;
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            records[i] = SampleRecords.createRecord(i);
+            encoded[i] = codec.encode(records[i], dictionary);
+            totalBytes += encoded[i].length;
+        }
+        System.out.println();
+        System.out.println(codecName + " bytes/record: " + totalBytes / RECORD_COUNT);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(records[next++ & (RECORD_COUNT - 1)], dictionary);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return codec.decode(encoded[next++ & (RECORD_COUNT - 1)], dictionary);
+    }
+}
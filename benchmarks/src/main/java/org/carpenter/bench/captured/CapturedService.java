@@ -0,0 +1,31 @@
+package org.carpenter.bench.captured;
+
+/**
+ * Woven, in allowedPackagesForTests of benchmarks carpenter.xml, so every call is captured.
+ */
+public class CapturedService {
+    private String region = "north-west";
+
+    public static int staticSmall(int value, String name) {
+        return value + name.length();
+    }
+
+    public int small(int value, String name) {
+        return value + name.length();
+    }
+
+    public int medium(Order order) {
+        return order.getItems().size();
+    }
+
+    public int deep(Category category) {
+        return category.getChildren().size();
+    }
+
+    /**
+     * Denied by name, the aspect skips it right away
+     */
+    public int compareRegion(String other) {
+        return region.compareTo(other);
+    }
+}
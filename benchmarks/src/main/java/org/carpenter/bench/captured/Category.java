@@ -0,0 +1,28 @@
+package org.carpenter.bench.captured;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tree of categories, every level has its own orders.
+ */
+public class Category implements Serializable {
+    private String name;
+    private List<Order> orders = new ArrayList<Order>();
+    private List<Category> children = new ArrayList<Category>();
+
+    public Category(String name, int depth, int width) {
+        this.name = name;
+        this.orders.add(new Order(depth, name, 3));
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                children.add(new Category(name + "." + i, depth - 1, width));
+            }
+        }
+    }
+
+    public List<Category> getChildren() {
+        return children;
+    }
+}
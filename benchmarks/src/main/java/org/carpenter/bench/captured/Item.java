@@ -0,0 +1,24 @@
+package org.carpenter.bench.captured;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+public class Item implements Serializable {
+    private String sku;
+    private int quantity;
+    private BigDecimal price;
+
+    public Item(String sku, int quantity, BigDecimal price) {
+        this.sku = sku;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+}
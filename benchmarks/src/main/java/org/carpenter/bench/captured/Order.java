@@ -0,0 +1,24 @@
+package org.carpenter.bench.captured;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Order implements Serializable {
+    private long id;
+    private String customer;
+    private List<Item> items = new ArrayList<Item>();
+
+    public Order(long id, String customer, int items) {
+        this.id = id;
+        this.customer = customer;
+        for (int i = 0; i < items; i++) {
+            this.items.add(new Item("SKU-" + i, i + 1, new BigDecimal(i * 10 + 5)));
+        }
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+}
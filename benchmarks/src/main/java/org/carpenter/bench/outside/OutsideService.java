@@ -0,0 +1,14 @@
+package org.carpenter.bench.outside;
+
+/**
+ * Woven, but outside allowedPackagesForTests: calls are only tracked as possible callers.
+ */
+public class OutsideService {
+    public static int staticSmall(int value, String name) {
+        return value + name.length();
+    }
+
+    public int small(int value, String name) {
+        return value + name.length();
+    }
+}
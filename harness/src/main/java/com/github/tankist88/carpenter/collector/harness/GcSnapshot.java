@@ -0,0 +1,58 @@
+package com.github.tankist88.carpenter.collector.harness;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Totals of garbage collectors and of memory allocated by live threads at one moment. Collection time
+ * is the accumulated time reported by collectors, for stop-the-world collectors it is the pause time.
+ * Allocated bytes are -1 if the JVM doesn't count them.
+ */
+public class GcSnapshot {
+    private final long collections;
+    private final long collectionMillis;
+    private final long allocatedBytes;
+
+    private GcSnapshot(long collections, long collectionMillis, long allocatedBytes) {
+        this.collections = collections;
+        this.collectionMillis = collectionMillis;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public static GcSnapshot take() {
+        long collections = 0;
+        long collectionMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0L, gc.getCollectionCount());
+            collectionMillis += Math.max(0L, gc.getCollectionTime());
+        }
+        return new GcSnapshot(collections, collectionMillis, allocatedBytes());
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return -1L;
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!hotspotBean.isThreadAllocatedMemorySupported() || !hotspotBean.isThreadAllocatedMemoryEnabled()) {
+            return -1L;
+        }
+        long total = 0;
+        for (long bytes : hotspotBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    public long getCollectionMillis() {
+        return collectionMillis;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
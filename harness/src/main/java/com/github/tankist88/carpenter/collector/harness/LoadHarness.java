@@ -0,0 +1,182 @@
+package com.github.tankist88.carpenter.collector.harness;
+
+import org.apache.commons.io.FileUtils;
+import org.carpenter.harness.service.Node;
+import org.carpenter.harness.service.SyntheticService;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tankist88.carpenter.collector.control.CollectorSwitch.SWITCH;
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
+
+/**
+ * Runs the woven {@link SyntheticService} under sustained multi-threaded load, first with capture switched
+ * off by {@link com.github.tankist88.carpenter.collector.control.CollectorSwitch}, then with capture on,
+ * and prints throughput, latency percentiles, dump throughput, dump backlog, GC time and allocation rate
+ * of both phases. Records are written to the dump directory of harness carpenter.xml, clean it between runs.
+ * <p>
+ * Switched off calls still pass through the aspect, so the baseline includes the cost of the switch check,
+ * see {@code CollectorSwitchedOffBenchmark} of the benchmarks module for its size.
+ */
+public class LoadHarness {
+    private static final long BACKLOG_SAMPLE_MILLIS = 100L;
+    private static final long DRAIN_TIMEOUT_MILLIS = 120000L;
+    private static final int CHILDREN = 4;
+
+    private final LoadProfile profile;
+    private final SyntheticService service;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicLong checksum = new AtomicLong();
+
+    public LoadHarness(LoadProfile profile) {
+        this.profile = profile;
+        this.service = new SyntheticService(profile.getDepth(), profile.getFanOut());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        File dumpDir = new File(loadProps().getObjectDumpDir());
+        long dumpSizeBefore = sizeOf(dumpDir);
+        System.out.println("Load profile: " + profile);
+        System.out.println("Dump directory: " + dumpDir.getAbsolutePath());
+
+        LoadHarness harness = new LoadHarness(profile);
+        harness.run("warmup", true, profile.getWarmupSeconds());
+        harness.drain();
+        PhaseResult baseline = harness.run("baseline", false, profile.getDurationSeconds());
+        PhaseResult collector = harness.run("collector", true, profile.getDurationSeconds());
+        long drainMillis = harness.drain();
+
+        System.out.println();
+        System.out.print(PhaseResult.header());
+        System.out.print(baseline.row());
+        System.out.print(collector.row());
+        System.out.println();
+        System.out.println(String.format("Throughput with collector: %.1f%% of baseline",
+                collector.getRequestsPerSecond() * 100.0 / baseline.getRequestsPerSecond()));
+        System.out.println("Dropped records: " + collector.getDroppedRecords()
+                + ", backlog drained in " + drainMillis + " ms after the load stopped");
+        System.out.println("Dump directory grew by " + FileUtils.byteCountToDisplaySize(sizeOf(dumpDir) - dumpSizeBefore));
+        System.exit(0);
+    }
+
+    /**
+     * Runs the load for {@code seconds}, sampling dump backlog meanwhile.
+     */
+    public PhaseResult run(String name, boolean collectorEnabled, int seconds) throws InterruptedException {
+        SWITCH.setEnabled(collectorEnabled);
+        int threads = profile.getThreads();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>();
+        List<Thread> workers = new ArrayList<Thread>();
+
+        long recordsBefore = METRICS.getProcessedRecords();
+        long bytesBefore = METRICS.getBytesWritten();
+        long droppedBefore = METRICS.getDroppedRecords();
+        GcSnapshot gcBefore = GcSnapshot.take();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long sum = 0;
+                    while (System.nanoTime() < deadline) {
+                        long requestStart = System.nanoTime();
+                        long requestId = requestIds.incrementAndGet();
+                        sum += service.handle(requestId, graph(requestId, profile.getGraphSize()));
+                        histogram.record(System.nanoTime() - requestStart);
+                    }
+                    checksum.addAndGet(sum);
+                    done.countDown();
+                    // alive until allocation of all threads is counted
+                    awaitQuietly(release);
+                }
+            }, "harness-" + name + "-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        int maxBacklog = 0;
+        long backlogSum = 0;
+        int samples = 0;
+        while (!done.await(BACKLOG_SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+            int backlog = METRICS.getQueueSize();
+            maxBacklog = Math.max(maxBacklog, backlog);
+            backlogSum += backlog;
+            samples++;
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        GcSnapshot gcAfter = GcSnapshot.take();
+        long records = METRICS.getProcessedRecords() - recordsBefore;
+        long bytes = METRICS.getBytesWritten() - bytesBefore;
+        long dropped = METRICS.getDroppedRecords() - droppedBefore;
+        release.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms) {
+            latency.add(histogram);
+        }
+        PhaseResult result = new PhaseResult(
+                name, elapsedSeconds, latency, records, bytes, dropped,
+                maxBacklog, samples > 0 ? (double) backlogSum / samples : 0.0, gcBefore, gcAfter);
+        System.out.print(PhaseResult.header());
+        System.out.print(result.row());
+        return result;
+    }
+
+    /**
+     * Waits until dump workers take all queued records.
+     * @return wait time in milliseconds
+     */
+    public long drain() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (METRICS.getQueueSize() > 0 && System.currentTimeMillis() - start < DRAIN_TIMEOUT_MILLIS) {
+            Thread.sleep(BACKLOG_SAMPLE_MILLIS / 10);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Built outside of the woven package, so building the graph is not captured.
+     * @return tree of {@code size} nodes with up to 4 children per node
+     */
+    static Node graph(long requestId, int size) {
+        List<Node> nodes = new ArrayList<Node>(size);
+        for (int i = 0; i < size; i++) {
+            Node node = new Node(requestId * size + i, "node-" + i, BigDecimal.valueOf(requestId % 1000 + i, 2));
+            if (i > 0) nodes.get((i - 1) / CHILDREN).children.add(node);
+            nodes.add(node);
+        }
+        return nodes.get(0);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long sizeOf(File dir) {
+        return dir.isDirectory() ? FileUtils.sizeOfDirectory(dir) : 0L;
+    }
+
+    public long getChecksum() {
+        return checksum.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.tankist88.carpenter.collector.harness;
+
+/**
+ * Shape of the synthetic load, read from {@code harness.*} system properties.
+ */
+public class LoadProfile {
+    public static final String PREFIX = "harness.";
+
+    private final int threads;
+    private final int depth;
+    private final int fanOut;
+    private final int graphSize;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+
+    public LoadProfile(int threads, int depth, int fanOut, int graphSize, int warmupSeconds, int durationSeconds) {
+        this.threads = threads;
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.graphSize = graphSize;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                getInt("threads", Runtime.getRuntime().availableProcessors()),
+                getInt("depth", 3),
+                getInt("fanOut", 3),
+                getInt("graphSize", 20),
+                getInt("warmupSeconds", 10),
+                getInt("durationSeconds", 30));
+    }
+
+    private static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null || value.trim().length() == 0) return defaultValue;
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result <= 0) throw new NumberFormatException();
+            return result;
+        } catch (NumberFormatException nfe) {
+            throw new IllegalStateException("Invalid value of " + PREFIX + name + ": " + value, nfe);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    public int getGraphSize() {
+        return graphSize;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * @return woven calls made by one request
+     */
+    public long getCallsPerRequest() {
+        long calls = 0;
+        long level = 1;
+        for (int i = 0; i < depth; i++) {
+            calls += level;
+            level *= fanOut;
+        }
+        return calls;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads
+                + " depth=" + depth
+                + " fanOut=" + fanOut
+                + " graphSize=" + graphSize
+                + " callsPerRequest=" + getCallsPerRequest()
+                + " warmup=" + warmupSeconds + "s"
+                + " duration=" + durationSeconds + "s";
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.tankist88.carpenter.collector.harness;
+
+/**
+ * Measurements of one phase of the harness.
+ */
+public class PhaseResult {
+    private static final String FORMAT = "%-10s %12s %10s %10s %10s %12s %12s %10s %10s %8s %12s%n";
+
+    private final String name;
+    private final double seconds;
+    private final LatencyHistogram latency;
+    private final long records;
+    private final long bytesWritten;
+    private final long droppedRecords;
+    private final int maxBacklog;
+    private final double meanBacklog;
+    private final GcSnapshot gcBefore;
+    private final GcSnapshot gcAfter;
+
+    public PhaseResult(
+            String name,
+            double seconds,
+            LatencyHistogram latency,
+            long records,
+            long bytesWritten,
+            long droppedRecords,
+            int maxBacklog,
+            double meanBacklog,
+            GcSnapshot gcBefore,
+            GcSnapshot gcAfter
+    ) {
+        this.name = name;
+        this.seconds = seconds;
+        this.latency = latency;
+        this.records = records;
+        this.bytesWritten = bytesWritten;
+        this.droppedRecords = droppedRecords;
+        this.maxBacklog = maxBacklog;
+        this.meanBacklog = meanBacklog;
+        this.gcBefore = gcBefore;
+        this.gcAfter = gcAfter;
+    }
+
+    public static String header() {
+        return String.format(FORMAT,
+                "phase", "requests/s", "p50 us", "p99 us", "p999 us", "records/s", "written MB",
+                "backlog", "max", "GC ms", "alloc MB/s");
+    }
+
+    public String row() {
+        long allocated = gcAfter.getAllocatedBytes() - gcBefore.getAllocatedBytes();
+        return String.format(FORMAT,
+                name,
+                format(latency.getCount() / seconds),
+                micros(latency.getPercentile(50.0)),
+                micros(latency.getPercentile(99.0)),
+                micros(latency.getPercentile(99.9)),
+                format(records / seconds),
+                format(bytesWritten / 1024.0 / 1024.0),
+                format(meanBacklog),
+                String.valueOf(maxBacklog),
+                String.valueOf(gcAfter.getCollectionMillis() - gcBefore.getCollectionMillis()),
+                gcBefore.getAllocatedBytes() < 0 ? "n/a" : format(allocated / 1024.0 / 1024.0 / seconds));
+    }
+
+    private static String micros(long nanos) {
+        return format(nanos / 1000.0);
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRequests() {
+        return latency.getCount();
+    }
+
+    public double getRequestsPerSecond() {
+        return latency.getCount() / seconds;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public long getCollections() {
+        return gcAfter.getCollections() - gcBefore.getCollections();
+    }
+}
@@ -0,0 +1,23 @@
+package org.carpenter.harness.service;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node of the object graph passed through a request. Fields are read directly, so walking the graph
+ * doesn't add captured calls.
+ */
+public class Node implements Serializable {
+    public final long id;
+    public final String name;
+    public final BigDecimal amount;
+    public final List<Node> children = new ArrayList<Node>();
+
+    public Node(long id, String name, BigDecimal amount) {
+        this.id = id;
+        this.name = name;
+        this.amount = amount;
+    }
+}
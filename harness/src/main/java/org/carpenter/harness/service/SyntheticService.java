@@ -0,0 +1,41 @@
+package org.carpenter.harness.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Woven, in allowedPackagesForTests of harness carpenter.xml. A request is a call tree of {@code depth}
+ * levels with {@code fanOut} calls of the next level per call, every call takes the object graph of
+ * the request.
+ */
+public class SyntheticService {
+    private final int depth;
+    private final int fanOut;
+
+    public SyntheticService(int depth, int fanOut) {
+        this.depth = depth;
+        this.fanOut = fanOut;
+    }
+
+    public long handle(long requestId, Node graph) {
+        return process(requestId, graph, 1, 0);
+    }
+
+    public long process(long requestId, Node graph, int level, int branch) {
+        // walked inline, a helper method would be captured for every node
+        long sum = 0;
+        List<Node> pending = new ArrayList<Node>();
+        pending.add(graph);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            sum += node.id * level + node.name.length() + node.amount.unscaledValue().longValue();
+            pending.addAll(node.children);
+        }
+        if (level < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                sum += process(requestId, graph, level + 1, branch * fanOut + i);
+            }
+        }
+        return sum ^ requestId;
+    }
+}
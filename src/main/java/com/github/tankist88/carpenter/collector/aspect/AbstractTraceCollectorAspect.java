@@ -0,0 +1,380 @@
+package com.github.tankist88.carpenter.collector.aspect;
+
+import com.github.tankist88.carpenter.collector.dto.MethodCallInfo;
+import com.github.tankist88.carpenter.collector.dump.BoundedDumpPipeline;
+import com.github.tankist88.carpenter.collector.dump.DropListener;
+import com.github.tankist88.carpenter.collector.dump.DumpPipeline;
+import com.github.tankist88.carpenter.collector.dump.DumpThreads;
+import com.github.tankist88.carpenter.collector.dump.PerThreadDumpPipeline;
+import com.github.tankist88.carpenter.collector.dump.PipelineMode;
+import com.github.tankist88.carpenter.collector.dump.RecordHandler;
+import com.github.tankist88.carpenter.collector.keys.KeyMode;
+import com.github.tankist88.carpenter.collector.keys.MethodKeys;
+import com.github.tankist88.carpenter.collector.metrics.SkipReason;
+import com.github.tankist88.carpenter.collector.snapshot.CaptureBudget;
+import com.github.tankist88.carpenter.collector.snapshot.ProviderSnapshot;
+import com.github.tankist88.carpenter.collector.util.ArgsHashCodeHolder;
+import com.github.tankist88.carpenter.collector.util.ClassMetadata;
+import com.github.tankist88.carpenter.collector.util.ThreadSupport;
+import com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.github.tankist88.carpenter.collector.control.CollectorSwitch.SWITCH;
+import static com.github.tankist88.carpenter.collector.governor.OverheadGovernor.GOVERNOR;
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+import static com.github.tankist88.carpenter.collector.util.ClassMetadataCache.getClassMetadata;
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.*;
+import static com.github.tankist88.carpenter.collector.util.DumpUtils.closeSink;
+import static com.github.tankist88.carpenter.collector.util.DumpUtils.saveObjectDump;
+import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
+import static com.github.tankist88.object2source.util.ExtensionUtil.isDynamicProxy;
+import static com.github.tankist88.object2source.util.ExtensionUtil.isInvocationHandler;
+
+/**
+ * Captures calls of methods matched by {@link #scope()}. Concrete aspects define the scope, see
+ * {@link TraceCollectorAspect} advising every method and {@code AspectGenerator} writing an aspect
+ * scoped to allowedPackagesForTests. Collector state is static and shared by all concrete aspects.
+ */
+@Aspect
+public abstract class AbstractTraceCollectorAspect {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractTraceCollectorAspect.class);
+
+    private static final DumpPipeline<MethodCallInfo> DUMP_PIPELINE = createDumpPipeline();
+
+    private static DumpPipeline<MethodCallInfo> createDumpPipeline() {
+        MethodCallHandler handler = new MethodCallHandler();
+        final DumpPipeline<MethodCallInfo> pipeline;
+        if (getPipelineMode() == PipelineMode.PER_THREAD) {
+            pipeline = new PerThreadDumpPipeline<MethodCallInfo>(
+                    "carpenter-dump",
+                    loadProps().getCollectorThreadPoolSize(),
+                    getThreadBufferCapacity(),
+                    getOverflowPolicy(),
+                    getSampleRate(),
+                    getBlockTimeoutMillis(),
+                    getFlushBatchSize(),
+                    handler,
+                    dumpThreads());
+        } else {
+            pipeline = new BoundedDumpPipeline<MethodCallInfo>(
+                    "carpenter-dump",
+                    loadProps().getCollectorThreadPoolSize(),
+                    getQueueCapacity(),
+                    getOverflowPolicy(),
+                    getSampleRate(),
+                    getBlockTimeoutMillis(),
+                    handler,
+                    dumpThreads());
+        }
+        METRICS.setPipeline(pipeline);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.shutdown(getShutdownTimeoutMillis());
+                closeSink();
+                METRICS.writeTextDump();
+            }
+        }, "carpenter-dump-shutdown"));
+        return pipeline;
+    }
+
+    /**
+     * Saves records on dump workers, releases arena memory of dropped records. Package-private for
+     * {@code DumpRecordBenchmark}.
+     */
+    static class MethodCallHandler implements RecordHandler<MethodCallInfo>, DropListener<MethodCallInfo> {
+        @Override
+        public void handle(MethodCallInfo info) {
+            // end time is taken right before the record is submitted
+            METRICS.getQueueLatency().stop(info.getEndTime());
+            long workerStart = GOVERNOR.workerStart();
+            try {
+                saveMethodCallInfo(info);
+            } finally {
+                releaseSnapshots(info);
+                GOVERNOR.recordWorker(info.getStaticPart(), workerStart);
+            }
+        }
+
+        @Override
+        public void dropped(MethodCallInfo info) {
+            releaseSnapshots(info);
+        }
+    }
+
+    private static DumpThreads dumpThreads() {
+        DumpThreads threads = getDumpThreads();
+        if (threads == DumpThreads.VIRTUAL && !ThreadSupport.isVirtualThreadsSupported()) {
+            logger.warn("Virtual dump threads require Java 21, platform threads are used");
+            return DumpThreads.PLATFORM;
+        }
+        return threads;
+    }
+
+    /**
+     * Join points advised by the collector, library and JDK methods are excluded anyway.
+     */
+    @Pointcut
+    public abstract void scope();
+
+    @Pointcut("execution(* com.github.tankist88.carpenter.collector..*(..))")
+    public void thisLib() {
+    }
+
+    @Pointcut("execution(* com.github.tankist88.carpenter.core..*(..))")
+    public void thisCoreLib() {
+    }
+
+    @Pointcut("execution(* com.github.tankist88.object2source..*(..))")
+    public void object2source() {
+    }
+
+    @Pointcut("execution(* java..*(..))")
+    public void java() {
+    }
+
+    @Pointcut("execution(* javax..*(..))")
+    public void javax() {
+    }
+
+    @Pointcut("execution(* sun..*(..))")
+    public void sun() {
+    }
+
+    @Pointcut("execution(* com.sun..*(..))")
+    public void comsun() {
+    }
+
+    @Pointcut("execution(* org.aspectj..*(..))")
+    public void aspectLibParts() {
+    }
+
+    @Pointcut("execution(* *(..))")
+    public void callMethod() {
+    }
+
+    @Around("scope() && " +
+            "callMethod() && " +
+            "!thisLib() && " +
+            "!thisCoreLib() && " +
+            "!object2source() && " +
+            "!java() && " +
+            "!javax() && " +
+            "!sun() && " +
+            "!comsun() && " +
+            "!aspectLibParts()")
+    public Object aroundMethod(ProceedingJoinPoint pjp) throws Throwable {
+        // capture switched off: one volatile read and proceed
+        if (!SWITCH.isEnabled()) return pjp.proceed();
+        JoinPoint.StaticPart staticPart = pjp.getStaticPart();
+        if (!SWITCH.isEnabled(staticPart)) return pjp.proceed();
+        SkipReason skipReason = FILTER.getSkipReason(staticPart);
+
+        String callerClassName = null;
+        String callerMethodName = null;
+        int callerArgsHashCode = 0;
+        long callerMethodId = 0;
+        int argsHashCode = 0;
+        ProviderSnapshot[] argsSnapshots = null;
+        ProviderSnapshot targetSnapshot = null;
+        boolean pushed = false;
+        int targetHashCode = 0;
+        long startTime = 0;
+        long captureNanos = 0;
+        long requestStart = 0;
+
+        if (skipReason == null) {
+            Class joinClass = getJoinClass(pjp);
+            callerClassName = ArgsHashCodeHolder.peekClassName();
+            callerMethodName = ArgsHashCodeHolder.peekMethodName();
+            callerArgsHashCode = ArgsHashCodeHolder.peekArgsHashCode();
+            boolean allowed = FILTER.allowedPackageForGen(staticPart, joinClass) ||
+                              FILTER.allowedPackageForGen(callerClassName);
+            if (!allowed || (!isDynamicProxy(joinClass) && !isInvocationHandler(joinClass))) {
+                Object[] args = pjp.getArgs();
+                if (allowed) {
+                    long fingerprintStart = METRICS.getFingerprintTimer().start();
+                    argsHashCode = fingerprintArgs(FINGERPRINTER, args);
+                    METRICS.getFingerprintTimer().stop(fingerprintStart);
+                } else {
+                    argsHashCode = fingerprintArgs(OUTSIDE_FINGERPRINTER, args);
+                    METRICS.recordSkip(SkipReason.PACKAGE);
+                }
+                // sampled before any provider is generated
+                if (allowed && !SAMPLER.sample(staticPart, 31 * argsHashCode + callerArgsHashCode)) {
+                    METRICS.recordSkip(SkipReason.SAMPLED_OUT);
+                } else if (allowed && !GOVERNOR.admit(staticPart)) {
+                    METRICS.recordSkip(SkipReason.THROTTLED);
+                } else if (allowed) {
+                    startTime = System.nanoTime();
+                    if (KEY_MODE == KeyMode.IDS) {
+                        callerMethodId = ArgsHashCodeHolder.peekMethodId();
+                    }
+                    CaptureBudget.MethodBudget budget = BUDGET.forMethod(staticPart, args.length);
+                    if (pjp.getTarget() != null) {
+                        // Target object can not be, for example for static calls
+                        targetSnapshot = takeFillObjectSnapshot(pjp.getTarget(), budget);
+                        long fingerprintStart = METRICS.getFingerprintTimer().start();
+                        targetHashCode = FINGERPRINTER.fingerprint(pjp.getTarget());
+                        METRICS.getFingerprintTimer().stop(fingerprintStart);
+                    }
+                    argsSnapshots = new ProviderSnapshot[args.length];
+                    for (int i = 0; i < args.length; i++) {
+                        argsSnapshots[i] = takeDataProviderSnapshot(args[i], budget, i);
+                    }
+                    METRICS.recordCapture(staticPart);
+                    if (GOVERNOR.isEnabled()) {
+                        captureNanos = System.nanoTime() - startTime;
+                    }
+                }
+                ArgsHashCodeHolder.put(argsHashCode, joinClass.getName(), pjp.getSignature().getName());
+                pushed = true;
+                if (GOVERNOR.isEnabled() && ArgsHashCodeHolder.depth() == 1) {
+                    // outermost woven call of the thread, its time is the request time
+                    requestStart = System.nanoTime();
+                }
+            } else {
+                METRICS.recordSkip(SkipReason.PROXY);
+            }
+        } else {
+            METRICS.recordSkip(skipReason);
+        }
+
+        Object ret;
+        boolean submitted = false;
+        try {
+            try {
+                ret = pjp.proceed();
+            } finally {
+                if (pushed) {
+                    ArgsHashCodeHolder.pop();
+                }
+                if (requestStart != 0) {
+                    GOVERNOR.recordRequest(System.nanoTime() - requestStart);
+                }
+            }
+
+            if (argsSnapshots != null) {
+                // if argsSnapshots presented, will be save call info, otherwise not allowed method call for save
+                long logStart = GOVERNOR.isEnabled() ? System.nanoTime() : 0L;
+                logMethodCall(
+                        pjp,
+                        callerClassName,
+                        callerMethodName,
+                        callerArgsHashCode,
+                        callerMethodId,
+                        argsHashCode,
+                        argsSnapshots,
+                        ret,
+                        targetSnapshot,
+                        targetHashCode,
+                        startTime);
+                submitted = true;
+                if (GOVERNOR.isEnabled()) {
+                    GOVERNOR.recordInline(staticPart, captureNanos + System.nanoTime() - logStart);
+                }
+            }
+        } finally {
+            if (argsSnapshots != null && !submitted) {
+                // the method or the capture threw, the record is never submitted to free the arena memory
+                releaseSnapshots(argsSnapshots, targetSnapshot);
+            }
+        }
+
+        return ret;
+    }
+
+    private void logMethodCall(
+            JoinPoint joinPoint,
+            String callerClassName,
+            String callerMethodName,
+            int callerArgsHashCode,
+            long callerMethodId,
+            int ownArgsHashCode,
+            ProviderSnapshot[] argsSnapshots,
+            Object ret,
+            ProviderSnapshot targetSnapshot,
+            int targetHashCode,
+            long startTime
+    ) {
+        String threadName = null;
+        TraceAnalyzeDto traceAnalyzeDto = new TraceAnalyzeDto();
+        if (KEY_MODE == KeyMode.NAMES) {
+            threadName = ThreadSupport.threadKey(Thread.currentThread());
+            String callerThreadKey = threadName + callerArgsHashCode;
+            traceAnalyzeDto.setUpLevelElementKey(getMethodKey(callerClassName, callerMethodName, callerThreadKey));
+        }
+        traceAnalyzeDto.setUpLevelElementClassName(callerClassName);
+        final MethodCallInfo info = createMethodCallInfo(
+                joinPoint,
+                argsSnapshots,
+                ret,
+                ownArgsHashCode,
+                traceAnalyzeDto,
+                threadName,
+                targetSnapshot,
+                targetHashCode,
+                startTime);
+        info.setCallerMethodId(callerMethodId);
+        info.setCallerArgsHashCode(callerArgsHashCode);
+        dumpMethodCallInfo(info);
+    }
+
+    private void dumpMethodCallInfo(MethodCallInfo info) {
+        DUMP_PIPELINE.submit(info);
+    }
+
+    private static void saveMethodCallInfo(MethodCallInfo info) {
+        if (KEY_MODE == KeyMode.IDS) {
+            info.setMethodKey(MethodKeys.key(info.getThreadId(), info.getMethodId(), info.getArgsHashCode()));
+            info.getTraceAnalyze().setUpLevelElementKey(
+                    MethodKeys.key(info.getThreadId(), info.getCallerMethodId(), info.getCallerArgsHashCode()));
+        }
+        ClassMetadata metadata = getClassMetadata(info.getClazz());
+        MethodCallTraceInfo targetMethod = new MethodCallTraceInfo();
+        metadata.applyTo(targetMethod, info.getClazz());
+        targetMethod.setDeclaringTypeName(info.getDeclaringTypeName());
+        targetMethod.setUnitName(info.getMethodName());
+        targetMethod.setArguments(
+                createGeneratedArgumentList(
+                        info.getClazz(),
+                        info.getParameterTypes(),
+                        info.getArgTypes(),
+                        info.getMethodName(),
+                        createProviders(info.getArgsSnapshots())));
+        targetMethod.setMethodModifiers(info.getMethodModifiers());
+        targetMethod.setVoidMethod(info.getRetType().equals(Void.TYPE));
+        targetMethod.setKey(info.getMethodKey());
+        targetMethod.setTraceAnalyzeData(info.getTraceAnalyze());
+        targetMethod.setTargetObj(createGeneratedArgument(info.getClazz(), createProvider(info.getTargetSnapshot()), info.getTargetHashCode()));
+        targetMethod.setReturnArg(createGeneratedArgument(info.getRetType(), createProvider(info.getReturnSnapshot()), info.getReturnArgHashCode()));
+        targetMethod.setStartTime(info.getStartTime());
+        targetMethod.setEndTime(info.getEndTime());
+        targetMethod.setClassHashCode(info.getTargetHashCode());
+        if (KEY_MODE == KeyMode.IDS) {
+            String recordKey = MethodKeys.recordKey(
+                    info.getThreadId(),
+                    info.getMethodId(),
+                    info.getArgsHashCode(),
+                    info.getCallerMethodId(),
+                    info.getCallerArgsHashCode(),
+                    metadata.getServiceFieldsHashCode(info.getClazz()));
+            saveObjectDump(targetMethod, recordKey, metadata.getClassName());
+        } else {
+            saveObjectDump(
+                    targetMethod,
+                    info.getMethodKey(),
+                    metadata.getClassName(),
+                    info.getTraceAnalyze().getUpLevelElementKey(),
+                    metadata.getServiceFieldsHashCode(info.getClazz()));
+        }
+    }
+}
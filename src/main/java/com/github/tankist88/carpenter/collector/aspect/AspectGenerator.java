@@ -0,0 +1,102 @@
+package com.github.tankist88.carpenter.collector.aspect;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
+
+/**
+ * Writes source of a concrete {@link AbstractTraceCollectorAspect} scoped to execution of methods of
+ * allowedPackagesForTests and optional caller packages, so classes of other libraries are not woven at all.
+ * Callers outside of the scope are not woven either, list their packages if records need them as
+ * up level calls.
+ * <p>
+ * Usage: {@code AspectGenerator <output dir> <aspect class name> [caller packages separated by commas]}
+ */
+public class AspectGenerator {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AspectGenerator <output dir> <aspect class name> [caller packages]");
+            System.exit(2);
+        }
+        Set<String> packages = new LinkedHashSet<String>();
+        for (String packageName : loadProps().getAllowedPackagesForTests()) {
+            packages.add(packageName);
+        }
+        if (args.length > 2) {
+            for (String packageName : args[2].split(",")) {
+                packages.add(packageName);
+            }
+        }
+        File file = write(new File(args[0]), args[1], packages.toArray(new String[packages.size()]));
+        System.out.println("Aspect written to " + file.getAbsolutePath());
+    }
+
+    /**
+     * @return written source file
+     */
+    public static File write(File outputDir, String className, String[] packages) throws IOException {
+        File file = new File(outputDir, className.replace('.', '/') + ".java");
+        FileUtils.writeStringToFile(file, generate(className, packages), "UTF-8");
+        return file;
+    }
+
+    public static String generate(String className, String[] packages) {
+        if (!isQualifiedName(className)) throw new IllegalArgumentException("Invalid class name " + className);
+        int dot = className.lastIndexOf('.');
+        StringBuilder sb = new StringBuilder();
+        if (dot > 0) {
+            sb.append("package ").append(className.substring(0, dot)).append(";\n\n");
+        }
+        sb.append("import ").append(AbstractTraceCollectorAspect.class.getName()).append(";\n");
+        sb.append("import org.aspectj.lang.annotation.Aspect;\n");
+        sb.append("import org.aspectj.lang.annotation.Pointcut;\n\n");
+        sb.append("/**\n * Generated by ").append(AspectGenerator.class.getName()).append(".\n */\n");
+        sb.append("@Aspect\n");
+        sb.append("public class ").append(className.substring(dot + 1))
+                .append(" extends ").append(AbstractTraceCollectorAspect.class.getSimpleName()).append(" {\n");
+        sb.append("    @Override\n");
+        sb.append("    @Pointcut(\"");
+        List<String> pointcuts = scopePointcuts(packages);
+        for (int i = 0; i < pointcuts.size(); i++) {
+            if (i > 0) sb.append(" || \" +\n            \"");
+            sb.append(pointcuts.get(i));
+        }
+        sb.append("\")\n");
+        sb.append("    public void scope() {\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    static List<String> scopePointcuts(String[] packages) {
+        List<String> result = new ArrayList<String>();
+        for (String packageName : packages) {
+            String name = packageName.trim();
+            if (name.endsWith(".*")) name = name.substring(0, name.length() - 2);
+            if (name.endsWith(".")) name = name.substring(0, name.length() - 1);
+            if (name.length() == 0) continue;
+            if (!isQualifiedName(name)) throw new IllegalArgumentException("Invalid package " + packageName);
+            String pointcut = "execution(* " + name + "..*(..))";
+            if (!result.contains(pointcut)) result.add(pointcut);
+        }
+        if (result.isEmpty()) throw new IllegalArgumentException("No packages to weave");
+        return result;
+    }
+
+    private static boolean isQualifiedName(String name) {
+        for (String part : name.split("\\.", -1)) {
+            if (part.length() == 0 || !Character.isJavaIdentifierStart(part.charAt(0))) return false;
+            for (int i = 1; i < part.length(); i++) {
+                if (!Character.isJavaIdentifierPart(part.charAt(i))) return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-256 hash of a blob body. Written to records in place of the body.
+ */
+public class BlobRef implements Externalizable {
+    public static final int HASH_LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException nsae) {
+                throw new IllegalStateException(nsae);
+            }
+        }
+    };
+
+    private byte[] hash;
+    private int hashCode;
+
+    public BlobRef() {
+        // for Externalizable
+    }
+
+    public BlobRef(byte[] hash) {
+        setHash(hash);
+    }
+
+    public static BlobRef of(byte[] body) {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        return new BlobRef(digest.digest(body));
+    }
+
+    public byte[] getHash() {
+        return hash;
+    }
+
+    private void setHash(byte[] hash) {
+        this.hash = hash;
+        this.hashCode = Arrays.hashCode(hash);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.write(hash);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte[] hash = new byte[HASH_LENGTH];
+        in.readFully(hash);
+        setHash(hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(hash, ((BlobRef) o).hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(HASH_LENGTH * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
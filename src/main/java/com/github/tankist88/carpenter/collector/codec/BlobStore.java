@@ -0,0 +1,17 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import java.io.IOException;
+
+/**
+ * Content-addressed storage of values repeated across records. Every distinct body is stored once.
+ */
+public interface BlobStore {
+    /**
+     * Stores body unless body with the same hash is already stored.
+     *
+     * @return reference to the body
+     */
+    BlobRef put(byte[] body) throws IOException;
+
+    byte[] get(BlobRef ref) throws IOException;
+}
@@ -0,0 +1,25 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+public enum CodecType {
+    JAVA(new JavaSerializationCodec()),
+    COMPACT(new CompactBinaryCodec());
+
+    private final TraceRecordCodec codec;
+
+    CodecType(TraceRecordCodec codec) {
+        this.codec = codec;
+    }
+
+    public TraceRecordCodec getCodec() {
+        return codec;
+    }
+
+    public static TraceRecordCodec forPayloadFormat(byte payloadFormat) {
+        for (CodecType type : values()) {
+            if (type.codec.getPayloadFormat() == payloadFormat) {
+                return type.codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payload format " + payloadFormat);
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import com.github.tankist88.object2source.dto.ProviderResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Java serialization without its per-stream overhead. Records of carpenter-core
+ * ({@code MethodCallTraceInfo}, {@code GeneratedArgument}, {@code TraceAnalyzeDto}) are mostly
+ * repeated class names, hierarchies and interface lists, which standard serialization writes
+ * again in every record together with full class descriptors. This codec
+ * <ul>
+ *     <li>writes a class descriptor as the dictionary id of the class name and its serialVersionUID,
+ *     the field layout is taken from the local class when reading, so a local class of another
+ *     serialVersionUID fails with {@link InvalidClassException} like in standard serialization;</li>
+ *     <li>replaces repeated strings of moderate length with the {@link DictionaryString} id of them,
+ *     shorter strings are smaller inline;</li>
+ *     <li>omits the stream header.</li>
+ * </ul>
+ * If a {@link BlobStore} is given, every {@link ProviderResult} is serialized separately, put into
+ * the store and written to the record as a {@link BlobRef}. Data providers of the same objects
+ * repeat in many records, this way their source is stored once.
+ * The field layout of the records stays owned by carpenter-core, so no per-class code is needed here.
+ */
+public class CompactBinaryCodec implements TraceRecordCodec {
+    public static final byte PAYLOAD_FORMAT = 1;
+    public static final byte PAYLOAD_FORMAT_BLOBS = 2;
+
+    /**
+     * A {@link DictionaryString} takes about 10 bytes of the stream.
+     */
+    static final int MIN_INTERNED_LENGTH = 12;
+
+    private final BlobStore blobStore;
+
+    public CompactBinaryCodec() {
+        this(null);
+    }
+
+    public CompactBinaryCodec(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public byte getPayloadFormat() {
+        return blobStore != null ? PAYLOAD_FORMAT_BLOBS : PAYLOAD_FORMAT;
+    }
+
+    @Override
+    public byte[] encode(Serializable record, StringDictionary dictionary) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+        CompactObjectOutputStream oos = new CompactObjectOutputStream(bos, dictionary, blobStore);
+        oos.writeObject(record);
+        oos.close();
+        return bos.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] payload, StringDictionary dictionary) throws IOException {
+        CompactObjectInputStream ois = new CompactObjectInputStream(new ByteArrayInputStream(payload), dictionary, blobStore);
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException("Can't decode record", cnfe);
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static class CompactObjectOutputStream extends ObjectOutputStream {
+        private final StringDictionary dictionary;
+        private final BlobStore blobStore;
+
+        private CompactObjectOutputStream(OutputStream out, StringDictionary dictionary, BlobStore blobStore) throws IOException {
+            super(out);
+            this.dictionary = dictionary;
+            this.blobStore = blobStore;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected void writeStreamHeader() {
+            // header is the same for every record
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            int id = dictionary.idOf(desc.getName());
+            DictionaryString.writeVarInt(this, id + 1);
+            if (id < 0) {
+                writeUTF(desc.getName());
+            }
+            writeLong(desc.getSerialVersionUID());
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof String && ((String) obj).length() >= MIN_INTERNED_LENGTH) {
+                int id = dictionary.repeatedIdOf((String) obj);
+                if (id >= 0) return new DictionaryString(id);
+            } else if (blobStore != null && obj instanceof ProviderResult) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+                ObjectOutputStream oos = new ObjectOutputStream(bos);
+                oos.writeObject(obj);
+                oos.close();
+                return blobStore.put(bos.toByteArray());
+            }
+            return obj;
+        }
+    }
+
+    private static class CompactObjectInputStream extends ObjectInputStream {
+        private final StringDictionary dictionary;
+        private final BlobStore blobStore;
+
+        private CompactObjectInputStream(InputStream in, StringDictionary dictionary, BlobStore blobStore) throws IOException {
+            super(in);
+            this.dictionary = dictionary;
+            this.blobStore = blobStore;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected void readStreamHeader() {
+            // not written
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            int id = DictionaryString.readVarInt(this) - 1;
+            String name = id >= 0 ? dictionary.get(id) : readUTF();
+            long serialVersionUID = readLong();
+            ObjectStreamClass desc = ObjectStreamClass.lookupAny(loadClass(name));
+            if (desc.getSerialVersionUID() != serialVersionUID) {
+                throw new InvalidClassException(name, "local class incompatible: stream classdesc serialVersionUID = "
+                        + serialVersionUID + ", local class serialVersionUID = " + desc.getSerialVersionUID());
+            }
+            return desc;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            return loadClass(desc.getName());
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof DictionaryString) {
+                return dictionary.get(((DictionaryString) obj).getId());
+            } else if (obj instanceof BlobRef) {
+                if (blobStore == null) throw new IOException("Record refers to blob store " + obj);
+                return readBlob(blobStore.get((BlobRef) obj));
+            }
+            return obj;
+        }
+
+        private static Object readBlob(byte[] body) throws IOException {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(body)) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    try {
+                        return loadClass(desc.getName());
+                    } catch (ClassNotFoundException cnfe) {
+                        // primitive types
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            try {
+                return ois.readObject();
+            } catch (ClassNotFoundException cnfe) {
+                throw new IOException("Can't decode blob", cnfe);
+            } finally {
+                ois.close();
+            }
+        }
+
+        private static Class<?> loadClass(String name) throws ClassNotFoundException {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader == null) loader = CompactBinaryCodec.class.getClassLoader();
+            return Class.forName(name, false, loader);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Stands in for an interned string inside a {@link CompactBinaryCodec} stream. Public with a no-arg
+ * constructor only because {@link Externalizable} requires it.
+ */
+public class DictionaryString implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private int id;
+
+    public DictionaryString() {
+    }
+
+    DictionaryString(int id) {
+        this.id = id;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeVarInt(out, id);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        id = readVarInt(in);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 28) throw new IOException("Malformed varint");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Plain Java serialization, the format of .obj files read by carpenter-generator. Doesn't use dictionary.
+ */
+public class JavaSerializationCodec implements TraceRecordCodec {
+    public static final byte PAYLOAD_FORMAT = 0;
+
+    @Override
+    public byte getPayloadFormat() {
+        return PAYLOAD_FORMAT;
+    }
+
+    @Override
+    public byte[] encode(Serializable record, StringDictionary dictionary) {
+        return SerializationUtils.serialize(record);
+    }
+
+    @Override
+    public Object decode(byte[] payload, StringDictionary dictionary) throws IOException {
+        try {
+            return SerializationUtils.deserialize(payload);
+        } catch (SerializationException sex) {
+            throw new IOException("Can't decode record", sex);
+        }
+    }
+}
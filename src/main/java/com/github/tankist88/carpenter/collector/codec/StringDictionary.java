@@ -0,0 +1,105 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense id to string table shared by all encoders of one trace log. Only short strings are interned
+ * and the number of entries is bounded, unique strings like generated source are always written inline.
+ * Values of records are interned on their second occurrence, see {@link #repeatedIdOf(String)}, so strings
+ * which never repeat, like keys of single calls, don't fill the table.
+ * Ids are assigned under a lock, lookups of known strings are lock-free.
+ */
+public class StringDictionary {
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    public static final int DEFAULT_MAX_STRING_LENGTH = 512;
+
+    private final int maxEntries;
+    private final int maxStringLength;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentHashMap<String, Boolean> seenOnce = new ConcurrentHashMap<String, Boolean>();
+
+    private volatile String[] entries = new String[256];
+    private volatile int size;
+
+    public StringDictionary() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_STRING_LENGTH);
+    }
+
+    public StringDictionary(int maxEntries, int maxStringLength) {
+        this.maxEntries = maxEntries;
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * @return id of string, -1 if string can't be interned
+     */
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        if (value.length() > maxStringLength || size >= maxEntries) return -1;
+        return add(value);
+    }
+
+    /**
+     * Same as {@link #idOf(String)} for strings seen before, a string seen for the first time is only remembered.
+     * @return id of string, -1 if string is not interned
+     */
+    public int repeatedIdOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        if (value.length() > maxStringLength || size >= maxEntries) return -1;
+        if (seenOnce.putIfAbsent(value, Boolean.TRUE) == null) {
+            // bounded like the table, strings seen once long ago are forgotten
+            if (seenOnce.size() > maxEntries) seenOnce.clear();
+            return -1;
+        }
+        seenOnce.remove(value);
+        return add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        if (size >= maxEntries) return -1;
+        ensureCapacity(size + 1);
+        int newId = size;
+        entries[newId] = value;
+        // size first: a writer which got the id from another thread must find it below size()
+        size = newId + 1;
+        ids.put(value, newId);
+        return newId;
+    }
+
+    /**
+     * Registers entry read from storage.
+     */
+    public synchronized void define(int id, String value) {
+        ensureCapacity(id + 1);
+        entries[id] = value;
+        if (id >= size) size = id + 1;
+        ids.put(value, id);
+    }
+
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown dictionary id " + id);
+        }
+        String value = entries[id];
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown dictionary id " + id);
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > entries.length) {
+            String[] newEntries = new String[Math.max(capacity, entries.length * 2)];
+            System.arraycopy(entries, 0, newEntries, 0, entries.length);
+            entries = newEntries;
+        }
+    }
+}
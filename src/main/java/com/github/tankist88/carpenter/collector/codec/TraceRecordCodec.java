@@ -0,0 +1,19 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Converts dump records to bytes and back. Codecs may move repeated strings into a {@link StringDictionary}
+ * owned by the storage; the storage writes new dictionary entries ahead of the records using them.
+ */
+public interface TraceRecordCodec {
+    /**
+     * @return payload format id stored in segment header
+     */
+    byte getPayloadFormat();
+
+    byte[] encode(Serializable record, StringDictionary dictionary) throws IOException;
+
+    Object decode(byte[] payload, StringDictionary dictionary) throws IOException;
+}
@@ -0,0 +1,118 @@
+package com.github.tankist88.carpenter.collector.compact;
+
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.carpenter.collector.storage.SegmentedTraceLogReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a directory written by {@link DumpCompactor}. Records are streamed package by package with only one
+ * segment open at a time, records of a single key are looked up through the index of their package,
+ * see {@link #reader(String)}.
+ */
+public class CompactedDumpReader {
+    private final File dir;
+
+    public CompactedDumpReader(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return sorted names of compacted packages
+     */
+    public List<String> getPackages() {
+        List<String> packages = new ArrayList<String>();
+        scan(dir, "", packages);
+        Collections.sort(packages);
+        return packages;
+    }
+
+    private static void scan(File dir, String packageName, List<String> packages) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                String name = packageName.length() > 0 ? packageName + "." + file.getName() : file.getName();
+                if (!new SegmentedTraceLogReader(file).getSegments().isEmpty()) {
+                    packages.add(name);
+                }
+                scan(file, name, packages);
+            }
+        }
+    }
+
+    public SegmentedTraceLogReader reader(String packageName) {
+        return new SegmentedTraceLogReader(new File(dir, packageName.replace('.', File.separatorChar)));
+    }
+
+    /**
+     * Iterates over records of all packages. Every key occurs once per package.
+     */
+    public RecordIterator iterator() {
+        return new RecordIterator(this, getPackages());
+    }
+
+    public static class RecordIterator implements Iterator<TraceRecord>, Closeable {
+        private final CompactedDumpReader reader;
+        private final Iterator<String> packages;
+        private SegmentedTraceLogReader.RecordIterator current;
+        private SegmentedTraceLogReader.RecordIterator last;
+
+        RecordIterator(CompactedDumpReader reader, List<String> packages) {
+            this.reader = reader;
+            this.packages = packages.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    // readObject() of the last record decodes its payload without the segment
+                    close();
+                }
+                if (!packages.hasNext()) return false;
+                current = reader.reader(packages.next()).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public TraceRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            last = current;
+            return current.next();
+        }
+
+        /**
+         * Decodes payload of the record last returned by {@link #next()}.
+         */
+        public Object readObject() throws IOException {
+            if (last == null) throw new IllegalStateException("next() was not called");
+            return last.readObject();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException iex) {
+                    throw new IllegalStateException("Can't close trace segment", iex);
+                }
+                current = null;
+            }
+        }
+    }
+}
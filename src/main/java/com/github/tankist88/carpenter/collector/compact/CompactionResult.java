@@ -0,0 +1,63 @@
+package com.github.tankist88.carpenter.collector.compact;
+
+public class CompactionResult {
+    private int packages;
+    private long inputRecords;
+    private long outputRecords;
+    private long outputBytes;
+
+    void addPackage() {
+        packages++;
+    }
+
+    void addInputRecord() {
+        inputRecords++;
+    }
+
+    void addOutputRecord(int payloadBytes) {
+        outputRecords++;
+        outputBytes += payloadBytes;
+    }
+
+    void add(CompactionResult other) {
+        packages += other.packages;
+        inputRecords += other.inputRecords;
+        outputRecords += other.outputRecords;
+        outputBytes += other.outputBytes;
+    }
+
+    public int getPackages() {
+        return packages;
+    }
+
+    public long getInputRecords() {
+        return inputRecords;
+    }
+
+    public long getOutputRecords() {
+        return outputRecords;
+    }
+
+    /**
+     * @return records replaced by a larger record with the same key
+     */
+    public long getDuplicates() {
+        return inputRecords - outputRecords;
+    }
+
+    /**
+     * @return size of kept payloads before compression
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "packages: " + packages
+                + ", input records: " + inputRecords
+                + ", output records: " + outputRecords
+                + ", duplicates: " + getDuplicates()
+                + ", payload bytes: " + outputBytes;
+    }
+}
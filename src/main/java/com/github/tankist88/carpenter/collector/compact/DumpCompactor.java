@@ -0,0 +1,220 @@
+package com.github.tankist88.carpenter.collector.compact;
+
+import com.github.tankist88.carpenter.collector.codec.CodecType;
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.carpenter.collector.keys.SymbolFile;
+import com.github.tankist88.carpenter.collector.storage.SegmentedTraceLog;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.OBJ_FILE_EXTENSION;
+
+/**
+ * Merges dump directories written in FILES mode by many JVMs into indexed segments, one {@link SegmentedTraceLog}
+ * per package in {@code <output dir>/<package path>}. Packages are compacted in parallel. Of the records with the
+ * same key the largest one is kept, as it holds the most of captured state. Class name of compacted records is
+ * the name of their package, since .obj files don't keep the class.
+ * <p>
+ * Dumps written with keyMode IDS are rejected: their record keys are hashes of ids local to one JVM,
+ * so equal keys of different JVMs may belong to different calls and can't be remapped.
+ * <p>
+ * Segment size and compression are taken from collector settings.
+ * <p>
+ * Usage: {@code DumpCompactor <output dir> <dump dir> [<dump dir>...]}
+ */
+public class DumpCompactor {
+    private static final FileFilter OBJ_FILES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith("." + OBJ_FILE_EXTENSION);
+        }
+    };
+
+    private static final FileFilter SYMBOL_FILES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith("." + SymbolFile.EXTENSION);
+        }
+    };
+
+    private final File outputDir;
+    private final int threads;
+    private final long segmentSize;
+    private final CompressionType compression;
+    private final int compressionLevel;
+    private final int blockSize;
+
+    public DumpCompactor(File outputDir, int threads) {
+        this(outputDir, threads, getSegmentSize(), getCompression(), getCompressionLevel(), getCompressionBlockSize());
+    }
+
+    public DumpCompactor(
+            File outputDir,
+            int threads,
+            long segmentSize,
+            CompressionType compression,
+            int compressionLevel,
+            int blockSize
+    ) {
+        this.outputDir = outputDir;
+        this.threads = Math.max(1, threads);
+        this.segmentSize = segmentSize;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DumpCompactor <output dir> <dump dir> [<dump dir>...]");
+            System.exit(2);
+        }
+        List<File> dumpDirs = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            dumpDirs.add(new File(args[i]));
+        }
+        DumpCompactor compactor = new DumpCompactor(new File(args[0]), Runtime.getRuntime().availableProcessors());
+        System.out.println(compactor.compact(dumpDirs));
+    }
+
+    /**
+     * @throws IOException if output directory is not empty, a dump is written with keyMode IDS or a dump file
+     * can't be read
+     */
+    public CompactionResult compact(List<File> dumpDirs) throws IOException {
+        String[] existing = outputDir.list();
+        if (existing != null && existing.length > 0) {
+            throw new IOException("Output directory " + outputDir + " is not empty");
+        }
+        Map<String, List<File>> packages = new TreeMap<String, List<File>>();
+        for (File dumpDir : dumpDirs) {
+            if (!dumpDir.isDirectory()) throw new IOException("Not a dump directory " + dumpDir);
+            File[] symbolFiles = dumpDir.listFiles(SYMBOL_FILES);
+            if (symbolFiles != null && symbolFiles.length > 0) {
+                throw new IOException("Dump directory " + dumpDir + " is written with keyMode IDS, which can't be merged");
+            }
+            scan(dumpDir, "", packages);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompactionResult>> futures = new ArrayList<Future<CompactionResult>>();
+            for (final Map.Entry<String, List<File>> entry : packages.entrySet()) {
+                futures.add(executor.submit(new Callable<CompactionResult>() {
+                    @Override
+                    public CompactionResult call() throws IOException {
+                        return compactPackage(entry.getKey(), entry.getValue());
+                    }
+                }));
+            }
+            CompactionResult result = new CompactionResult();
+            for (Future<CompactionResult> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (ExecutionException eex) {
+            if (eex.getCause() instanceof IOException) throw (IOException) eex.getCause();
+            throw new IllegalStateException("Can't compact dump", eex.getCause());
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compaction interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects directories with .obj files by package name.
+     */
+    private static void scan(File dir, String packageName, Map<String, List<File>> packages) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        boolean hasRecords = false;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scan(file, packageName.length() > 0 ? packageName + "." + file.getName() : file.getName(), packages);
+            } else if (OBJ_FILES.accept(file)) {
+                hasRecords = true;
+            }
+        }
+        if (hasRecords) {
+            List<File> dirs = packages.get(packageName);
+            if (dirs == null) {
+                dirs = new ArrayList<File>();
+                packages.put(packageName, dirs);
+            }
+            dirs.add(dir);
+        }
+    }
+
+    private CompactionResult compactPackage(String packageName, List<File> dirs) throws IOException {
+        CompactionResult result = new CompactionResult();
+        result.addPackage();
+        Map<String, File> records = new TreeMap<String, File>();
+        for (File dir : dirs) {
+            File[] files = dir.listFiles(OBJ_FILES);
+            if (files == null) continue;
+            for (File file : files) {
+                result.addInputRecord();
+                String name = file.getName();
+                String key = name.substring(0, name.length() - OBJ_FILE_EXTENSION.length() - 1);
+                File kept = records.get(key);
+                if (kept == null || file.length() > kept.length()) {
+                    records.put(key, file);
+                }
+            }
+        }
+        File packageDir = new File(outputDir, packageName.replace('.', File.separatorChar));
+        SegmentedTraceLog log = new SegmentedTraceLog(
+                packageDir,
+                segmentSize,
+                Integer.MAX_VALUE,
+                Long.MAX_VALUE,
+                CodecType.JAVA.getCodec(),
+                null,
+                compression.create(compressionLevel, null),
+                blockSize);
+        try {
+            for (Map.Entry<String, File> entry : records.entrySet()) {
+                byte[] payload = readDumpFile(entry.getValue());
+                log.writeEncoded(new TraceRecord(entry.getKey(), packageName, payload));
+                result.addOutputRecord(payload.length);
+            }
+        } finally {
+            log.close();
+        }
+        return result;
+    }
+
+    /**
+     * @return serialized record of a file written by {@code FileTraceSink}
+     */
+    private static byte[] readDumpFile(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            int length = in.readInt();
+            if (length < 0 || length != file.length() - 4) {
+                throw new IOException("Broken dump file " + file);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return payload;
+        } finally {
+            in.close();
+        }
+    }
+}
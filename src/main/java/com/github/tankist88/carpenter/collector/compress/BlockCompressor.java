@@ -0,0 +1,28 @@
+package com.github.tankist88.carpenter.collector.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compresses blocks of segment frames. Blocks are written whole and read as a stream, so a reader
+ * decodes frames one by one without inflating the entire block into memory.
+ */
+public interface BlockCompressor {
+    /**
+     * @return id of compressor written to every block, see {@link CompressionType#getId()}
+     */
+    byte getId();
+
+    /**
+     * @return preset dictionary stored at the start of every compressed segment, or null
+     */
+    byte[] getDictionary();
+
+    byte[] compress(byte[] block, int offset, int length) throws IOException;
+
+    /**
+     * @param compressed compressed block, exactly as returned by {@link #compress(byte[], int, int)}
+     * @return stream of uncompressed block
+     */
+    InputStream decompress(InputStream compressed);
+}
@@ -0,0 +1,43 @@
+package com.github.tankist88.carpenter.collector.compress;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Preset dictionary for block compression. Deflate prefers recent matches, so the strings most
+ * likely to occur in every record, application packages, are placed at the end.
+ */
+public class CompressionDictionary {
+    private static final String[] COMMON = {
+            "java.lang.Object", "java.lang.Integer", "java.lang.Long", "java.lang.Boolean",
+            "java.util.ArrayList", "java.util.HashMap", "java.util.HashSet", "java.util.LinkedHashMap",
+            "java.util.Set", "java.util.List", "java.util.Map", "java.io.Serializable",
+            "throws Exception {\n", "    return ", "    public static ", "    private ", " = new ",
+            "();\n", "\");\n", ".set", ".get", "@Override\n",
+            "com.github.tankist88.carpenter.core.dto.argument.GeneratedArgument",
+            "com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto",
+            "com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo",
+            "com.github.tankist88.object2source.dto.ProviderInfo",
+            "com.github.tankist88.object2source.dto.ProviderResult",
+            "java.lang.String"
+    };
+
+    /**
+     * @param packages application packages, usually allowedPackagesForTests
+     */
+    public static byte[] build(String[] packages) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : COMMON) {
+            sb.append(value);
+        }
+        if (packages != null) {
+            for (String pkg : packages) {
+                sb.append(pkg).append('.');
+            }
+        }
+        try {
+            return sb.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException uex) {
+            throw new IllegalStateException(uex);
+        }
+    }
+}
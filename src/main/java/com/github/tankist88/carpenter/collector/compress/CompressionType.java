@@ -0,0 +1,43 @@
+package com.github.tankist88.carpenter.collector.compress;
+
+public enum CompressionType {
+    /**
+     * Frames are written as is
+     */
+    NONE((byte) 0),
+    /**
+     * Blocks of frames are compressed by {@link DeflateBlockCompressor}
+     */
+    DEFLATE((byte) 1);
+
+    private final byte id;
+
+    CompressionType(byte id) {
+        this.id = id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * @return compressor or null for {@link #NONE}
+     */
+    public BlockCompressor create(int level, byte[] dictionary) {
+        switch (this) {
+            case DEFLATE:
+                return new DeflateBlockCompressor(level, dictionary);
+            default:
+                return null;
+        }
+    }
+
+    public static CompressionType forId(byte id) {
+        for (CompressionType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression " + id);
+    }
+}
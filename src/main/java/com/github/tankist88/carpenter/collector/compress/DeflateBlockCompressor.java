@@ -0,0 +1,121 @@
+package com.github.tankist88.carpenter.collector.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * JDK zlib compression with an optional preset dictionary. Blocks are small, so a dictionary of
+ * strings repeated in every record (class and package names, generated source) is what lets
+ * deflate find matches in the first bytes of a block.
+ */
+public class DeflateBlockCompressor implements BlockCompressor {
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int level;
+    private final byte[] dictionary;
+    private final Deflater deflater;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * @param level deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @param dictionary preset dictionary or null
+     */
+    public DeflateBlockCompressor(int level, byte[] dictionary) {
+        this.level = level;
+        this.dictionary = dictionary != null && dictionary.length > 0 ? dictionary : null;
+        this.deflater = new Deflater(level);
+    }
+
+    @Override
+    public byte getId() {
+        return CompressionType.DEFLATE.getId();
+    }
+
+    @Override
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public synchronized byte[] compress(byte[] block, int offset, int length) {
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(block, offset, length);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public InputStream decompress(InputStream compressed) {
+        return new InflatingInputStream(compressed, dictionary);
+    }
+
+    /**
+     * Unlike {@link java.util.zip.InflaterInputStream} supplies preset dictionary when the stream asks for it.
+     */
+    private static class InflatingInputStream extends InputStream {
+        private final InputStream source;
+        private final byte[] dictionary;
+        private final Inflater inflater = new Inflater();
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final byte[] single = new byte[1];
+        private boolean closed;
+
+        private InflatingInputStream(InputStream source, byte[] dictionary) {
+            this.source = source;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            if (len == 0) return 0;
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) return n;
+                    if (inflater.finished()) return -1;
+                    if (inflater.needsDictionary()) {
+                        if (dictionary == null) throw new IOException("Block requires preset dictionary");
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.needsInput()) {
+                        int read = source.read(input);
+                        if (read < 0) throw new EOFException("Compressed block is truncated");
+                        inflater.setInput(input, 0, read);
+                    }
+                }
+            } catch (DataFormatException dfe) {
+                throw new IOException("Corrupted compressed block", dfe);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            inflater.end();
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.tankist88.carpenter.collector.control;
+
+import com.github.tankist88.carpenter.collector.property.CollectorProperties;
+import org.aspectj.lang.JoinPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+
+/**
+ * Runtime switch of capture. While capture is off the aspect only reads one volatile field before it
+ * proceeds, so woven builds can stay deployed with capture turned on for a while when needed.
+ * <p>
+ * The switch is set through the {@value #OBJECT_NAME} MBean, the {@code enabled} and
+ * {@code disabledPackages} system properties or the {@code switchFile} properties file with the same keys.
+ * Properties and file are polled, a change of either overrides the current state.
+ */
+public class CollectorSwitch implements CollectorSwitchMBean {
+    private static final Logger logger = LoggerFactory.getLogger(CollectorSwitch.class);
+
+    public static final String OBJECT_NAME = "com.github.tankist88.carpenter.collector:type=CollectorSwitch";
+
+    public static final CollectorSwitch SWITCH = createSwitch();
+
+    private static final String ENABLED = "enabled";
+    private static final String DISABLED_PACKAGES = "disabledPackages";
+
+    private volatile boolean enabled;
+    private volatile String[] disabledPackages;
+
+    private final File file;
+    private String lastEnabledProperty;
+    private String lastPackagesProperty;
+    private long lastFileModified;
+
+    public CollectorSwitch(boolean enabled, String disabledPackages, File file) {
+        this.enabled = enabled;
+        this.disabledPackages = parsePackages(disabledPackages);
+        this.file = file;
+    }
+
+    private static CollectorSwitch createSwitch() {
+        String fileName = getSwitchFile();
+        CollectorSwitch collectorSwitch = new CollectorSwitch(
+                isCollectorEnabled(),
+                CollectorProperties.getDisabledPackages(),
+                fileName != null ? new File(fileName) : null);
+        collectorSwitch.lastEnabledProperty = System.getProperty(PREFIX + ENABLED);
+        collectorSwitch.lastPackagesProperty = System.getProperty(PREFIX + DISABLED_PACKAGES);
+        collectorSwitch.poll();
+        collectorSwitch.registerMBean();
+        long interval = getSwitchIntervalMillis();
+        if (interval > 0) collectorSwitch.start(interval);
+        return collectorSwitch;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false if capture is off or the declaring type of the join point is in a disabled package
+     */
+    public boolean isEnabled(JoinPoint.StaticPart staticPart) {
+        if (!enabled) return false;
+        String[] packages = disabledPackages;
+        if (packages.length == 0) return true;
+        String typeName = staticPart.getSignature().getDeclaringTypeName();
+        for (String packageName : packages) {
+            if (inPackage(typeName, packageName)) return false;
+        }
+        return true;
+    }
+
+    private static boolean inPackage(String typeName, String packageName) {
+        return typeName.startsWith(packageName)
+                && (typeName.length() == packageName.length() || typeName.charAt(packageName.length()) == '.');
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            logger.info("Collector capture " + (enabled ? "enabled" : "disabled"));
+        }
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String[] getDisabledPackages() {
+        return disabledPackages.clone();
+    }
+
+    @Override
+    public synchronized void disablePackage(String packageName) {
+        String name = packageName.trim();
+        if (name.length() == 0 || Arrays.asList(disabledPackages).contains(name)) return;
+        List<String> packages = new ArrayList<String>(Arrays.asList(disabledPackages));
+        packages.add(name);
+        disabledPackages = packages.toArray(new String[packages.size()]);
+    }
+
+    @Override
+    public synchronized void enablePackage(String packageName) {
+        List<String> packages = new ArrayList<String>(Arrays.asList(disabledPackages));
+        if (packages.remove(packageName.trim())) {
+            disabledPackages = packages.toArray(new String[packages.size()]);
+        }
+    }
+
+    public synchronized void setDisabledPackages(String packages) {
+        disabledPackages = parsePackages(packages);
+    }
+
+    /**
+     * Applies system properties and switch file if they changed since the previous poll.
+     */
+    public synchronized void poll() {
+        String enabledProperty = System.getProperty(PREFIX + ENABLED);
+        if (!equal(enabledProperty, lastEnabledProperty)) {
+            lastEnabledProperty = enabledProperty;
+            if (enabledProperty != null) applyEnabled(enabledProperty, PREFIX + ENABLED);
+        }
+        String packagesProperty = System.getProperty(PREFIX + DISABLED_PACKAGES);
+        if (!equal(packagesProperty, lastPackagesProperty)) {
+            lastPackagesProperty = packagesProperty;
+            setDisabledPackages(packagesProperty);
+        }
+        if (file != null) {
+            long modified = file.lastModified();
+            if (modified != lastFileModified) {
+                lastFileModified = modified;
+                if (modified != 0L) loadFile();
+            }
+        }
+    }
+
+    private void loadFile() {
+        Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+        } catch (IOException ioex) {
+            logger.warn("Can't read " + file.getAbsolutePath() + ". " + ioex.getMessage());
+            return;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        String enabledValue = properties.getProperty(ENABLED);
+        if (enabledValue != null) applyEnabled(enabledValue, file.getAbsolutePath());
+        String packages = properties.getProperty(DISABLED_PACKAGES);
+        if (packages != null) setDisabledPackages(packages);
+    }
+
+    private void applyEnabled(String value, String source) {
+        String trimmed = value.trim();
+        if ("true".equalsIgnoreCase(trimmed) || "false".equalsIgnoreCase(trimmed)) {
+            setEnabled(Boolean.parseBoolean(trimmed));
+        } else {
+            logger.warn("Invalid value of enabled in " + source + ": " + value);
+        }
+    }
+
+    private static String[] parsePackages(String packages) {
+        List<String> result = new ArrayList<String>();
+        if (packages != null) {
+            for (String packageName : packages.split(",")) {
+                String name = packageName.trim();
+                if (name.length() > 0) result.add(name);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    private void start(long intervalMillis) {
+        Timer timer = new Timer("carpenter-switch", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, intervalMillis, intervalMillis);
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException jex) {
+            logger.warn("Can't register " + OBJECT_NAME + ". " + jex.getMessage());
+        }
+    }
+}
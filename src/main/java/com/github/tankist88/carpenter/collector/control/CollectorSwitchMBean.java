@@ -0,0 +1,19 @@
+package com.github.tankist88.carpenter.collector.control;
+
+/**
+ * JMX view of {@link CollectorSwitch}.
+ */
+public interface CollectorSwitchMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    String[] getDisabledPackages();
+
+    /**
+     * Stops capture of calls of classes of the package and its subpackages.
+     */
+    void disablePackage(String packageName);
+
+    void enablePackage(String packageName);
+}
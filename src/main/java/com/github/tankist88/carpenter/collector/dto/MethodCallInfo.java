@@ -1,26 +1,41 @@
 package com.github.tankist88.carpenter.collector.dto;
 
+import com.github.tankist88.carpenter.collector.snapshot.ProviderSnapshot;
 import com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto;
-import com.github.tankist88.object2source.dto.ProviderResult;
+import org.aspectj.lang.JoinPoint;
 
 public class MethodCallInfo {
+    private JoinPoint.StaticPart staticPart;
     private String methodName;
     private Class clazz;
     private TraceAnalyzeDto traceAnalyze;
-    private ProviderResult[] argsProviders;
-    private ProviderResult returnProvider;
+    private ProviderSnapshot[] argsSnapshots;
+    private ProviderSnapshot returnSnapshot;
     private Class retType;
     private String declaringTypeName;
     private Class[] parameterTypes;
     private Class[] argTypes;
     private int methodModifiers;
     private String methodKey;
-    private ProviderResult targetProvider;
+    private int threadId;
+    private long methodId;
+    private int argsHashCode;
+    private long callerMethodId;
+    private int callerArgsHashCode;
+    private ProviderSnapshot targetSnapshot;
     private int targetHashCode;
     private int returnArgHashCode;
     private long startTime;
     private long endTime;
 
+    public JoinPoint.StaticPart getStaticPart() {
+        return staticPart;
+    }
+
+    public void setStaticPart(JoinPoint.StaticPart staticPart) {
+        this.staticPart = staticPart;
+    }
+
     public String getMethodName() {
         return methodName;
     }
@@ -45,20 +60,20 @@ public class MethodCallInfo {
         this.traceAnalyze = traceAnalyze;
     }
 
-    public ProviderResult[] getArgsProviders() {
-        return argsProviders;
+    public ProviderSnapshot[] getArgsSnapshots() {
+        return argsSnapshots;
     }
 
-    public void setArgsProviders(ProviderResult[] argsProviders) {
-        this.argsProviders = argsProviders;
+    public void setArgsSnapshots(ProviderSnapshot[] argsSnapshots) {
+        this.argsSnapshots = argsSnapshots;
     }
 
-    public ProviderResult getReturnProvider() {
-        return returnProvider;
+    public ProviderSnapshot getReturnSnapshot() {
+        return returnSnapshot;
     }
 
-    public void setReturnProvider(ProviderResult returnProvider) {
-        this.returnProvider = returnProvider;
+    public void setReturnSnapshot(ProviderSnapshot returnSnapshot) {
+        this.returnSnapshot = returnSnapshot;
     }
 
     public Class getRetType() {
@@ -109,12 +124,52 @@ public class MethodCallInfo {
         this.methodKey = methodKey;
     }
 
-    public ProviderResult getTargetProvider() {
-        return targetProvider;
+    public int getThreadId() {
+        return threadId;
+    }
+
+    public void setThreadId(int threadId) {
+        this.threadId = threadId;
+    }
+
+    public long getMethodId() {
+        return methodId;
+    }
+
+    public void setMethodId(long methodId) {
+        this.methodId = methodId;
+    }
+
+    public int getArgsHashCode() {
+        return argsHashCode;
+    }
+
+    public void setArgsHashCode(int argsHashCode) {
+        this.argsHashCode = argsHashCode;
+    }
+
+    public long getCallerMethodId() {
+        return callerMethodId;
+    }
+
+    public void setCallerMethodId(long callerMethodId) {
+        this.callerMethodId = callerMethodId;
+    }
+
+    public int getCallerArgsHashCode() {
+        return callerArgsHashCode;
+    }
+
+    public void setCallerArgsHashCode(int callerArgsHashCode) {
+        this.callerArgsHashCode = callerArgsHashCode;
+    }
+
+    public ProviderSnapshot getTargetSnapshot() {
+        return targetSnapshot;
     }
 
-    public void setTargetProvider(ProviderResult targetProvider) {
-        this.targetProvider = targetProvider;
+    public void setTargetSnapshot(ProviderSnapshot targetSnapshot) {
+        this.targetSnapshot = targetSnapshot;
     }
 
     public int getTargetHashCode() {
@@ -0,0 +1,37 @@
+package com.github.tankist88.carpenter.collector.dto;
+
+public class TraceRecord {
+    private String key;
+    private String className;
+    private byte[] payload;
+
+    public TraceRecord(String key, String className, byte[] payload) {
+        this.key = key;
+        this.className = className;
+        this.payload = payload;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
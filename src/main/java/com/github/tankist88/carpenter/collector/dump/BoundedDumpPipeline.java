@@ -0,0 +1,212 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tankist88.carpenter.collector.util.ThreadSupport.newThread;
+
+/**
+ * Bounded queue of captured records shared by all application threads and drained by a fixed number of daemon workers.
+ * When the queue is full the record is handled according to the {@link OverflowPolicy},
+ * so application threads never pile up more than {@code capacity} records in memory.
+ */
+public class BoundedDumpPipeline<T> implements DumpPipeline<T> {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedDumpPipeline.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+
+    private final BlockingQueue<T> queue;
+    private final RecordHandler<T> handler;
+    private final DropListener<T> dropListener;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final long blockTimeoutMillis;
+    private final int sampleThreshold;
+    private final List<Thread> workers;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    public BoundedDumpPipeline(
+            String name,
+            int workerCount,
+            int capacity,
+            OverflowPolicy overflowPolicy,
+            int sampleRate,
+            long blockTimeoutMillis,
+            RecordHandler<T> handler
+    ) {
+        this(name, workerCount, capacity, overflowPolicy, sampleRate, blockTimeoutMillis, handler, DumpThreads.PLATFORM);
+    }
+
+    public BoundedDumpPipeline(
+            String name,
+            int workerCount,
+            int capacity,
+            OverflowPolicy overflowPolicy,
+            int sampleRate,
+            long blockTimeoutMillis,
+            RecordHandler<T> handler,
+            DumpThreads threads
+    ) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be positive");
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.queue = new ArrayBlockingQueue<T>(capacity);
+        this.handler = handler;
+        this.dropListener = dropListener(handler);
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.sampleThreshold = Math.max(1, capacity / 2);
+        this.workers = new ArrayList<Thread>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = newThread(new Worker(), name + "-" + i, threads == DumpThreads.VIRTUAL);
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            activeWorkers.incrementAndGet();
+            worker.start();
+        }
+    }
+
+    @Override
+    public boolean submit(T record) {
+        if (closed || !offer(record)) {
+            dropped.incrementAndGet();
+            if (dropListener != null) dropListener.dropped(record);
+            return false;
+        }
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    private boolean offer(T record) {
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                return queue.offer(record);
+            case DROP_OLDEST:
+                while (!queue.offer(record)) {
+                    T oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        if (dropListener != null) dropListener.dropped(oldest);
+                    }
+                }
+                return true;
+            case SAMPLE:
+                if (queue.size() >= sampleThreshold && sampleCounter.incrementAndGet() % sampleRate != 0) {
+                    return false;
+                }
+                return queue.offer(record);
+            case BLOCK:
+                try {
+                    return queue.offer(record, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            default:
+                throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DropListener<T> dropListener(RecordHandler<T> handler) {
+        return handler instanceof DropListener ? (DropListener<T>) handler : null;
+    }
+
+    @Override
+    public boolean shutdown(long timeoutMillis) {
+        closed = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread worker : workers) {
+            long rest = deadline - System.currentTimeMillis();
+            if (rest <= 0) break;
+            try {
+                worker.join(rest);
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        boolean drained = activeWorkers.get() == 0;
+        if (!drained) {
+            logger.warn("Dump pipeline was not drained in " + timeoutMillis + " ms, " + queue.size() + " records lost");
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    T record;
+                    try {
+                        record = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException iex) {
+                        break;
+                    }
+                    if (record == null) {
+                        if (closed) break;
+                        continue;
+                    }
+                    try {
+                        handler.handle(record);
+                        processed.incrementAndGet();
+                    } catch (Throwable t) {
+                        // errors of provider generation, like StackOverflowError, must not stop the worker
+                        failed.incrementAndGet();
+                        logger.error("Can't handle record. " + t.getMessage(), t);
+                    }
+                }
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+        }
+    }
+}
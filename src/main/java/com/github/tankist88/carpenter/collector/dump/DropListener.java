@@ -0,0 +1,9 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+/**
+ * Implemented by a {@link RecordHandler} that must know about records which will never be handled,
+ * for example to release resources held by them.
+ */
+public interface DropListener<T> {
+    void dropped(T record);
+}
@@ -0,0 +1,30 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+/**
+ * Hands captured records from application threads over to background dump workers.
+ */
+public interface DumpPipeline<T> {
+    /**
+     * Offers record to the pipeline.
+     * @return true if record was accepted, false if it was dropped
+     */
+    boolean submit(T record);
+
+    /**
+     * Stops accepting new records and waits until workers drain the buffered ones.
+     * @return true if all buffered records were handled before timeout
+     */
+    boolean shutdown(long timeoutMillis);
+
+    boolean isClosed();
+
+    int getQueueSize();
+
+    long getEnqueuedCount();
+
+    long getDroppedCount();
+
+    long getProcessedCount();
+
+    long getFailedCount();
+}
@@ -0,0 +1,8 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+public enum DumpThreads {
+    /** Daemon platform threads. */
+    PLATFORM,
+    /** Virtual threads on Java 21+, platform threads on older JVMs. */
+    VIRTUAL
+}
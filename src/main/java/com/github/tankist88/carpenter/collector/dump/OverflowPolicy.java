@@ -0,0 +1,15 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+/**
+ * What {@link DumpPipeline} does with a new record when its buffer is full.
+ */
+public enum OverflowPolicy {
+    /** Discard the record being submitted. */
+    DROP_NEWEST,
+    /** Discard the oldest buffered record to make room for the new one. */
+    DROP_OLDEST,
+    /** Once the buffer is half full keep only every n-th record, discard the rest. */
+    SAMPLE,
+    /** Wait up to the configured timeout for free space, then discard the record. */
+    BLOCK
+}
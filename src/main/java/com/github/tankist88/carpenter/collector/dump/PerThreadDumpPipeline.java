@@ -0,0 +1,364 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.tankist88.carpenter.collector.util.ThreadSupport.isVirtual;
+import static com.github.tankist88.carpenter.collector.util.ThreadSupport.newThread;
+
+/**
+ * Every application thread gets its own {@link SpscRingBuffer}, so submitting a record touches
+ * neither a lock nor memory shared with other application threads. Buffers are assigned round-robin
+ * to flusher threads which drain them in batches. A buffer is registered once, on the first submit
+ * of its thread, and removed by its flusher after the thread has died and the buffer is empty.
+ * <p>
+ * Virtual threads are short-lived and may number millions, so they don't get buffers of their own: they
+ * share one bounded queue of {@code bufferCapacity} records per flusher, drained by all flushers.
+ * <p>
+ * A producer can't take elements out of its own buffer, so {@link OverflowPolicy#DROP_OLDEST}
+ * behaves like {@link OverflowPolicy#DROP_NEWEST} here.
+ */
+public class PerThreadDumpPipeline<T> implements DumpPipeline<T> {
+    private static final Logger logger = LoggerFactory.getLogger(PerThreadDumpPipeline.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final RecordHandler<T> handler;
+    private final DropListener<T> dropListener;
+    private final OverflowPolicy overflowPolicy;
+    private final int bufferCapacity;
+    private final int sampleRate;
+    private final long blockTimeoutNanos;
+    private final int batchSize;
+    private final List<CopyOnWriteArrayList<ThreadBuffer<T>>> stripes;
+    private final BlockingQueue<T> sharedQueue;
+    private final int sharedSampleThreshold;
+    private final List<Thread> flushers;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final AtomicInteger activeFlushers = new AtomicInteger();
+
+    private final ThreadLocal<ThreadBuffer<T>> threadBuffer = new ThreadLocal<ThreadBuffer<T>>() {
+        @Override
+        protected ThreadBuffer<T> initialValue() {
+            ThreadBuffer<T> buffer = new ThreadBuffer<T>(Thread.currentThread(), bufferCapacity);
+            int stripe = (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.size();
+            stripes.get(stripe).add(buffer);
+            return buffer;
+        }
+    };
+
+    /** Counters of buffers already removed after their threads died. */
+    private final AtomicLong retiredEnqueued = new AtomicLong();
+    private final AtomicLong retiredDropped = new AtomicLong();
+    /** Counters of the queue shared by virtual threads. */
+    private final AtomicLong sharedEnqueued = new AtomicLong();
+    private final AtomicLong sharedDropped = new AtomicLong();
+    private final AtomicLong sharedSampleCounter = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public PerThreadDumpPipeline(
+            String name,
+            int flusherCount,
+            int bufferCapacity,
+            OverflowPolicy overflowPolicy,
+            int sampleRate,
+            long blockTimeoutMillis,
+            int batchSize,
+            RecordHandler<T> handler
+    ) {
+        this(name, flusherCount, bufferCapacity, overflowPolicy, sampleRate, blockTimeoutMillis, batchSize, handler,
+                DumpThreads.PLATFORM);
+    }
+
+    public PerThreadDumpPipeline(
+            String name,
+            int flusherCount,
+            int bufferCapacity,
+            OverflowPolicy overflowPolicy,
+            int sampleRate,
+            long blockTimeoutMillis,
+            int batchSize,
+            RecordHandler<T> handler,
+            DumpThreads threads
+    ) {
+        if (flusherCount < 1) throw new IllegalArgumentException("flusherCount must be positive");
+        if (bufferCapacity < 1) throw new IllegalArgumentException("bufferCapacity must be positive");
+        this.handler = handler;
+        this.dropListener = dropListener(handler);
+        this.overflowPolicy = overflowPolicy;
+        this.bufferCapacity = bufferCapacity;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.stripes = new ArrayList<CopyOnWriteArrayList<ThreadBuffer<T>>>(flusherCount);
+        int sharedCapacity = (int) Math.min(Integer.MAX_VALUE, (long) bufferCapacity * flusherCount);
+        this.sharedQueue = new ArrayBlockingQueue<T>(sharedCapacity);
+        this.sharedSampleThreshold = Math.max(1, sharedCapacity / 2);
+        this.flushers = new ArrayList<Thread>(flusherCount);
+        for (int i = 0; i < flusherCount; i++) {
+            CopyOnWriteArrayList<ThreadBuffer<T>> stripe = new CopyOnWriteArrayList<ThreadBuffer<T>>();
+            stripes.add(stripe);
+            Thread flusher = newThread(new Flusher(stripe), name + "-" + i, threads == DumpThreads.VIRTUAL);
+            flushers.add(flusher);
+        }
+        for (Thread flusher : flushers) {
+            activeFlushers.incrementAndGet();
+            flusher.start();
+        }
+    }
+
+    @Override
+    public boolean submit(T record) {
+        if (isShared(Thread.currentThread())) return submitShared(record);
+        ThreadBuffer<T> buffer = threadBuffer.get();
+        if (closed || !offer(buffer, record)) {
+            buffer.dropped.lazySet(buffer.dropped.get() + 1);
+            if (dropListener != null) dropListener.dropped(record);
+            return false;
+        }
+        buffer.enqueued.lazySet(buffer.enqueued.get() + 1);
+        return true;
+    }
+
+    private boolean offer(ThreadBuffer<T> buffer, T record) {
+        SpscRingBuffer<T> ring = buffer.ring;
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+            case DROP_OLDEST:
+                return ring.offer(record);
+            case SAMPLE:
+                if (ring.size() >= ring.capacity() / 2 && ++buffer.sampleCounter % sampleRate != 0) {
+                    return false;
+                }
+                return ring.offer(record);
+            case BLOCK:
+                if (ring.offer(record)) return true;
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (!ring.offer(record)) {
+                    if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    /**
+     * @return true if records of the thread go to the shared queue instead of a buffer of its own
+     */
+    boolean isShared(Thread thread) {
+        return isVirtual(thread);
+    }
+
+    private boolean submitShared(T record) {
+        if (closed || !offerShared(record)) {
+            sharedDropped.incrementAndGet();
+            if (dropListener != null) dropListener.dropped(record);
+            return false;
+        }
+        sharedEnqueued.incrementAndGet();
+        return true;
+    }
+
+    private boolean offerShared(T record) {
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+            case DROP_OLDEST:
+                return sharedQueue.offer(record);
+            case SAMPLE:
+                if (sharedQueue.size() >= sharedSampleThreshold && sharedSampleCounter.incrementAndGet() % sampleRate != 0) {
+                    return false;
+                }
+                return sharedQueue.offer(record);
+            case BLOCK:
+                try {
+                    return sharedQueue.offer(record, blockTimeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            default:
+                throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DropListener<T> dropListener(RecordHandler<T> handler) {
+        return handler instanceof DropListener ? (DropListener<T>) handler : null;
+    }
+
+    @Override
+    public boolean shutdown(long timeoutMillis) {
+        closed = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread flusher : flushers) {
+            long rest = deadline - System.currentTimeMillis();
+            if (rest <= 0) break;
+            try {
+                flusher.join(rest);
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        boolean drained = activeFlushers.get() == 0;
+        if (!drained) {
+            logger.warn("Dump pipeline was not drained in " + timeoutMillis + " ms, " + getQueueSize() + " records lost");
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int getQueueSize() {
+        int size = sharedQueue.size();
+        for (List<ThreadBuffer<T>> stripe : stripes) {
+            for (ThreadBuffer<T> buffer : stripe) {
+                size += buffer.ring.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getEnqueuedCount() {
+        long count = retiredEnqueued.get() + sharedEnqueued.get();
+        for (List<ThreadBuffer<T>> stripe : stripes) {
+            for (ThreadBuffer<T> buffer : stripe) {
+                count += buffer.enqueued.get();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        long count = retiredDropped.get() + sharedDropped.get();
+        for (List<ThreadBuffer<T>> stripe : stripes) {
+            for (ThreadBuffer<T> buffer : stripe) {
+                count += buffer.dropped.get();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public int getThreadBufferCount() {
+        int count = 0;
+        for (List<ThreadBuffer<T>> stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    private static class ThreadBuffer<T> {
+        private final WeakReference<Thread> owner;
+        private final SpscRingBuffer<T> ring;
+        /** Written only by the owner thread, lazySet is enough for readers of statistics. */
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private long sampleCounter;
+
+        private ThreadBuffer(Thread owner, int capacity) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.ring = new SpscRingBuffer<T>(capacity);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    private class Flusher implements Runnable {
+        private final List<ThreadBuffer<T>> stripe;
+        private final List<T> batch = new ArrayList<T>();
+
+        private Flusher(List<ThreadBuffer<T>> stripe) {
+            this.stripe = stripe;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    boolean wasClosed = closed;
+                    int drained = flushShared();
+                    for (ThreadBuffer<T> buffer : stripe) {
+                        drained += flush(buffer);
+                        // owner first: records published before its death are then seen by size()
+                        if (!buffer.isOwnerAlive() && buffer.ring.size() == 0) {
+                            stripe.remove(buffer);
+                            retiredEnqueued.addAndGet(buffer.enqueued.get());
+                            retiredDropped.addAndGet(buffer.dropped.get());
+                        }
+                    }
+                    if (drained == 0) {
+                        if (wasClosed) break;
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                        if (Thread.currentThread().isInterrupted()) break;
+                    }
+                }
+            } finally {
+                activeFlushers.decrementAndGet();
+            }
+        }
+
+        private int flushShared() {
+            int count = sharedQueue.drainTo(batch, batchSize);
+            handleBatch();
+            return count;
+        }
+
+        private int flush(ThreadBuffer<T> buffer) {
+            int count = buffer.ring.drainTo(batch, batchSize);
+            handleBatch();
+            return count;
+        }
+
+        private void handleBatch() {
+            for (T record : batch) {
+                try {
+                    handler.handle(record);
+                    processed.incrementAndGet();
+                } catch (Throwable t) {
+                    // errors of provider generation, like StackOverflowError, must not stop the flusher
+                    failed.incrementAndGet();
+                    logger.error("Can't handle record. " + t.getMessage(), t);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+public enum PipelineMode {
+    /** One bounded queue shared by all threads, see {@link BoundedDumpPipeline}. */
+    BOUNDED,
+    /** Lock-free ring buffer per application thread, see {@link PerThreadDumpPipeline}. */
+    PER_THREAD
+}
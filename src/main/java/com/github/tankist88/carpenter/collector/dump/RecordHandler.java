@@ -0,0 +1,5 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+public interface RecordHandler<T> {
+    void handle(T record);
+}
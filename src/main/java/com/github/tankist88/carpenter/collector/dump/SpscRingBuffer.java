@@ -0,0 +1,72 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring buffer for exactly one producer thread and one consumer thread.
+ * Neither side takes a lock: the producer publishes an element with an ordered write of {@code tail},
+ * the consumer frees slots with an ordered write of {@code head}.
+ */
+class SpscRingBuffer<T> {
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Last head value seen by the producer, saves a volatile read per offer while buffer is not full. */
+    private long cachedHead;
+
+    SpscRingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     * @return false if buffer is full
+     */
+    boolean offer(T element) {
+        long t = tail.get();
+        if (t - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) (t & mask)] = element;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Moves up to {@code max} elements to {@code out}.
+     * @return number of moved elements
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> out, int max) {
+        long h = head.get();
+        int count = (int) Math.min(tail.get() - h, max);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((h + i) & mask);
+            out.add((T) buffer[index]);
+            buffer[index] = null;
+        }
+        if (count > 0) {
+            head.lazySet(h + count);
+        }
+        return count;
+    }
+
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+}
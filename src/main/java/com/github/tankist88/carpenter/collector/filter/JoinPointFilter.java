@@ -0,0 +1,133 @@
+package com.github.tankist88.carpenter.collector.filter;
+
+import com.github.tankist88.carpenter.collector.metrics.SkipReason;
+import com.github.tankist88.carpenter.collector.util.JoinPointMap;
+import org.aspectj.lang.JoinPoint;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Include/exclude rules of the collector compiled once into matchers. Verdicts are cached per
+ * {@link JoinPoint.StaticPart} (one instance per join point shadow, compared by identity, weakly referenced)
+ * and thread name verdicts per thread, so a skipped call costs one map lookup and one thread local read.
+ */
+public class JoinPointFilter {
+    private final PrefixMatcher deniedMethods;
+    private final SubstringMatcher deniedMethodSymbols;
+    private final SubstringMatcher excludedThreadNames;
+    private final PrefixMatcher allowedPackages;
+
+    private final JoinPointMap<JoinPointVerdict> verdicts = new JoinPointMap<JoinPointVerdict>();
+
+    private final ThreadLocal<ThreadVerdict> threadVerdicts = new ThreadLocal<ThreadVerdict>();
+
+    public JoinPointFilter(
+            String[] deniedMethods,
+            String[] deniedMethodSymbols,
+            String[] excludedThreadNames,
+            String[] allowedPackages
+    ) {
+        this.deniedMethods = new PrefixMatcher(deniedMethods);
+        this.deniedMethodSymbols = new SubstringMatcher(deniedMethodSymbols);
+        this.excludedThreadNames = new SubstringMatcher(excludedThreadNames);
+        this.allowedPackages = new PrefixMatcher(allowedPackages);
+    }
+
+    public boolean isSkip(JoinPoint.StaticPart staticPart) {
+        return getSkipReason(staticPart) != null;
+    }
+
+    /**
+     * @return why the call is skipped or null if it passes method and thread rules
+     */
+    public SkipReason getSkipReason(JoinPoint.StaticPart staticPart) {
+        if (getVerdict(staticPart).deniedMethod) return SkipReason.DENIED_METHOD;
+        if (excludedThreadName(Thread.currentThread())) return SkipReason.THREAD_NAME;
+        return null;
+    }
+
+    /**
+     * @param joinClass runtime class of the target, or declaring type for static calls
+     */
+    public boolean allowedPackageForGen(JoinPoint.StaticPart staticPart, Class joinClass) {
+        JoinPointVerdict verdict = getVerdict(staticPart);
+        ClassVerdict last = verdict.lastClass;
+        if (last == null || last.clazz.get() != joinClass) {
+            last = new ClassVerdict(joinClass, allowedPackageForGen(joinClass.getName()));
+            verdict.lastClass = last;
+        }
+        return last.allowed;
+    }
+
+    public boolean allowedPackageForGen(String className) {
+        return allowedPackages.matches(className);
+    }
+
+    public boolean deniedMethod(String methodName) {
+        return deniedMethods.matches(methodName);
+    }
+
+    public boolean deniedMethodSymbol(String methodName) {
+        return deniedMethodSymbols.matches(methodName);
+    }
+
+    public boolean excludedThreadName(String threadName) {
+        return excludedThreadNames.matches(threadName);
+    }
+
+    /**
+     * Thread name may be changed at any time, so the cached verdict is checked against the current name.
+     */
+    private boolean excludedThreadName(Thread thread) {
+        String name = thread.getName();
+        ThreadVerdict verdict = threadVerdicts.get();
+        if (verdict == null || (verdict.name != name && !verdict.name.equals(name))) {
+            verdict = new ThreadVerdict(name, excludedThreadName(name));
+            threadVerdicts.set(verdict);
+        }
+        return verdict.excluded;
+    }
+
+    private JoinPointVerdict getVerdict(JoinPoint.StaticPart staticPart) {
+        JoinPointVerdict verdict = verdicts.get(staticPart);
+        if (verdict == null) {
+            String methodName = staticPart.getSignature().getName();
+            verdict = new JoinPointVerdict(deniedMethod(methodName) || deniedMethodSymbol(methodName));
+            JoinPointVerdict existing = verdicts.putIfAbsent(staticPart, verdict);
+            if (existing != null) verdict = existing;
+        }
+        return verdict;
+    }
+
+    private static class JoinPointVerdict {
+        private final boolean deniedMethod;
+        private volatile ClassVerdict lastClass;
+
+        private JoinPointVerdict(boolean deniedMethod) {
+            this.deniedMethod = deniedMethod;
+        }
+    }
+
+    /**
+     * Verdict of the last target class seen at join point. Class is weakly referenced to let it be unloaded.
+     */
+    private static class ClassVerdict {
+        private final WeakReference<Class> clazz;
+        private final boolean allowed;
+
+        private ClassVerdict(Class clazz, boolean allowed) {
+            this.clazz = new WeakReference<Class>(clazz);
+            this.allowed = allowed;
+        }
+    }
+
+    private static class ThreadVerdict {
+        private final String name;
+        private final boolean excluded;
+
+        private ThreadVerdict(String name, boolean excluded) {
+            this.name = name;
+            this.excluded = excluded;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.filter;
+
+/**
+ * Prefix trie. Answers whether a string starts with any of the patterns in one pass over the string.
+ */
+public class PrefixMatcher {
+    private final Node root = new Node();
+
+    public PrefixMatcher(String... patterns) {
+        for (String pattern : patterns) {
+            Node node = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.childOrCreate(pattern.charAt(i));
+            }
+            node.terminal = true;
+        }
+    }
+
+    public boolean matches(String value) {
+        if (value == null) return false;
+        Node node = root;
+        for (int i = 0; !node.terminal; i++) {
+            if (i == value.length()) return false;
+            node = node.child(value.charAt(i));
+            if (node == null) return false;
+        }
+        return true;
+    }
+
+    static class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        boolean terminal;
+        Node failure;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                char[] newKeys = new char[keys.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, keys.length);
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newKeys[keys.length] = c;
+                newChildren[children.length] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.tankist88.carpenter.collector.filter;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton. Answers whether a string contains any of the patterns in one pass over the string.
+ */
+public class SubstringMatcher {
+    private final PrefixMatcher.Node root = new PrefixMatcher.Node();
+
+    public SubstringMatcher(String... patterns) {
+        for (String pattern : patterns) {
+            PrefixMatcher.Node node = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.childOrCreate(pattern.charAt(i));
+            }
+            node.terminal = true;
+        }
+        buildFailureLinks();
+    }
+
+    public boolean matches(String value) {
+        if (value == null) return false;
+        if (root.terminal) return true;
+        PrefixMatcher.Node node = root;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            PrefixMatcher.Node next = node.child(c);
+            while (next == null && node != root) {
+                node = node.failure;
+                next = node.child(c);
+            }
+            node = next != null ? next : root;
+            if (node.terminal) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Breadth-first, so failure link of the parent is ready before its children. A node is made terminal
+     * if any node on its failure chain is, matching stops at the first terminal node.
+     */
+    private void buildFailureLinks() {
+        Queue<PrefixMatcher.Node> queue = new LinkedList<PrefixMatcher.Node>();
+        root.failure = root;
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            PrefixMatcher.Node node = queue.poll();
+            for (int i = 0; i < node.keys.length; i++) {
+                char c = node.keys[i];
+                PrefixMatcher.Node child = node.children[i];
+                if (node == root) {
+                    child.failure = root;
+                } else {
+                    PrefixMatcher.Node fail = node.failure;
+                    while (fail != root && fail.child(c) == null) {
+                        fail = fail.failure;
+                    }
+                    PrefixMatcher.Node target = fail.child(c);
+                    child.failure = target != null ? target : root;
+                }
+                child.terminal |= child.failure.terminal;
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+/**
+ * Hash of an argument, target or return value used in trace keys to tell calls of the same method apart.
+ */
+public interface ArgumentFingerprinter {
+    int fingerprint(Object value);
+}
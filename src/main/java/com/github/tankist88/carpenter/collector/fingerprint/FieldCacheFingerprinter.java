@@ -0,0 +1,220 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+import com.github.tankist88.carpenter.collector.util.ClassFields;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Content hash computed by walking object fields. Field lists are resolved once per class by
+ * {@link ClassFields} and read with typed getters, so primitives are not boxed. The walk stops at {@code maxDepth} levels of
+ * nested objects and after {@code maxNodes} visited values, which also ends walks over cyclic graphs.
+ * <p>
+ * Strings, boxed primitives, enums and classes are hashed by value. Other JDK types are hashed by their
+ * own {@code hashCode()}, except collections and maps which are walked element by element. Fields of
+ * application classes are walked directly, so no application code is called while hashing them.
+ * <p>
+ * If hashing fails, for example on concurrent modification of a collection, the value is fingerprinted
+ * by its class name.
+ */
+public class FieldCacheFingerprinter implements ArgumentFingerprinter {
+    private final int maxDepth;
+    private final int maxNodes;
+
+    private final ThreadLocal<Walk> walks = new ThreadLocal<Walk>() {
+        @Override
+        protected Walk initialValue() {
+            return new Walk();
+        }
+    };
+
+    public FieldCacheFingerprinter(int maxDepth, int maxNodes) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+    }
+
+    @Override
+    public int fingerprint(Object value) {
+        if (value == null) return 0;
+        Walk walk = walks.get();
+        // walk may be reentered if a woven collection is iterated, keep the outer budget
+        int outerNodes = walk.remainingNodes;
+        walk.remainingNodes = maxNodes;
+        try {
+            return hash(value, 0, walk);
+        } catch (RuntimeException rex) {
+            // concurrent modification by other application threads or failing hashCode() of a JDK type
+            return value.getClass().getName().hashCode();
+        } finally {
+            walk.remainingNodes = outerNodes;
+        }
+    }
+
+    private int hash(Object value, int depth, Walk walk) {
+        if (value == null) return 0;
+        if (walk.remainingNodes-- <= 0) return 0;
+        if (isValueType(value)) return valueHash(value);
+        Class clazz = value.getClass();
+        if (clazz.isArray()) return arrayHash(value, depth, walk);
+        if (depth >= maxDepth) return clazz.getName().hashCode();
+        if (isJdkClass(clazz)) {
+            if (value instanceof Collection) return collectionHash((Collection) value, depth, walk);
+            if (value instanceof Map) return mapHash((Map<?, ?>) value, depth, walk);
+            return value.hashCode();
+        }
+        ClassFields fields = ClassFields.of(clazz);
+        if (!fields.isAccessible()) return clazz.getName().hashCode();
+        int total = 17;
+        for (Field field : fields.getHashedFields()) {
+            int fieldHash;
+            if (field.getType().isPrimitive()) {
+                walk.remainingNodes--;
+                fieldHash = primitiveHash(field, value);
+            } else {
+                fieldHash = hash(get(field, value), depth + 1, walk);
+            }
+            total = total * 37 + fieldHash;
+        }
+        return total;
+    }
+
+    private int arrayHash(Object array, int depth, Walk walk) {
+        int total = 17;
+        if (array instanceof Object[]) {
+            Object[] objects = (Object[]) array;
+            for (int i = 0; i < objects.length && walk.remainingNodes > 0; i++) {
+                total = total * 37 + hash(objects[i], depth + 1, walk);
+            }
+            return total;
+        }
+        int length = Math.min(Array.getLength(array), Math.max(walk.remainingNodes, 0));
+        walk.remainingNodes -= length;
+        if (array instanceof int[]) {
+            int[] ints = (int[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + ints[i];
+        } else if (array instanceof long[]) {
+            long[] longs = (long[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + (int) (longs[i] ^ (longs[i] >>> 32));
+        } else if (array instanceof byte[]) {
+            byte[] bytes = (byte[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + bytes[i];
+        } else if (array instanceof char[]) {
+            char[] chars = (char[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + chars[i];
+        } else if (array instanceof short[]) {
+            short[] shorts = (short[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + shorts[i];
+        } else if (array instanceof boolean[]) {
+            boolean[] booleans = (boolean[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + (booleans[i] ? 0 : 1);
+        } else if (array instanceof double[]) {
+            double[] doubles = (double[]) array;
+            for (int i = 0; i < length; i++) {
+                long bits = Double.doubleToLongBits(doubles[i]);
+                total = total * 37 + (int) (bits ^ (bits >>> 32));
+            }
+        } else if (array instanceof float[]) {
+            float[] floats = (float[]) array;
+            for (int i = 0; i < length; i++) total = total * 37 + Float.floatToIntBits(floats[i]);
+        }
+        return total;
+    }
+
+    private int collectionHash(Collection collection, int depth, Walk walk) {
+        int total = 17 * 37 + collection.size();
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            List list = (List) collection;
+            for (int i = 0; i < list.size() && walk.remainingNodes > 0; i++) {
+                total = total * 37 + hash(list.get(i), depth + 1, walk);
+            }
+        } else if (collection instanceof Set) {
+            // iteration order of hash based sets depends on identity hashes of elements
+            for (Object element : collection) {
+                if (walk.remainingNodes <= 0) break;
+                total += hash(element, depth + 1, walk);
+            }
+        } else {
+            for (Object element : collection) {
+                if (walk.remainingNodes <= 0) break;
+                total = total * 37 + hash(element, depth + 1, walk);
+            }
+        }
+        return total;
+    }
+
+    private int mapHash(Map<?, ?> map, int depth, Walk walk) {
+        int total = 17 * 37 + map.size();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (walk.remainingNodes <= 0) break;
+            total += hash(entry.getKey(), depth + 1, walk) ^ hash(entry.getValue(), depth + 1, walk);
+        }
+        return total;
+    }
+
+    static boolean isValueType(Object value) {
+        return value instanceof String
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Byte
+                || value instanceof Short
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof Enum
+                || value instanceof Class;
+    }
+
+    /**
+     * Enum and class hashes are identity based, their names are used instead.
+     */
+    static int valueHash(Object value) {
+        if (value instanceof Enum) return ((Enum) value).name().hashCode();
+        if (value instanceof Class) return ((Class) value).getName().hashCode();
+        return value.hashCode();
+    }
+
+    private static boolean isJdkClass(Class clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("com.sun.");
+    }
+
+    private static Object get(Field field, Object owner) {
+        try {
+            return field.get(owner);
+        } catch (IllegalAccessException iex) {
+            return null;
+        }
+    }
+
+    private static int primitiveHash(Field field, Object owner) {
+        try {
+            Class type = field.getType();
+            if (type == int.class) return field.getInt(owner);
+            if (type == long.class) {
+                long value = field.getLong(owner);
+                return (int) (value ^ (value >>> 32));
+            }
+            if (type == boolean.class) return field.getBoolean(owner) ? 0 : 1;
+            if (type == byte.class) return field.getByte(owner);
+            if (type == char.class) return field.getChar(owner);
+            if (type == short.class) return field.getShort(owner);
+            if (type == double.class) {
+                long bits = Double.doubleToLongBits(field.getDouble(owner));
+                return (int) (bits ^ (bits >>> 32));
+            }
+            return Float.floatToIntBits(field.getFloat(owner));
+        } catch (IllegalAccessException iex) {
+            return 0;
+        }
+    }
+
+    private static class Walk {
+        private int remainingNodes;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getFingerprintMaxDepth;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getFingerprintMaxNodes;
+
+public enum FingerprintMode {
+    REFLECTION,
+    FIELDS,
+    SHALLOW,
+    IDENTITY;
+
+    public ArgumentFingerprinter create() {
+        switch (this) {
+            case REFLECTION:
+                return new ReflectionFingerprinter();
+            case FIELDS:
+                return new FieldCacheFingerprinter(getFingerprintMaxDepth(), getFingerprintMaxNodes());
+            case SHALLOW:
+                return new ShallowFingerprinter();
+            default:
+                return new IdentityFingerprinter();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+/**
+ * Identity hash of the value. Cheapest, but differs between runs of the application.
+ */
+public class IdentityFingerprinter implements ArgumentFingerprinter {
+    @Override
+    public int fingerprint(Object value) {
+        return System.identityHashCode(value);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * {@link HashCodeBuilder#reflectionHashCode(Object, String...)} of the value, as collector computed it before.
+ */
+public class ReflectionFingerprinter implements ArgumentFingerprinter {
+    @Override
+    public int fingerprint(Object value) {
+        return value != null ? HashCodeBuilder.reflectionHashCode(value) : 0;
+    }
+}
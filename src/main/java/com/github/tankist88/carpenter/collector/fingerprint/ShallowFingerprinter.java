@@ -0,0 +1,16 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+import static com.github.tankist88.carpenter.collector.fingerprint.FieldCacheFingerprinter.isValueType;
+import static com.github.tankist88.carpenter.collector.fingerprint.FieldCacheFingerprinter.valueHash;
+
+/**
+ * Value hash for strings, boxed primitives, enums and classes, class name hash for anything else.
+ * Stable between runs and never looks inside objects.
+ */
+public class ShallowFingerprinter implements ArgumentFingerprinter {
+    @Override
+    public int fingerprint(Object value) {
+        if (value == null) return 0;
+        return isValueType(value) ? valueHash(value) : value.getClass().getName().hashCode();
+    }
+}
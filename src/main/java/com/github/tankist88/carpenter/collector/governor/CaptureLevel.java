@@ -0,0 +1,56 @@
+package com.github.tankist88.carpenter.collector.governor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Capture rate of a method or a package: one of {@code stride} calls is captured. Also accumulates
+ * collector time spent on captured calls since the last adjustment.
+ */
+public class CaptureLevel {
+    private final String name;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong intervalNanos = new AtomicLong();
+    private volatile int stride = 1;
+    private volatile long lastIntervalNanos;
+
+    public CaptureLevel(String name) {
+        this.name = name;
+    }
+
+    public boolean admit() {
+        int s = stride;
+        return s <= 1 || calls.getAndIncrement() % s == 0;
+    }
+
+    public void addCost(long nanos) {
+        intervalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return cost since previous call
+     */
+    long takeIntervalNanos() {
+        long nanos = intervalNanos.getAndSet(0L);
+        lastIntervalNanos = nanos;
+        return nanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    void setStride(int stride) {
+        this.stride = stride;
+    }
+
+    /**
+     * @return collector time of the last adjustment interval
+     */
+    public long getLastIntervalNanos() {
+        return lastIntervalNanos;
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.tankist88.carpenter.collector.governor;
+
+public enum GovernorScope {
+    /**
+     * Capture rate is lowered for single methods
+     */
+    METHOD,
+    /**
+     * Capture rate is lowered for all methods of a package at once
+     */
+    PACKAGE
+}
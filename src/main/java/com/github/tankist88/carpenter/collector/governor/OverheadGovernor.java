@@ -0,0 +1,285 @@
+package com.github.tankist88.carpenter.collector.governor;
+
+import com.github.tankist88.carpenter.collector.metrics.StripedCounter;
+import com.github.tankist88.carpenter.collector.util.JoinPointMap;
+import org.aspectj.lang.JoinPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+
+/**
+ * Keeps collector overhead within a budget, given as percent of request time. Request time is the wall
+ * time of outermost woven calls. Collector time is the wall time the aspect spends on captured calls
+ * plus CPU time of dump workers handling them.
+ * <p>
+ * Once per interval the overhead of the interval is compared with the budget. Over budget, capture
+ * rate of the most expensive methods (or packages) is halved until the expected saving covers the
+ * excess. Below half of the budget, every reduced rate is doubled back.
+ */
+public class OverheadGovernor implements OverheadGovernorMBean {
+    private static final Logger logger = LoggerFactory.getLogger(OverheadGovernor.class);
+
+    public static final String OBJECT_NAME = "com.github.tankist88.carpenter.collector:type=OverheadGovernor";
+
+    public static final OverheadGovernor GOVERNOR = createGovernor();
+
+    private static final double RELAX_RATIO = 0.5;
+
+    private final boolean enabled;
+    private final GovernorScope scope;
+    private final int maxStride;
+    private final ThreadMXBean threadBean;
+    private final boolean threadCpuTime;
+
+    private final JoinPointMap<CaptureLevel> joinPointLevels = new JoinPointMap<CaptureLevel>();
+    private final ConcurrentMap<String, CaptureLevel> levels = new ConcurrentHashMap<String, CaptureLevel>();
+
+    private final StripedCounter requestNanos = new StripedCounter();
+    private final StripedCounter inlineNanos = new StripedCounter();
+    private final StripedCounter workerNanos = new StripedCounter();
+    private long lastRequestSum;
+    private long lastInlineSum;
+    private long lastWorkerSum;
+
+    private volatile double budgetPercent;
+    private volatile double overheadPercent;
+    private volatile long lastRequestNanos;
+    private volatile long lastInlineNanos;
+    private volatile long lastWorkerNanos;
+
+    public OverheadGovernor(boolean enabled, double budgetPercent, GovernorScope scope, int maxStride) {
+        this.enabled = enabled;
+        this.budgetPercent = budgetPercent;
+        this.scope = scope;
+        this.maxStride = Math.max(1, maxStride);
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.threadCpuTime = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+    }
+
+    private static OverheadGovernor createGovernor() {
+        OverheadGovernor governor = new OverheadGovernor(
+                isGovernorEnabled(),
+                getGovernorBudgetPercent(),
+                getGovernorScope(),
+                getGovernorMaxStride());
+        if (governor.isEnabled()) {
+            governor.registerMBean();
+            governor.start(getGovernorIntervalMillis());
+        }
+        return governor;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false if the call must not be captured to keep overhead within budget
+     */
+    public boolean admit(JoinPoint.StaticPart staticPart) {
+        return !enabled || getLevel(staticPart).admit();
+    }
+
+    public void recordRequest(long nanos) {
+        if (!enabled) return;
+        requestNanos.add(nanos);
+    }
+
+    /**
+     * @param nanos time the aspect spent capturing the call on the application thread
+     */
+    public void recordInline(JoinPoint.StaticPart staticPart, long nanos) {
+        if (!enabled) return;
+        inlineNanos.add(nanos);
+        getLevel(staticPart).addCost(nanos);
+    }
+
+    /**
+     * @return start time for {@link #recordWorker(JoinPoint.StaticPart, long)}, CPU time of the current
+     * thread if JVM supports it
+     */
+    public long workerStart() {
+        if (!enabled) return 0L;
+        return threadCpuTime ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    public void recordWorker(JoinPoint.StaticPart staticPart, long start) {
+        if (!enabled || staticPart == null) return;
+        long nanos = (threadCpuTime ? threadBean.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+        workerNanos.add(nanos);
+        getLevel(staticPart).addCost(nanos);
+    }
+
+    public CaptureLevel getLevel(JoinPoint.StaticPart staticPart) {
+        CaptureLevel level = joinPointLevels.get(staticPart);
+        if (level == null) {
+            String name = levelName(staticPart);
+            level = levels.get(name);
+            if (level == null) {
+                level = new CaptureLevel(name);
+                CaptureLevel existing = levels.putIfAbsent(name, level);
+                if (existing != null) level = existing;
+            }
+            joinPointLevels.putIfAbsent(staticPart, level);
+        }
+        return level;
+    }
+
+    private String levelName(JoinPoint.StaticPart staticPart) {
+        String typeName = staticPart.getSignature().getDeclaringTypeName();
+        if (scope == GovernorScope.PACKAGE) {
+            int dot = typeName.lastIndexOf('.');
+            return dot > 0 ? typeName.substring(0, dot) : "";
+        }
+        return typeName + "." + staticPart.getSignature().getName();
+    }
+
+    /**
+     * Compares overhead of the interval since previous call with the budget and adjusts capture levels.
+     */
+    public synchronized void adjust() {
+        long requestSum = requestNanos.sum();
+        long inlineSum = inlineNanos.sum();
+        long workerSum = workerNanos.sum();
+        long request = requestSum - lastRequestSum;
+        long inline = inlineSum - lastInlineSum;
+        long worker = workerSum - lastWorkerSum;
+        lastRequestSum = requestSum;
+        lastInlineSum = inlineSum;
+        lastWorkerSum = workerSum;
+        lastRequestNanos = request;
+        lastInlineNanos = inline;
+        lastWorkerNanos = worker;
+
+        List<CaptureLevel> byCost = new ArrayList<CaptureLevel>(levels.values());
+        for (CaptureLevel level : byCost) {
+            level.takeIntervalNanos();
+        }
+        if (request <= 0) return;
+
+        long cost = inline + worker;
+        double budget = budgetPercent;
+        overheadPercent = cost * 100.0 / request;
+        if (overheadPercent > budget) {
+            Collections.sort(byCost, new Comparator<CaptureLevel>() {
+                @Override
+                public int compare(CaptureLevel o1, CaptureLevel o2) {
+                    long c1 = o1.getLastIntervalNanos();
+                    long c2 = o2.getLastIntervalNanos();
+                    return c1 < c2 ? 1 : (c1 == c2 ? 0 : -1);
+                }
+            });
+            long excess = cost - (long) (budget / 100.0 * request);
+            for (CaptureLevel level : byCost) {
+                if (excess <= 0 || level.getLastIntervalNanos() == 0) break;
+                if (level.getStride() >= maxStride) continue;
+                level.setStride(Math.min(maxStride, level.getStride() * 2));
+                excess -= level.getLastIntervalNanos() / 2;
+                logger.info("Capture rate of " + level.getName() + " lowered to 1/" + level.getStride()
+                        + ", collector overhead " + format(overheadPercent) + "% exceeds " + format(budget) + "%");
+            }
+        } else if (overheadPercent < budget * RELAX_RATIO) {
+            for (CaptureLevel level : byCost) {
+                if (level.getStride() > 1) {
+                    level.setStride(level.getStride() / 2);
+                    logger.info("Capture rate of " + level.getName() + " raised to 1/" + level.getStride());
+                }
+            }
+        }
+    }
+
+    private static String format(double percent) {
+        return String.valueOf(Math.round(percent * 100) / 100.0);
+    }
+
+    @Override
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    @Override
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+
+    @Override
+    public double getOverheadPercent() {
+        return overheadPercent;
+    }
+
+    @Override
+    public long getLastRequestNanos() {
+        return lastRequestNanos;
+    }
+
+    @Override
+    public long getLastInlineNanos() {
+        return lastInlineNanos;
+    }
+
+    @Override
+    public long getLastWorkerNanos() {
+        return lastWorkerNanos;
+    }
+
+    @Override
+    public int getThrottledCount() {
+        int count = 0;
+        for (CaptureLevel level : levels.values()) {
+            if (level.getStride() > 1) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String[] getCaptureLevels() {
+        List<String> result = new ArrayList<String>();
+        for (CaptureLevel level : levels.values()) {
+            if (level.getStride() > 1) {
+                result.add("1/" + level.getStride() + " " + level.getName() + " " + level.getLastIntervalNanos() / 1000);
+            }
+        }
+        Collections.sort(result);
+        return result.toArray(new String[result.size()]);
+    }
+
+    @Override
+    public synchronized void resetLevels() {
+        for (CaptureLevel level : levels.values()) {
+            level.setStride(1);
+        }
+    }
+
+    private void start(long intervalMillis) {
+        Timer timer = new Timer("carpenter-governor", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                adjust();
+            }
+        }, intervalMillis, intervalMillis);
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException jex) {
+            logger.warn("Can't register " + OBJECT_NAME + ". " + jex.getMessage());
+        }
+    }
+}
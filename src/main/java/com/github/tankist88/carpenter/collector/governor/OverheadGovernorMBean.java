@@ -0,0 +1,35 @@
+package com.github.tankist88.carpenter.collector.governor;
+
+/**
+ * JMX view of {@link OverheadGovernor}.
+ */
+public interface OverheadGovernorMBean {
+    boolean isEnabled();
+
+    double getBudgetPercent();
+
+    void setBudgetPercent(double budgetPercent);
+
+    /**
+     * @return collector time as percent of request time in the last interval
+     */
+    double getOverheadPercent();
+
+    long getLastRequestNanos();
+
+    long getLastInlineNanos();
+
+    long getLastWorkerNanos();
+
+    int getThrottledCount();
+
+    /**
+     * @return "1/stride name collectorMicros" lines of methods or packages captured at a reduced rate
+     */
+    String[] getCaptureLevels();
+
+    /**
+     * Captures every call again.
+     */
+    void resetLevels();
+}
@@ -0,0 +1,8 @@
+package com.github.tankist88.carpenter.collector.keys;
+
+public enum KeyMode {
+    /** Keys built from thread, class and method names, record keys are MD5 of them. */
+    NAMES,
+    /** Keys built from numeric ids on dump workers, record keys are 64-bit hashes, see {@link MethodKeys}. */
+    IDS
+}
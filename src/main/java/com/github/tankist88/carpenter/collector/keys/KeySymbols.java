@@ -0,0 +1,46 @@
+package com.github.tankist88.carpenter.collector.keys;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Names of ids read from a {@link SymbolFile}, resolves keys of {@link KeyMode#IDS} mode.
+ */
+public class KeySymbols {
+    private final Map<Integer, String> names = new HashMap<Integer, String>();
+    private final Map<Integer, String> threads = new HashMap<Integer, String>();
+
+    void putName(int id, String name) {
+        names.put(id, name);
+    }
+
+    void putThread(int id, String threadKey) {
+        threads.put(id, threadKey);
+    }
+
+    public String getClassName(long methodId) {
+        return names.get(MethodKeys.classId(methodId));
+    }
+
+    public String getMethodName(long methodId) {
+        return names.get(MethodKeys.methodNameId(methodId));
+    }
+
+    public String getThreadKey(int threadId) {
+        return threadId < 0 ? MethodKeys.threadKey(threadId) : threads.get(threadId);
+    }
+
+    /**
+     * @param key method key built by {@link MethodKeys#key(int, long, int)}
+     * @return the same key in {@link KeyMode#NAMES} format, {@code threadKey + argsHashCode + "_" + class + "_" + method}
+     */
+    public String toNameKey(String key) {
+        String[] parts = key.split("_");
+        if (parts.length != 3) throw new IllegalArgumentException("Not a method key: " + key);
+        int threadId = (int) Long.parseLong(parts[0], 16);
+        long methodId = new BigInteger(parts[1], 16).longValue();
+        int argsHashCode = (int) Long.parseLong(parts[2], 16);
+        return getThreadKey(threadId) + argsHashCode + "_" + getClassName(methodId) + "_" + getMethodName(methodId);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.tankist88.carpenter.collector.keys;
+
+import com.github.tankist88.carpenter.collector.util.SymbolTable;
+import com.github.tankist88.carpenter.collector.util.ThreadSupport;
+
+/**
+ * Numeric keys of captured calls. Class and method names and thread keys get int ids once, a method
+ * is the pair of its class and method name ids packed into a long. Application threads only look up
+ * ids, keys are formatted on dump workers and record keys are cheap 64-bit hashes instead of MD5.
+ * Names of the ids are written next to the dump by {@link SymbolFile}.
+ * <p>
+ * Thread id is taken once per thread, a thread renamed later keeps the id of its first name. Only names of
+ * the first {@link #MAX_THREAD_NAMES} platform threads are interned. Virtual threads and platform threads
+ * beyond the limit get negative ids built from their thread id instead, so the thread table doesn't grow
+ * with every thread ever started.
+ */
+public class MethodKeys {
+    /**
+     * Class and method names, shared with the call stack of {@code ArgsHashCodeHolder}.
+     */
+    public static final SymbolTable NAMES = new SymbolTable();
+    public static final SymbolTable THREADS = new SymbolTable();
+
+    /**
+     * Method id of an empty call stack.
+     */
+    public static final long NO_METHOD = pack(-1, -1);
+
+    public static final int MAX_THREAD_NAMES = 1 << 16;
+
+    private static final int VIRTUAL_THREAD = Integer.MIN_VALUE;
+    private static final int NOT_INTERNED_THREAD = Integer.MIN_VALUE | 0x40000000;
+    private static final int THREAD_ID_MASK = 0x3fffffff;
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private static final ThreadLocal<Integer> threadIds = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return threadId(Thread.currentThread(), THREADS, MAX_THREAD_NAMES);
+        }
+    };
+
+    public static int threadId() {
+        return threadIds.get();
+    }
+
+    static int threadId(Thread thread, SymbolTable threads, int maxThreadNames) {
+        int threadBits = (int) (thread.getId() & THREAD_ID_MASK);
+        if (ThreadSupport.isVirtual(thread)) return VIRTUAL_THREAD | threadBits;
+        int id = threads.idOf(ThreadSupport.threadKey(thread), maxThreadNames);
+        return id >= 0 ? id : NOT_INTERNED_THREAD | threadBits;
+    }
+
+    /**
+     * @return thread key of a negative thread id, which has no name in the thread table
+     */
+    public static String threadKey(int threadId) {
+        String prefix = (threadId & NOT_INTERNED_THREAD) == NOT_INTERNED_THREAD ? "thread-" : "virtual-";
+        return prefix + (threadId & THREAD_ID_MASK);
+    }
+
+    public static long methodId(String className, String methodName) {
+        return pack(NAMES.idOf(className), NAMES.idOf(methodName));
+    }
+
+    public static long pack(int classId, int methodNameId) {
+        return (long) classId << 32 | (methodNameId & 0xffffffffL);
+    }
+
+    public static int classId(long methodId) {
+        return (int) (methodId >>> 32);
+    }
+
+    public static int methodNameId(long methodId) {
+        return (int) methodId;
+    }
+
+    /**
+     * @return "threadId_methodId_argsHashCode" in hex, method key of the call in {@link KeyMode#IDS} mode
+     */
+    public static String key(int threadId, long methodId, int argsHashCode) {
+        return Integer.toHexString(threadId) + "_" + Long.toHexString(methodId) + "_" + Integer.toHexString(argsHashCode);
+    }
+
+    /**
+     * @return hex of 64-bit hash of call and caller keys and service fields, key of the dump record
+     */
+    public static String recordKey(
+            int threadId,
+            long methodId,
+            int argsHashCode,
+            long callerMethodId,
+            int callerArgsHashCode,
+            int fieldsHashCode
+    ) {
+        long hash = SEED;
+        hash = combine(hash, (long) threadId << 32 | (argsHashCode & 0xffffffffL));
+        hash = combine(hash, methodId);
+        hash = combine(hash, (long) callerArgsHashCode << 32 | (fieldsHashCode & 0xffffffffL));
+        hash = combine(hash, callerMethodId);
+        return Long.toHexString(mix(hash));
+    }
+
+    static long combine(long hash, long value) {
+        return (hash ^ mix(value)) * SEED;
+    }
+
+    /**
+     * Finalizer of MurmurHash3.
+     */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.tankist88.carpenter.collector.keys;
+
+import com.github.tankist88.carpenter.collector.util.SymbolTable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Text file of ids used in keys, one {@code "n id name"} line per class or method name and one
+ * {@code "t id threadKey"} line per thread. Ids defined since the previous {@link #flush} are appended,
+ * so a dump record is written only after names of its ids.
+ */
+public class SymbolFile {
+    public static final String EXTENSION = "sym";
+
+    private static final String NAME = "n";
+    private static final String THREAD = "t";
+
+    private final File file;
+    private final SymbolTable names;
+    private final SymbolTable threads;
+    private int namesWritten;
+    private int threadsWritten;
+
+    public SymbolFile(File file, SymbolTable names, SymbolTable threads) {
+        this.file = file;
+        this.names = names;
+        this.threads = threads;
+    }
+
+    public synchronized void flush() throws IOException {
+        int namesSize = names.size();
+        int threadsSize = threads.size();
+        if (namesSize == namesWritten && threadsSize == threadsWritten) return;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try {
+            for (int id = namesWritten; id < namesSize; id++) {
+                writer.write(NAME + " " + id + " " + escape(names.nameOf(id)) + "\n");
+            }
+            for (int id = threadsWritten; id < threadsSize; id++) {
+                writer.write(THREAD + " " + id + " " + escape(threads.nameOf(id)) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        namesWritten = namesSize;
+        threadsWritten = threadsSize;
+    }
+
+    private static String escape(String name) {
+        return name.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    public static KeySymbols read(File file) throws IOException {
+        KeySymbols symbols = new KeySymbols();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int first = line.indexOf(' ');
+                int second = first > 0 ? line.indexOf(' ', first + 1) : -1;
+                if (second < 0) continue;
+                String kind = line.substring(0, first);
+                int id = Integer.parseInt(line.substring(first + 1, second));
+                String name = line.substring(second + 1);
+                if (NAME.equals(kind)) {
+                    symbols.putName(id, name);
+                } else if (THREAD.equals(kind)) {
+                    symbols.putThread(id, name);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,543 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+import com.github.tankist88.carpenter.collector.dump.DumpPipeline;
+import com.github.tankist88.carpenter.collector.offheap.OffHeapArena;
+import com.github.tankist88.carpenter.collector.snapshot.CaptureBudget;
+import com.github.tankist88.carpenter.collector.storage.NetworkTraceSink;
+import com.github.tankist88.carpenter.collector.util.JoinPointMap;
+import org.apache.commons.io.FileUtils;
+import org.aspectj.lang.JoinPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+
+/**
+ * Counters and timers of collector internals. Counters updated by application threads are striped,
+ * so recording them doesn't add contention to woven methods. Metrics are exposed as the
+ * {@value #OBJECT_NAME} MBean and optionally written as plain text to {@code metricsFile}.
+ */
+public class CollectorMetrics implements CollectorMetricsMBean {
+    private static final Logger logger = LoggerFactory.getLogger(CollectorMetrics.class);
+
+    public static final String OBJECT_NAME = "com.github.tankist88.carpenter.collector:type=CollectorMetrics";
+
+    public static final CollectorMetrics METRICS = createMetrics();
+
+    /**
+     * Stripes of per-method counters, fewer than of global counters to keep the footprint of many methods small
+     */
+    private static final int METHOD_STRIPES = 4;
+
+    private final boolean enabled;
+    private final int topMethods;
+
+    private final StripedCounter captured = new StripedCounter();
+    private final StripedCounter[] skipped;
+    private final JoinPointMap<StripedCounter> capturesByMethod = new JoinPointMap<StripedCounter>();
+
+    private final LatencyTimer queueLatency;
+    private final LatencyTimer dataProviderTimer;
+    private final LatencyTimer fillObjectTimer;
+    private final LatencyTimer fingerprintTimer;
+    private final LatencyTimer saveDumpTimer;
+    private final StripedCounter bytesWritten = new StripedCounter();
+    private final StripedCounter saveErrors = new StripedCounter();
+    private final LatencyTimer compressionTimer;
+    private final StripedCounter compressionInputBytes = new StripedCounter();
+    private final StripedCounter compressionOutputBytes = new StripedCounter();
+
+    private volatile DumpPipeline<?> pipeline;
+    private volatile OffHeapArena arena;
+    private volatile NetworkTraceSink networkSink;
+    private volatile CaptureBudget captureBudget;
+    private volatile File textFile;
+
+    public CollectorMetrics(boolean enabled, int topMethods) {
+        this.enabled = enabled;
+        this.topMethods = topMethods;
+        this.skipped = new StripedCounter[SkipReason.values().length];
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = new StripedCounter();
+        }
+        this.queueLatency = new LatencyTimer(enabled);
+        this.dataProviderTimer = new LatencyTimer(enabled);
+        this.fillObjectTimer = new LatencyTimer(enabled);
+        this.fingerprintTimer = new LatencyTimer(enabled);
+        this.saveDumpTimer = new LatencyTimer(enabled);
+        this.compressionTimer = new LatencyTimer(enabled);
+    }
+
+    private static CollectorMetrics createMetrics() {
+        CollectorMetrics metrics = new CollectorMetrics(isMetricsEnabled(), getMetricsTopMethods());
+        if (metrics.isEnabled() && isMetricsJmx()) {
+            metrics.registerMBean();
+        }
+        String file = getMetricsFile();
+        if (metrics.isEnabled() && file != null) {
+            metrics.startTextDump(new File(file), getMetricsIntervalMillis());
+        }
+        return metrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordCapture(JoinPoint.StaticPart staticPart) {
+        if (!enabled) return;
+        captured.increment();
+        if (topMethods <= 0) return;
+        StripedCounter count = capturesByMethod.get(staticPart);
+        if (count == null) {
+            count = new StripedCounter(METHOD_STRIPES);
+            StripedCounter existing = capturesByMethod.putIfAbsent(staticPart, count);
+            if (existing != null) count = existing;
+        }
+        count.increment();
+    }
+
+    public void recordSkip(SkipReason reason) {
+        if (!enabled) return;
+        skipped[reason.ordinal()].increment();
+    }
+
+    public void recordSave(long startNanos, int bytes) {
+        if (!enabled) return;
+        saveDumpTimer.stop(startNanos);
+        bytesWritten.add(bytes);
+    }
+
+    public void recordSaveError() {
+        if (!enabled) return;
+        saveErrors.increment();
+    }
+
+    public void recordCompressedBlock(int inputBytes, int outputBytes) {
+        if (!enabled) return;
+        compressionInputBytes.add(inputBytes);
+        compressionOutputBytes.add(outputBytes);
+    }
+
+    /**
+     * Time from the end of captured call till a dump worker takes its record.
+     */
+    public LatencyTimer getQueueLatency() {
+        return queueLatency;
+    }
+
+    public LatencyTimer getDataProviderTimer() {
+        return dataProviderTimer;
+    }
+
+    public LatencyTimer getFillObjectTimer() {
+        return fillObjectTimer;
+    }
+
+    public LatencyTimer getFingerprintTimer() {
+        return fingerprintTimer;
+    }
+
+    public LatencyTimer getSaveDumpTimer() {
+        return saveDumpTimer;
+    }
+
+    public LatencyTimer getCompressionTimer() {
+        return compressionTimer;
+    }
+
+    public void setPipeline(DumpPipeline<?> pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public void setArena(OffHeapArena arena) {
+        this.arena = arena;
+    }
+
+    public void setNetworkSink(NetworkTraceSink networkSink) {
+        this.networkSink = networkSink;
+    }
+
+    public void setCaptureBudget(CaptureBudget captureBudget) {
+        this.captureBudget = captureBudget;
+    }
+
+    public long getSkipped(SkipReason reason) {
+        return skipped[reason.ordinal()].sum();
+    }
+
+    @Override
+    public long getCapturedCalls() {
+        return captured.sum();
+    }
+
+    @Override
+    public long getSkippedDeniedMethod() {
+        return getSkipped(SkipReason.DENIED_METHOD);
+    }
+
+    @Override
+    public long getSkippedThreadName() {
+        return getSkipped(SkipReason.THREAD_NAME);
+    }
+
+    @Override
+    public long getSkippedPackage() {
+        return getSkipped(SkipReason.PACKAGE);
+    }
+
+    @Override
+    public long getSkippedProxy() {
+        return getSkipped(SkipReason.PROXY);
+    }
+
+    @Override
+    public long getSampledOut() {
+        return getSkipped(SkipReason.SAMPLED_OUT);
+    }
+
+    @Override
+    public long getSkippedThrottled() {
+        return getSkipped(SkipReason.THROTTLED);
+    }
+
+    @Override
+    public int getQueueSize() {
+        DumpPipeline<?> p = pipeline;
+        return p != null ? p.getQueueSize() : 0;
+    }
+
+    @Override
+    public long getEnqueuedRecords() {
+        DumpPipeline<?> p = pipeline;
+        return p != null ? p.getEnqueuedCount() : 0L;
+    }
+
+    @Override
+    public long getDroppedRecords() {
+        DumpPipeline<?> p = pipeline;
+        return p != null ? p.getDroppedCount() : 0L;
+    }
+
+    @Override
+    public long getProcessedRecords() {
+        DumpPipeline<?> p = pipeline;
+        return p != null ? p.getProcessedCount() : 0L;
+    }
+
+    @Override
+    public long getFailedRecords() {
+        DumpPipeline<?> p = pipeline;
+        return p != null ? p.getFailedCount() : 0L;
+    }
+
+    @Override
+    public long getQueueLatencyMeanNanos() {
+        return queueLatency.getMeanNanos();
+    }
+
+    @Override
+    public long getQueueLatencyMaxNanos() {
+        return queueLatency.getMaxNanos();
+    }
+
+    @Override
+    public long getDataProviderCount() {
+        return dataProviderTimer.getCount();
+    }
+
+    @Override
+    public long getDataProviderTotalNanos() {
+        return dataProviderTimer.getTotalNanos();
+    }
+
+    @Override
+    public long getDataProviderMaxNanos() {
+        return dataProviderTimer.getMaxNanos();
+    }
+
+    @Override
+    public long getFillObjectCount() {
+        return fillObjectTimer.getCount();
+    }
+
+    @Override
+    public long getFillObjectTotalNanos() {
+        return fillObjectTimer.getTotalNanos();
+    }
+
+    @Override
+    public long getFillObjectMaxNanos() {
+        return fillObjectTimer.getMaxNanos();
+    }
+
+    @Override
+    public long getFingerprintCount() {
+        return fingerprintTimer.getCount();
+    }
+
+    @Override
+    public long getFingerprintTotalNanos() {
+        return fingerprintTimer.getTotalNanos();
+    }
+
+    @Override
+    public long getFingerprintMaxNanos() {
+        return fingerprintTimer.getMaxNanos();
+    }
+
+    @Override
+    public long getSaveDumpCount() {
+        return saveDumpTimer.getCount();
+    }
+
+    @Override
+    public long getSaveDumpMeanNanos() {
+        return saveDumpTimer.getMeanNanos();
+    }
+
+    @Override
+    public long getSaveDumpMaxNanos() {
+        return saveDumpTimer.getMaxNanos();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getSaveErrors() {
+        return saveErrors.sum();
+    }
+
+    @Override
+    public long getCompressionCount() {
+        return compressionTimer.getCount();
+    }
+
+    @Override
+    public long getCompressionTotalNanos() {
+        return compressionTimer.getTotalNanos();
+    }
+
+    @Override
+    public long getCompressionInputBytes() {
+        return compressionInputBytes.sum();
+    }
+
+    @Override
+    public long getCompressionOutputBytes() {
+        return compressionOutputBytes.sum();
+    }
+
+    @Override
+    public long getOffHeapReservedBytes() {
+        OffHeapArena a = arena;
+        return a != null ? a.getReservedBytes() : 0L;
+    }
+
+    @Override
+    public long getOffHeapUsedBytes() {
+        OffHeapArena a = arena;
+        return a != null ? a.getUsedBytes() : 0L;
+    }
+
+    @Override
+    public long getOffHeapOverflowCount() {
+        OffHeapArena a = arena;
+        return a != null ? a.getOverflowCount() : 0L;
+    }
+
+    @Override
+    public long getNetworkSentRecords() {
+        NetworkTraceSink sink = networkSink;
+        return sink != null ? sink.getSentRecords() : 0L;
+    }
+
+    @Override
+    public long getNetworkDroppedRecords() {
+        NetworkTraceSink sink = networkSink;
+        return sink != null ? sink.getDroppedRecords() : 0L;
+    }
+
+    @Override
+    public long getNetworkReconnects() {
+        NetworkTraceSink sink = networkSink;
+        return sink != null ? sink.getReconnects() : 0L;
+    }
+
+    @Override
+    public int getNetworkBufferedBytes() {
+        NetworkTraceSink sink = networkSink;
+        return sink != null ? sink.getBufferedBytes() : 0;
+    }
+
+    @Override
+    public long getBudgetExceeded() {
+        CaptureBudget budget = captureBudget;
+        return budget != null ? budget.getExceeded() : 0L;
+    }
+
+    @Override
+    public long getBudgetSkipped() {
+        CaptureBudget budget = captureBudget;
+        return budget != null ? budget.getSkipped() : 0L;
+    }
+
+    @Override
+    public String[] getTopBudgetExceededMethods() {
+        CaptureBudget budget = captureBudget;
+        return budget != null ? budget.getTopExceeded(topMethods) : new String[0];
+    }
+
+    @Override
+    public String[] getTopMethods() {
+        // sums are taken once, so concurrent captures don't change the order while sorting
+        Map<JoinPoint.StaticPart, Long> counts = new HashMap<JoinPoint.StaticPart, Long>();
+        for (Map.Entry<JoinPoint.StaticPart, StripedCounter> entry : capturesByMethod.snapshot().entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        List<Map.Entry<JoinPoint.StaticPart, Long>> entries =
+                new ArrayList<Map.Entry<JoinPoint.StaticPart, Long>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<JoinPoint.StaticPart, Long>>() {
+            @Override
+            public int compare(Map.Entry<JoinPoint.StaticPart, Long> o1, Map.Entry<JoinPoint.StaticPart, Long> o2) {
+                long c1 = o1.getValue();
+                long c2 = o2.getValue();
+                return c1 < c2 ? 1 : (c1 == c2 ? 0 : -1);
+            }
+        });
+        int size = Math.min(topMethods, entries.size());
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            Map.Entry<JoinPoint.StaticPart, Long> entry = entries.get(i);
+            result[i] = entry.getValue() + " " + methodName(entry.getKey());
+        }
+        return result;
+    }
+
+    private static String methodName(JoinPoint.StaticPart staticPart) {
+        return staticPart.getSignature().getDeclaringTypeName() + "." + staticPart.getSignature().getName();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "capturedCalls", getCapturedCalls());
+        for (SkipReason reason : SkipReason.values()) {
+            line(sb, "skipped." + reason.name(), getSkipped(reason));
+        }
+        line(sb, "queueSize", getQueueSize());
+        line(sb, "enqueuedRecords", getEnqueuedRecords());
+        line(sb, "droppedRecords", getDroppedRecords());
+        line(sb, "processedRecords", getProcessedRecords());
+        line(sb, "failedRecords", getFailedRecords());
+        timer(sb, "queueLatency", queueLatency);
+        timer(sb, "dataProvider", dataProviderTimer);
+        timer(sb, "fillObject", fillObjectTimer);
+        timer(sb, "fingerprint", fingerprintTimer);
+        timer(sb, "saveDump", saveDumpTimer);
+        line(sb, "bytesWritten", getBytesWritten());
+        line(sb, "saveErrors", getSaveErrors());
+        timer(sb, "compression", compressionTimer);
+        line(sb, "compressionInputBytes", getCompressionInputBytes());
+        line(sb, "compressionOutputBytes", getCompressionOutputBytes());
+        line(sb, "offHeapReservedBytes", getOffHeapReservedBytes());
+        line(sb, "offHeapUsedBytes", getOffHeapUsedBytes());
+        line(sb, "offHeapOverflowCount", getOffHeapOverflowCount());
+        line(sb, "networkSentRecords", getNetworkSentRecords());
+        line(sb, "networkDroppedRecords", getNetworkDroppedRecords());
+        line(sb, "networkReconnects", getNetworkReconnects());
+        line(sb, "networkBufferedBytes", getNetworkBufferedBytes());
+        line(sb, "budgetExceeded", getBudgetExceeded());
+        line(sb, "budgetSkipped", getBudgetSkipped());
+        sb.append("topMethods:\n");
+        for (String method : getTopMethods()) {
+            sb.append("  ").append(method).append('\n');
+        }
+        sb.append("topBudgetExceededMethods:\n");
+        for (String method : getTopBudgetExceededMethods()) {
+            sb.append("  ").append(method).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String name, long value) {
+        sb.append(name).append(": ").append(value).append('\n');
+    }
+
+    private static void timer(StringBuilder sb, String name, LatencyTimer timer) {
+        line(sb, name + ".count", timer.getCount());
+        line(sb, name + ".totalNanos", timer.getTotalNanos());
+        line(sb, name + ".meanNanos", timer.getMeanNanos());
+        line(sb, name + ".maxNanos", timer.getMaxNanos());
+    }
+
+    @Override
+    public void reset() {
+        captured.reset();
+        for (StripedCounter counter : skipped) {
+            counter.reset();
+        }
+        capturesByMethod.clear();
+        queueLatency.reset();
+        dataProviderTimer.reset();
+        fillObjectTimer.reset();
+        fingerprintTimer.reset();
+        saveDumpTimer.reset();
+        bytesWritten.reset();
+        saveErrors.reset();
+        compressionTimer.reset();
+        compressionInputBytes.reset();
+        compressionOutputBytes.reset();
+    }
+
+    /**
+     * Overwrites metricsFile with current metrics, does nothing if the file is not set.
+     */
+    public void writeTextDump() {
+        File file = textFile;
+        if (file == null) return;
+        try {
+            FileUtils.writeStringToFile(file, dump(), "UTF-8");
+        } catch (IOException iex) {
+            logger.warn("Can't write collector metrics to " + file + ". " + iex.getMessage());
+        }
+    }
+
+    private void startTextDump(File file, long intervalMillis) {
+        this.textFile = file;
+        if (intervalMillis <= 0) return;
+        Timer timer = new Timer("carpenter-metrics", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                writeTextDump();
+            }
+        }, intervalMillis, intervalMillis);
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException jex) {
+            // for example collector is loaded by several class loaders of one JVM
+            logger.warn("Can't register " + OBJECT_NAME + ". " + jex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+/**
+ * JMX view of {@link CollectorMetrics}. Durations are in nanoseconds.
+ */
+public interface CollectorMetricsMBean {
+    long getCapturedCalls();
+
+    long getSkippedDeniedMethod();
+
+    long getSkippedThreadName();
+
+    long getSkippedPackage();
+
+    long getSkippedProxy();
+
+    long getSampledOut();
+
+    long getSkippedThrottled();
+
+    int getQueueSize();
+
+    long getEnqueuedRecords();
+
+    long getDroppedRecords();
+
+    long getProcessedRecords();
+
+    long getFailedRecords();
+
+    long getQueueLatencyMeanNanos();
+
+    long getQueueLatencyMaxNanos();
+
+    long getDataProviderCount();
+
+    long getDataProviderTotalNanos();
+
+    long getDataProviderMaxNanos();
+
+    long getFillObjectCount();
+
+    long getFillObjectTotalNanos();
+
+    long getFillObjectMaxNanos();
+
+    long getFingerprintCount();
+
+    long getFingerprintTotalNanos();
+
+    long getFingerprintMaxNanos();
+
+    long getSaveDumpCount();
+
+    long getSaveDumpMeanNanos();
+
+    long getSaveDumpMaxNanos();
+
+    long getBytesWritten();
+
+    long getSaveErrors();
+
+    /**
+     * @return number of compressed segment blocks
+     */
+    long getCompressionCount();
+
+    long getCompressionTotalNanos();
+
+    long getCompressionInputBytes();
+
+    long getCompressionOutputBytes();
+
+    /**
+     * @return direct memory reserved by the off-heap arena of captured payloads
+     */
+    long getOffHeapReservedBytes();
+
+    long getOffHeapUsedBytes();
+
+    /**
+     * @return payloads kept on heap because the off-heap arena was full
+     */
+    long getOffHeapOverflowCount();
+
+    long getNetworkSentRecords();
+
+    /**
+     * @return records not streamed to the receiver because the batch was full or the connection was lost
+     */
+    long getNetworkDroppedRecords();
+
+    long getNetworkReconnects();
+
+    int getNetworkBufferedBytes();
+
+    /**
+     * @return arguments, targets and return values captured as truncated because they were over the capture budget
+     */
+    long getBudgetExceeded();
+
+    /**
+     * @return values skipped because they exceeded the capture budget several times in a row
+     */
+    long getBudgetSkipped();
+
+    /**
+     * @return "count method" lines of methods with most exceeded capture budgets
+     */
+    String[] getTopBudgetExceededMethods();
+
+    /**
+     * @return "count method" lines of methods with most captured calls
+     */
+    String[] getTopMethods();
+
+    /**
+     * @return all metrics as plain text
+     */
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,64 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count, total and max of measured durations in nanoseconds. A disabled timer doesn't read the clock.
+ */
+public class LatencyTimer {
+    private final boolean enabled;
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyTimer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return start time to pass to {@link #stop(long)}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void stop(long startNanos) {
+        if (enabled) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void record(long nanos) {
+        if (!enabled) return;
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        // new max is rare, so the shared variable is mostly only read
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMeanNanos() {
+        long n = getCount();
+        return n > 0 ? getTotalNanos() / n : 0L;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0L);
+    }
+}
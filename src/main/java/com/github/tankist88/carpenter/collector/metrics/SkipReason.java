@@ -0,0 +1,31 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+/**
+ * Why a woven call was not captured.
+ */
+public enum SkipReason {
+    /**
+     * Method name is denied, for example hashCode or accessors of inner classes
+     */
+    DENIED_METHOD,
+    /**
+     * Called by a thread of excludedThreadNames
+     */
+    THREAD_NAME,
+    /**
+     * Neither target nor caller is in allowedPackagesForTests
+     */
+    PACKAGE,
+    /**
+     * Target is a dynamic proxy or invocation handler
+     */
+    PROXY,
+    /**
+     * Not chosen by the sampling policy
+     */
+    SAMPLED_OUT,
+    /**
+     * Capture rate of the method is lowered by the overhead governor
+     */
+    THROTTLED
+}
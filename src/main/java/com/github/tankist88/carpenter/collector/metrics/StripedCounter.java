@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter split into cells chosen by thread id. Cells are padded to separate cache lines, so
+ * application threads updating the counter at the same time don't contend on one variable.
+ * Reading the sum is slower and not atomic with concurrent updates.
+ */
+public class StripedCounter {
+    /**
+     * Longs per 64 byte cache line
+     */
+    private static final int PADDING = 8;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedCounter(int stripes) {
+        int size = 1;
+        while (size < stripes && size < MAX_STRIPES) {
+            size <<= 1;
+        }
+        this.cells = new AtomicLongArray(size * PADDING);
+        this.mask = size - 1;
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(cellIndex(), delta);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0L);
+        }
+    }
+
+    private int cellIndex() {
+        // thread ids are sequential, so consecutive threads get distinct cells
+        return ((int) Thread.currentThread().getId() & mask) * PADDING;
+    }
+}
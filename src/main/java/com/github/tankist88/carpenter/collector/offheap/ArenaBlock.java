@@ -0,0 +1,83 @@
+package com.github.tankist88.carpenter.collector.offheap;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Block of {@link OffHeapArena} memory. Written once by its owner, then read and freed by a dump worker.
+ */
+public class ArenaBlock {
+    private final OffHeapArena arena;
+    private final ByteBuffer buffer;
+    private final int sizeClass;
+    private final AtomicBoolean freed = new AtomicBoolean();
+    private int length;
+
+    ArenaBlock(OffHeapArena arena, ByteBuffer buffer, int sizeClass) {
+        this.arena = arena;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+    }
+
+    public void put(byte[] bytes, int offset, int len) {
+        buffer.put(bytes, offset, len);
+        length += len;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public InputStream openStream() {
+        if (freed.get()) throw new IllegalStateException("Block is freed");
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.limit(length);
+        return new ByteBufferInputStream(view);
+    }
+
+    /**
+     * Returns block to the arena. Later calls do nothing.
+     */
+    public void free() {
+        if (freed.compareAndSet(false, true)) {
+            arena.release(buffer, sizeClass);
+        }
+    }
+
+    public boolean isFreed() {
+        return freed.get();
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
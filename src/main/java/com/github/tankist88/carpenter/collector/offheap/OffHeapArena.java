@@ -0,0 +1,153 @@
+package com.github.tankist88.carpenter.collector.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct memory for captured payloads waiting for dump workers, so they don't live on the heap
+ * long enough to be promoted. Memory is reserved in slabs of {@code slabSize} bytes up to {@code maxBytes}
+ * and carved into blocks of power of two size classes, from {@value #MIN_BLOCK_SIZE} bytes to the slab size.
+ * Freed blocks go to the free list of their class and are reused, slabs are never released.
+ * <p>
+ * An allocation that doesn't fit into {@code maxBytes} or is larger than a slab fails and is counted
+ * as overflow, callers keep such payloads on the heap.
+ */
+public class OffHeapArena {
+    public static final int MIN_BLOCK_SIZE = 64;
+    private static final int MIN_BLOCK_SHIFT = 6;
+
+    private final int slabSize;
+    private final long maxBytes;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] freeLists;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    private ByteBuffer slab;
+    private volatile long reservedBytes;
+
+    /**
+     * @param slabSize rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public OffHeapArena(int slabSize, long maxBytes) {
+        this.slabSize = roundUp(Math.max(MIN_BLOCK_SIZE, slabSize));
+        this.maxBytes = maxBytes;
+        this.freeLists = new ConcurrentLinkedQueue[sizeClass(this.slabSize) + 1];
+        for (int i = 0; i < freeLists.length; i++) {
+            freeLists[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /**
+     * @return block holding a copy of the bytes or null if arena is out of memory
+     */
+    public ArenaBlock copyOf(byte[] bytes) {
+        ArenaBlock block = allocate(bytes.length);
+        if (block != null) block.put(bytes, 0, bytes.length);
+        return block;
+    }
+
+    /**
+     * @return empty block of at least length bytes or null if arena is out of memory
+     */
+    public ArenaBlock allocate(int length) {
+        if (length > slabSize) {
+            overflows.incrementAndGet();
+            return null;
+        }
+        int sizeClass = sizeClass(length);
+        ByteBuffer buffer = freeLists[sizeClass].poll();
+        if (buffer == null) {
+            buffer = carve(sizeClass);
+            if (buffer == null) {
+                overflows.incrementAndGet();
+                return null;
+            }
+        }
+        buffer.clear();
+        usedBytes.addAndGet(buffer.capacity());
+        allocations.incrementAndGet();
+        return new ArenaBlock(this, buffer, sizeClass);
+    }
+
+    void release(ByteBuffer buffer, int sizeClass) {
+        usedBytes.addAndGet(-buffer.capacity());
+        freeLists[sizeClass].offer(buffer);
+    }
+
+    private synchronized ByteBuffer carve(int sizeClass) {
+        int size = MIN_BLOCK_SIZE << sizeClass;
+        if (slab == null || slab.remaining() < size) {
+            if (reservedBytes + slabSize > maxBytes) return null;
+            if (slab != null) recycleTail();
+            slab = ByteBuffer.allocateDirect(slabSize);
+            reservedBytes += slabSize;
+        }
+        return slice(size);
+    }
+
+    /**
+     * Splits rest of the current slab into free blocks of smaller classes.
+     */
+    private void recycleTail() {
+        while (slab.remaining() >= MIN_BLOCK_SIZE) {
+            int sizeClass = sizeClass(Integer.highestOneBit(slab.remaining()));
+            freeLists[sizeClass].offer(slice(MIN_BLOCK_SIZE << sizeClass));
+        }
+    }
+
+    private ByteBuffer slice(int size) {
+        int position = slab.position();
+        slab.limit(position + size);
+        ByteBuffer block = slab.slice();
+        slab.limit(slab.capacity());
+        slab.position(position + size);
+        return block;
+    }
+
+    private static int sizeClass(int length) {
+        if (length <= MIN_BLOCK_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_BLOCK_SHIFT;
+    }
+
+    private static int roundUp(int size) {
+        int highest = Integer.highestOneBit(size);
+        return highest == size ? size : highest << 1;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return direct memory taken by slabs
+     */
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return size of blocks not freed yet
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+
+    /**
+     * @return allocations failed because of maxBytes or block size
+     */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+}
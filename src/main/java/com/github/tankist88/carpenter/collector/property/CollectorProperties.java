@@ -0,0 +1,337 @@
+package com.github.tankist88.carpenter.collector.property;
+
+import com.github.tankist88.carpenter.collector.codec.CodecType;
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.dump.DumpThreads;
+import com.github.tankist88.carpenter.collector.dump.OverflowPolicy;
+import com.github.tankist88.carpenter.collector.fingerprint.FingerprintMode;
+import com.github.tankist88.carpenter.collector.governor.GovernorScope;
+import com.github.tankist88.carpenter.collector.keys.KeyMode;
+import com.github.tankist88.carpenter.collector.sampling.SamplingPolicy;
+import com.github.tankist88.carpenter.collector.snapshot.ProviderGeneration;
+import com.github.tankist88.carpenter.collector.dump.PipelineMode;
+import com.github.tankist88.carpenter.collector.storage.StorageMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
+
+/**
+ * Collector runtime settings. Unlike {@code GenerationProperties} they are not part of carpenter.xml
+ * and are read from JVM system properties, for example {@code -Dcarpenter.collector.queueCapacity=5000}.
+ * <p>
+ * Settings are read by static initializers of the aspect and its helpers, so an invalid value is logged
+ * and replaced with the default instead of failing every woven method of the application.
+ */
+public class CollectorProperties {
+    private static final Logger logger = LoggerFactory.getLogger(CollectorProperties.class);
+
+    public static final String PREFIX = "carpenter.collector.";
+
+    public static boolean isCollectorEnabled() {
+        return getBoolean("enabled", true);
+    }
+
+    public static String getDisabledPackages() {
+        return getString("disabledPackages", null);
+    }
+
+    public static String getSwitchFile() {
+        return getString("switchFile", null);
+    }
+
+    public static long getSwitchIntervalMillis() {
+        return getLong("switchIntervalMillis", 1000L);
+    }
+
+    /**
+     * keyMode IDS with storageMode NETWORK falls back to NAMES, as symbols of ids are written only to
+     * a local file and never reach the receiver.
+     */
+    public static KeyMode getKeyMode() {
+        KeyMode keyMode = getEnum("keyMode", KeyMode.class, KeyMode.NAMES);
+        if (keyMode == KeyMode.IDS && getStorageMode() == StorageMode.NETWORK) {
+            logger.error(PREFIX + "keyMode IDS can't be used with NETWORK storageMode, NAMES is used");
+            return KeyMode.NAMES;
+        }
+        return keyMode;
+    }
+
+    public static PipelineMode getPipelineMode() {
+        return getEnum("pipelineMode", PipelineMode.class, PipelineMode.BOUNDED);
+    }
+
+    public static DumpThreads getDumpThreads() {
+        return getEnum("dumpThreads", DumpThreads.class, DumpThreads.PLATFORM);
+    }
+
+    public static int getThreadBufferCapacity() {
+        return getInt("threadBufferCapacity", 1024);
+    }
+
+    public static int getFlushBatchSize() {
+        return getInt("flushBatchSize", 256);
+    }
+
+    public static int getQueueCapacity() {
+        return getInt("queueCapacity", 10000);
+    }
+
+    public static OverflowPolicy getOverflowPolicy() {
+        return getEnum("overflowPolicy", OverflowPolicy.class, OverflowPolicy.DROP_NEWEST);
+    }
+
+    public static int getSampleRate() {
+        return getInt("sampleRate", 10);
+    }
+
+    public static long getBlockTimeoutMillis() {
+        return getLong("blockTimeoutMillis", 1000L);
+    }
+
+    public static long getShutdownTimeoutMillis() {
+        return getLong("shutdownTimeoutMillis", 30000L);
+    }
+
+    public static StorageMode getStorageMode() {
+        return getEnum("storageMode", StorageMode.class, StorageMode.FILES);
+    }
+
+    public static String getSegmentDir() {
+        return getString("segmentDir", loadProps().getObjectDumpDir() + "/segments");
+    }
+
+    public static long getSegmentSize() {
+        return getLong("segmentSize", 64L * 1024 * 1024);
+    }
+
+    public static int getSyncEveryRecords() {
+        return getInt("syncEveryRecords", 1000);
+    }
+
+    public static long getSyncIntervalMillis() {
+        return getLong("syncIntervalMillis", 1000L);
+    }
+
+    public static String getNetworkHost() {
+        return getString("networkHost", "localhost");
+    }
+
+    public static int getNetworkPort() {
+        return getInt("networkPort", 4560);
+    }
+
+    public static int getNetworkBufferBytes() {
+        return getInt("networkBufferBytes", 4 * 1024 * 1024);
+    }
+
+    public static long getNetworkReconnectMillis() {
+        return getLong("networkReconnectMillis", 1000L);
+    }
+
+    public static CodecType getCodecType() {
+        return getEnum("codec", CodecType.class, CodecType.JAVA);
+    }
+
+    public static FingerprintMode getFingerprintMode() {
+        return getEnum("fingerprint", FingerprintMode.class, FingerprintMode.FIELDS);
+    }
+
+    public static FingerprintMode getOutsideFingerprintMode() {
+        return getEnum("outsideFingerprint", FingerprintMode.class, FingerprintMode.SHALLOW);
+    }
+
+    public static int getFingerprintMaxDepth() {
+        return getInt("fingerprintMaxDepth", 3);
+    }
+
+    public static int getFingerprintMaxNodes() {
+        return getInt("fingerprintMaxNodes", 256);
+    }
+
+    public static ProviderGeneration getProviderGeneration() {
+        return getEnum("providerGeneration", ProviderGeneration.class, ProviderGeneration.SYNC);
+    }
+
+    public static boolean isOffHeap() {
+        return getBoolean("offHeap", false);
+    }
+
+    public static long getOffHeapMaxBytes() {
+        return getLong("offHeapMaxBytes", 64L * 1024 * 1024);
+    }
+
+    public static int getOffHeapSlabBytes() {
+        return getInt("offHeapSlabBytes", 1024 * 1024);
+    }
+
+    public static int getSnapshotMaxBytes() {
+        return getInt("snapshotMaxBytes", 64 * 1024);
+    }
+
+    public static int getCaptureMaxNodes() {
+        return getInt("captureMaxNodes", 0);
+    }
+
+    public static long getCaptureMaxMillis() {
+        return getLong("captureMaxMillis", 0L);
+    }
+
+    public static int getCaptureMaxBytes() {
+        return getInt("captureMaxBytes", 0);
+    }
+
+    public static int getCaptureSkipAfter() {
+        return getInt("captureSkipAfter", 3);
+    }
+
+    public static int getCaptureRetryAfter() {
+        return getInt("captureRetryAfter", 100);
+    }
+
+    public static SamplingPolicy getSamplingPolicy() {
+        return getEnum("sampling", SamplingPolicy.class, SamplingPolicy.ALL);
+    }
+
+    public static int getSamplingRatePerSecond() {
+        return getInt("samplingRatePerSecond", 10);
+    }
+
+    public static int getSamplingBurst() {
+        return getInt("samplingBurst", 100);
+    }
+
+    public static int getSamplingReservoirSize() {
+        return getInt("samplingReservoirSize", 64);
+    }
+
+    public static int getSamplingFirstDistinct() {
+        return getInt("samplingFirstDistinct", 32);
+    }
+
+    public static int getSamplingEveryM() {
+        return getInt("samplingEveryM", 100);
+    }
+
+    public static boolean isDedupProviders() {
+        return getBoolean("dedupProviders", false);
+    }
+
+    public static CompressionType getCompression() {
+        return getEnum("compression", CompressionType.class, CompressionType.NONE);
+    }
+
+    public static int getCompressionLevel() {
+        return getInt("compressionLevel", Deflater.BEST_SPEED);
+    }
+
+    public static int getCompressionBlockSize() {
+        return getInt("compressionBlockSize", 64 * 1024);
+    }
+
+    public static boolean isCompressionDictionary() {
+        return getBoolean("compressionDictionary", true);
+    }
+
+    public static boolean isGovernorEnabled() {
+        return getBoolean("governor", false);
+    }
+
+    public static double getGovernorBudgetPercent() {
+        return getDouble("governorBudgetPercent", 3.0);
+    }
+
+    public static GovernorScope getGovernorScope() {
+        return getEnum("governorScope", GovernorScope.class, GovernorScope.METHOD);
+    }
+
+    public static int getGovernorMaxStride() {
+        return getInt("governorMaxStride", 1024);
+    }
+
+    public static long getGovernorIntervalMillis() {
+        return getLong("governorIntervalMillis", 1000L);
+    }
+
+    public static boolean isMetricsEnabled() {
+        return getBoolean("metrics", true);
+    }
+
+    public static boolean isMetricsJmx() {
+        return getBoolean("metricsJmx", true);
+    }
+
+    public static String getMetricsFile() {
+        return getString("metricsFile", null);
+    }
+
+    public static long getMetricsIntervalMillis() {
+        return getLong("metricsIntervalMillis", 60000L);
+    }
+
+    public static int getMetricsTopMethods() {
+        return getInt("metricsTopMethods", 20);
+    }
+
+    static String getString(String name, String defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        return value != null && value.trim().length() > 0 ? value.trim() : defaultValue;
+    }
+
+    static int getInt(String name, int defaultValue) {
+        String value = getString(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    static long getLong(String name, long defaultValue) {
+        String value = getString(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    static double getDouble(String name, double defaultValue) {
+        String value = getString(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException nfe) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    static boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, null);
+        if (value == null) return defaultValue;
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            return invalid(name, value, defaultValue);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    static <T extends Enum<T>> T getEnum(String name, Class<T> enumClass, T defaultValue) {
+        String value = getString(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Enum.valueOf(enumClass, value.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException iex) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    private static <T> T invalid(String name, String value, T defaultValue) {
+        logger.warn("Invalid value of " + PREFIX + name + ": " + value + ", default " + defaultValue + " is used");
+        return defaultValue;
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+import org.aspectj.lang.JoinPoint;
+
+/**
+ * Decides whether a call of an allowed method is captured. Called before any provider is generated.
+ */
+public interface CaptureSampler {
+    /**
+     * @param staticPart join point of the method
+     * @param fingerprint fingerprint of arguments of the call and its caller
+     */
+    boolean sample(JoinPoint.StaticPart staticPart, int fingerprint);
+}
@@ -0,0 +1,46 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+/**
+ * Captures the first {@code firstDistinct} distinct argument fingerprints of a method, repeats of them
+ * are never captured. After that every {@code everyM}-th call with other fingerprints is captured.
+ */
+public class FirstDistinctSampler extends PerMethodSampler<FirstDistinctSampler.Counter> {
+    private final int firstDistinct;
+    private final int everyM;
+
+    public FirstDistinctSampler(int firstDistinct, int everyM) {
+        this.firstDistinct = Math.max(0, firstDistinct);
+        this.everyM = Math.max(1, everyM);
+    }
+
+    @Override
+    protected Counter createState() {
+        return new Counter(firstDistinct);
+    }
+
+    @Override
+    protected boolean sample(Counter counter, int fingerprint) {
+        return counter.offer(fingerprint, everyM);
+    }
+
+    static class Counter {
+        private final int[] fingerprints;
+        private int distinct;
+        private long calls;
+
+        Counter(int firstDistinct) {
+            this.fingerprints = new int[firstDistinct];
+        }
+
+        synchronized boolean offer(int fingerprint, int everyM) {
+            for (int i = 0; i < distinct; i++) {
+                if (fingerprints[i] == fingerprint) return false;
+            }
+            if (distinct < fingerprints.length) {
+                fingerprints[distinct++] = fingerprint;
+                return true;
+            }
+            return calls++ % everyM == 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+import com.github.tankist88.carpenter.collector.util.JoinPointMap;
+import org.aspectj.lang.JoinPoint;
+
+/**
+ * Sampler keeping separate state for every method, looked up by join point identity. Join points are weakly
+ * referenced, so states must not reference them.
+ */
+public abstract class PerMethodSampler<S> implements CaptureSampler {
+    private final JoinPointMap<S> states = new JoinPointMap<S>();
+
+    @Override
+    public boolean sample(JoinPoint.StaticPart staticPart, int fingerprint) {
+        S state = states.get(staticPart);
+        if (state == null) {
+            state = createState();
+            S existing = states.putIfAbsent(staticPart, state);
+            if (existing != null) state = existing;
+        }
+        return sample(state, fingerprint);
+    }
+
+    protected abstract S createState();
+
+    protected abstract boolean sample(S state, int fingerprint);
+}
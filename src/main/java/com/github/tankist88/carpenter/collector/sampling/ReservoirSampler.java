@@ -0,0 +1,55 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+import java.util.Random;
+
+/**
+ * Reservoir sampling (algorithm R) over distinct argument fingerprints of a method. A call whose
+ * fingerprint is already in the reservoir is a duplicate and is not captured. Otherwise the first
+ * {@code size} fingerprints are captured, the n-th after that replaces a random one with
+ * probability size/n, so captured calls stay spread over the whole run.
+ */
+public class ReservoirSampler extends PerMethodSampler<ReservoirSampler.Reservoir> {
+    private final int size;
+
+    public ReservoirSampler(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    @Override
+    protected Reservoir createState() {
+        return new Reservoir(size);
+    }
+
+    @Override
+    protected boolean sample(Reservoir reservoir, int fingerprint) {
+        return reservoir.offer(fingerprint);
+    }
+
+    static class Reservoir {
+        private final int[] fingerprints;
+        private final Random random = new Random();
+        private int count;
+        private long seen;
+
+        Reservoir(int size) {
+            this.fingerprints = new int[size];
+        }
+
+        synchronized boolean offer(int fingerprint) {
+            for (int i = 0; i < count; i++) {
+                if (fingerprints[i] == fingerprint) return false;
+            }
+            seen++;
+            if (count < fingerprints.length) {
+                fingerprints[count++] = fingerprint;
+                return true;
+            }
+            long slot = (long) (random.nextDouble() * seen);
+            if (slot < fingerprints.length) {
+                fingerprints[(int) slot] = fingerprint;
+                return true;
+            }
+            return false;
+        }
+    }
+}
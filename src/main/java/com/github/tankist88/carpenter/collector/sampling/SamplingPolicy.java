@@ -0,0 +1,42 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+import org.aspectj.lang.JoinPoint;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+
+public enum SamplingPolicy {
+    /**
+     * Every call is captured
+     */
+    ALL,
+    /**
+     * Per method token bucket, see {@link TokenBucketSampler}
+     */
+    TOKEN_BUCKET,
+    /**
+     * Per method reservoir of distinct fingerprints, see {@link ReservoirSampler}
+     */
+    RESERVOIR,
+    /**
+     * First N distinct fingerprints of method then 1/M of calls, see {@link FirstDistinctSampler}
+     */
+    FIRST_N_THEN_M;
+
+    public CaptureSampler create() {
+        switch (this) {
+            case TOKEN_BUCKET:
+                return new TokenBucketSampler(getSamplingRatePerSecond(), getSamplingBurst());
+            case RESERVOIR:
+                return new ReservoirSampler(getSamplingReservoirSize());
+            case FIRST_N_THEN_M:
+                return new FirstDistinctSampler(getSamplingFirstDistinct(), getSamplingEveryM());
+            default:
+                return new CaptureSampler() {
+                    @Override
+                    public boolean sample(JoinPoint.StaticPart staticPart, int fingerprint) {
+                        return true;
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+/**
+ * Captures up to {@code ratePerSecond} calls of a method per second on average, with bursts
+ * of up to {@code burst} calls.
+ */
+public class TokenBucketSampler extends PerMethodSampler<TokenBucketSampler.Bucket> {
+    private final double ratePerNano;
+    private final int burst;
+
+    public TokenBucketSampler(double ratePerSecond, int burst) {
+        this.ratePerNano = ratePerSecond > 0 ? ratePerSecond / 1000000000.0 : 0;
+        this.burst = Math.max(1, burst);
+    }
+
+    @Override
+    protected Bucket createState() {
+        return new Bucket(burst, System.nanoTime());
+    }
+
+    @Override
+    protected boolean sample(Bucket bucket, int fingerprint) {
+        return bucket.tryAcquire(System.nanoTime(), ratePerNano, burst);
+    }
+
+    static class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
+        synchronized boolean tryAcquire(long now, double ratePerNano, int burst) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+    }
+}
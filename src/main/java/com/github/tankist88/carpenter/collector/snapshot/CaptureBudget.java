@@ -0,0 +1,326 @@
+package com.github.tankist88.carpenter.collector.snapshot;
+
+import com.github.tankist88.carpenter.collector.util.ClassFields;
+import com.github.tankist88.carpenter.collector.util.JoinPointMap;
+import com.github.tankist88.object2source.dto.ProviderResult;
+import org.aspectj.lang.JoinPoint;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of a single provider generation, checked per argument, target and return value of captured methods.
+ * <p>
+ * Node count is checked before anything is copied or generated, by walking the value the way provider
+ * generation does: fields of application classes, elements of JDK collections and arrays, at most
+ * {@code maxDepth} levels deep. Generation time and serialized size of the provider are checked after
+ * generation, which can't be interrupted, so its result is thrown away. A value over any limit is captured
+ * as a truncated snapshot without provider. Limits of zero are not checked.
+ * <p>
+ * A slot which exceeded its budget {@code skipAfter} times in a row is skipped by later calls without
+ * walking the value. Every {@code retryAfter} skipped calls one value is captured again, and a value
+ * within the budget clears the strikes, so a slot recovers once its values get smaller.
+ */
+public class CaptureBudget {
+    public static final int TARGET = -1;
+    public static final int RETURN = -2;
+
+    private final int maxNodes;
+    private final int maxDepth;
+    private final long maxNanos;
+    private final int maxBytes;
+    private final int skipAfter;
+    private final int retryAfter;
+
+    private final JoinPointMap<MethodBudget> methods = new JoinPointMap<MethodBudget>();
+    private final AtomicLong exceeded = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public CaptureBudget(int maxNodes, int maxDepth, long maxMillis, int maxBytes, int skipAfter, int retryAfter) {
+        this.maxNodes = maxNodes;
+        this.maxDepth = maxDepth;
+        this.maxNanos = maxMillis * 1000000L;
+        this.maxBytes = maxBytes;
+        this.skipAfter = skipAfter;
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean isEnabled() {
+        return maxNodes > 0 || maxNanos > 0 || maxBytes > 0;
+    }
+
+    /**
+     * @return budget of the method, null if no limit is set
+     */
+    public MethodBudget forMethod(JoinPoint.StaticPart staticPart, int argCount) {
+        if (!isEnabled()) return null;
+        MethodBudget method = methods.get(staticPart);
+        if (method == null) {
+            String name = staticPart.getSignature().getDeclaringTypeName() + "." + staticPart.getSignature().getName();
+            method = new MethodBudget(name, argCount);
+            MethodBudget existing = methods.putIfAbsent(staticPart, method);
+            if (existing != null) method = existing;
+        }
+        return method;
+    }
+
+    /**
+     * @return values captured as truncated because they were over a limit
+     */
+    public long getExceeded() {
+        return exceeded.get();
+    }
+
+    /**
+     * @return values not captured because their slot is remembered as expensive
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return "count method" lines of methods with most exceeded budgets
+     */
+    public String[] getTopExceeded(int limit) {
+        List<MethodBudget> list = new ArrayList<MethodBudget>();
+        for (MethodBudget method : methods.snapshot().values()) {
+            if (method.getExceeded() > 0) list.add(method);
+        }
+        Collections.sort(list, new Comparator<MethodBudget>() {
+            @Override
+            public int compare(MethodBudget o1, MethodBudget o2) {
+                long c1 = o1.getExceeded();
+                long c2 = o2.getExceeded();
+                return c1 < c2 ? 1 : (c1 == c2 ? 0 : -1);
+            }
+        });
+        int size = Math.min(limit, list.size());
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            MethodBudget method = list.get(i);
+            result[i] = method.getExceeded() + " " + method.name;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the value has no more than maxNodes nodes within maxDepth
+     */
+    boolean withinNodes(Object value) {
+        if (maxNodes <= 0 || value == null) return true;
+        try {
+            return new NodeCounter(maxNodes).visit(value, 0);
+        } catch (RuntimeException rex) {
+            // concurrent modification of value by other application threads, leave it to generation
+            return true;
+        }
+    }
+
+    boolean withinTime(long nanos) {
+        return maxNanos <= 0 || nanos <= maxNanos;
+    }
+
+    boolean withinBytes(ProviderResult provider) {
+        if (maxBytes <= 0 || provider == null) return true;
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(new CountingOutputStream(maxBytes));
+            oos.writeObject(provider);
+            oos.close();
+            return true;
+        } catch (IOException iex) {
+            return false;
+        }
+    }
+
+    private static boolean isLeaf(Object value) {
+        return value instanceof CharSequence
+                || value instanceof Number
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Enum
+                || value instanceof Class;
+    }
+
+    private static boolean isJdkClass(Class clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("com.sun.");
+    }
+
+    /**
+     * Counts distinct objects and primitive array elements until the limit is reached.
+     */
+    private class NodeCounter {
+        private final IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        private int remaining;
+
+        private NodeCounter(int limit) {
+            this.remaining = limit;
+        }
+
+        /**
+         * @return false if the limit is exceeded
+         */
+        private boolean visit(Object value, int depth) {
+            if (value == null || visited.put(value, value) != null) return true;
+            if (--remaining < 0) return false;
+            Class clazz = value.getClass();
+            if (clazz.isArray()) {
+                if (clazz.getComponentType().isPrimitive()) {
+                    remaining -= Array.getLength(value);
+                    return remaining >= 0;
+                }
+                if (depth >= maxDepth) return true;
+                for (Object element : (Object[]) value) {
+                    if (!visit(element, depth + 1)) return false;
+                }
+                return true;
+            }
+            if (depth >= maxDepth || isLeaf(value)) return true;
+            if (isJdkClass(clazz)) {
+                if (value instanceof Collection) {
+                    for (Object element : (Collection<?>) value) {
+                        if (!visit(element, depth + 1)) return false;
+                    }
+                } else if (value instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        if (!visit(entry.getKey(), depth + 1) || !visit(entry.getValue(), depth + 1)) return false;
+                    }
+                }
+                return true;
+            }
+            for (Field field : ClassFields.of(clazz).getReferenceFields()) {
+                Object fieldValue;
+                try {
+                    fieldValue = field.get(value);
+                } catch (IllegalAccessException iex) {
+                    continue;
+                }
+                if (!visit(fieldValue, depth + 1)) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final int maxBytes;
+        private int count;
+
+        private CountingOutputStream(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            add(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            add(len);
+        }
+
+        private void add(int len) throws IOException {
+            count += len;
+            if (count > maxBytes) throw new IOException("Provider exceeds " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * Budget counters of one captured method.
+     */
+    public class MethodBudget {
+        private final String name;
+        private final Slot[] slots;
+        private final AtomicLong methodExceeded = new AtomicLong();
+
+        private MethodBudget(String name, int argCount) {
+            this.name = name;
+            this.slots = new Slot[argCount + 2];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot(this);
+            }
+        }
+
+        /**
+         * @param index argument index, {@link #TARGET} or {@link #RETURN}
+         */
+        public Slot slot(int index) {
+            return slots[index + 2];
+        }
+
+        public long getExceeded() {
+            return methodExceeded.get();
+        }
+    }
+
+    /**
+     * Budget of one argument, the target or the return value of a method.
+     */
+    public class Slot {
+        private final MethodBudget method;
+        private final AtomicInteger strikes = new AtomicInteger();
+        private final AtomicInteger skips = new AtomicInteger();
+
+        private Slot(MethodBudget method) {
+            this.method = method;
+        }
+
+        /**
+         * Called on the application thread before the value is copied or generated.
+         * @return false if the value must be captured as truncated
+         */
+        public boolean admit(Object value) {
+            if (isSkipped() && !retry()) {
+                skipped.incrementAndGet();
+                return false;
+            }
+            if (!withinNodes(value)) {
+                exceeded();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Called after generation of the value's provider.
+         * @return false if the provider must be thrown away and the value captured as truncated
+         */
+        public boolean accept(ProviderResult provider, long nanos) {
+            if (!withinTime(nanos) || !withinBytes(provider)) {
+                exceeded();
+                return false;
+            }
+            strikes.set(0);
+            return true;
+        }
+
+        public boolean isSkipped() {
+            return skipAfter > 0 && strikes.get() >= skipAfter;
+        }
+
+        /**
+         * @return true if the skipped call is the one of every retryAfter calls which is captured again
+         */
+        private boolean retry() {
+            return retryAfter > 0 && skips.incrementAndGet() % retryAfter == 0;
+        }
+
+        private void exceeded() {
+            strikes.incrementAndGet();
+            method.methodExceeded.incrementAndGet();
+            exceeded.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.tankist88.carpenter.collector.snapshot;
+
+public enum ProviderGeneration {
+    /**
+     * Providers are generated on the application thread
+     */
+    SYNC,
+    /**
+     * Application thread takes a snapshot of the value, providers are generated from it by dump workers
+     */
+    DEFERRED
+}
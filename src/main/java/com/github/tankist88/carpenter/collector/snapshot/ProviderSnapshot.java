@@ -0,0 +1,402 @@
+package com.github.tankist88.carpenter.collector.snapshot;
+
+import com.github.tankist88.carpenter.collector.metrics.LatencyTimer;
+import com.github.tankist88.carpenter.collector.offheap.ArenaBlock;
+import com.github.tankist88.carpenter.collector.offheap.OffHeapArena;
+import com.github.tankist88.carpenter.collector.util.ClassCache;
+import com.github.tankist88.object2source.SourceGenerator;
+import com.github.tankist88.object2source.dto.ProviderResult;
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+
+/**
+ * State of an argument, target or return value taken on the application thread, from which
+ * its provider is generated later.
+ * <p>
+ * Immutable values are kept as is. Other serializable values are copied by serialization, up to
+ * {@code maxBytes} of serialized state. Serialization is a faithful copy only for plain graphs, so
+ * a value is copied only if no application class in its graph has transient fields, own
+ * {@code writeObject}, {@code serialPersistentFields} or is {@link Externalizable}. JDK classes are
+ * trusted to restore their state. Values which can't be copied this way get their provider
+ * generated right away, as in {@link ProviderGeneration#SYNC} mode.
+ * <p>
+ * With an {@link OffHeapArena} serialized state and already generated providers are kept in direct
+ * memory until {@link #createProvider} or {@link #release()}, the heap copy dies young.
+ * <p>
+ * With a {@link CaptureBudget.Slot} values over the budget become truncated snapshots, which have no provider.
+ */
+public class ProviderSnapshot {
+    private static final ClassCache<Boolean> COPYABLE = new ClassCache<Boolean>() {
+        @Override
+        protected Boolean compute(Class clazz) {
+            return checkCopyable(clazz);
+        }
+    };
+
+    private final boolean fillObject;
+    private final boolean generated;
+    private final ProviderResult provider;
+    private final Object value;
+    private final byte[] state;
+    private final ArenaBlock block;
+    private final ClassLoader classLoader;
+    private final CaptureBudget.Slot slot;
+    private boolean truncated;
+
+    private ProviderSnapshot(
+            boolean fillObject,
+            boolean generated,
+            ProviderResult provider,
+            Object value,
+            byte[] state,
+            ArenaBlock block,
+            ClassLoader classLoader,
+            CaptureBudget.Slot slot
+    ) {
+        this.fillObject = fillObject;
+        this.generated = generated;
+        this.provider = provider;
+        this.value = value;
+        this.state = state;
+        this.block = block;
+        this.classLoader = classLoader;
+        this.slot = slot;
+    }
+
+    /**
+     * Snapshot of already generated provider.
+     */
+    public static ProviderSnapshot generated(ProviderResult provider) {
+        return generated(provider, null);
+    }
+
+    /**
+     * Snapshot of already generated provider, moved to the arena if it is not null and has room.
+     */
+    public static ProviderSnapshot generated(ProviderResult provider, OffHeapArena arena) {
+        if (arena != null && provider instanceof Serializable) {
+            ArenaBlock block = toArena(arena, serialize((Serializable) provider, arena.getSlabSize()));
+            if (block != null) {
+                return new ProviderSnapshot(false, true, null, null, null, block, null, null);
+            }
+        }
+        return new ProviderSnapshot(false, true, provider, null, null, null, null, null);
+    }
+
+    /**
+     * Snapshot of a value over its capture budget.
+     */
+    public static ProviderSnapshot truncated() {
+        ProviderSnapshot snapshot = new ProviderSnapshot(false, true, null, null, null, null, null, null);
+        snapshot.truncated = true;
+        return snapshot;
+    }
+
+    /**
+     * Snapshot of provider generated right away, as in {@link ProviderGeneration#SYNC} mode.
+     */
+    public static ProviderSnapshot generateDataProvider(
+            SourceGenerator sg,
+            Object value,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        if (slot != null && !slot.admit(value)) return truncated();
+        return generateNow(sg, false, value, arena, slot);
+    }
+
+    public static ProviderSnapshot generateFillObject(
+            SourceGenerator sg,
+            Object value,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        if (slot != null && !slot.admit(value)) return truncated();
+        return generateNow(sg, true, value, arena, slot);
+    }
+
+    /**
+     * Snapshot for {@link SourceGenerator#createDataProviderMethod(Object)}.
+     */
+    public static ProviderSnapshot dataProvider(SourceGenerator sg, Object value, int maxBytes) {
+        return take(sg, false, value, maxBytes, null, null);
+    }
+
+    public static ProviderSnapshot dataProvider(SourceGenerator sg, Object value, int maxBytes, OffHeapArena arena) {
+        return take(sg, false, value, maxBytes, arena, null);
+    }
+
+    public static ProviderSnapshot dataProvider(
+            SourceGenerator sg,
+            Object value,
+            int maxBytes,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        return take(sg, false, value, maxBytes, arena, slot);
+    }
+
+    /**
+     * Snapshot for {@link SourceGenerator#createFillObjectMethod(Object)}.
+     */
+    public static ProviderSnapshot fillObject(SourceGenerator sg, Object value, int maxBytes) {
+        return take(sg, true, value, maxBytes, null, null);
+    }
+
+    public static ProviderSnapshot fillObject(SourceGenerator sg, Object value, int maxBytes, OffHeapArena arena) {
+        return take(sg, true, value, maxBytes, arena, null);
+    }
+
+    public static ProviderSnapshot fillObject(
+            SourceGenerator sg,
+            Object value,
+            int maxBytes,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        return take(sg, true, value, maxBytes, arena, slot);
+    }
+
+    private static ProviderSnapshot take(
+            SourceGenerator sg,
+            boolean fillObject,
+            Object value,
+            int maxBytes,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        if (slot != null && !slot.admit(value)) {
+            return truncated();
+        }
+        if (isImmutable(value)) {
+            return new ProviderSnapshot(fillObject, false, null, value, null, null, null, slot);
+        }
+        if (value instanceof Serializable) {
+            byte[] state = serialize((Serializable) value, maxBytes);
+            if (state != null) {
+                ClassLoader classLoader = snapshotClassLoader(value);
+                ArenaBlock block = arena != null ? toArena(arena, state) : null;
+                return new ProviderSnapshot(fillObject, false, null, null, block == null ? state : null, block, classLoader, slot);
+            }
+        }
+        return generateNow(sg, fillObject, value, arena, slot);
+    }
+
+    /**
+     * @return context class loader of the application thread, it sees application classes inside JDK
+     * containers, whose own class loader is null
+     */
+    private static ClassLoader snapshotClassLoader(Object value) {
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        return contextLoader != null ? contextLoader : value.getClass().getClassLoader();
+    }
+
+    private static ProviderSnapshot generateNow(
+            SourceGenerator sg,
+            boolean fillObject,
+            Object value,
+            OffHeapArena arena,
+            CaptureBudget.Slot slot
+    ) {
+        long start = System.nanoTime();
+        ProviderResult provider = generate(sg, fillObject, value);
+        if (slot != null && !slot.accept(provider, System.nanoTime() - start)) return truncated();
+        return generated(provider, arena);
+    }
+
+    private static ArenaBlock toArena(OffHeapArena arena, byte[] bytes) {
+        return bytes != null ? arena.copyOf(bytes) : null;
+    }
+
+    /**
+     * Generates provider of the snapshot and frees its arena block. Called once, by dump workers.
+     * @return null if the snapshot is truncated
+     */
+    public ProviderResult createProvider(SourceGenerator sg) {
+        try {
+            if (generated) return block != null ? (ProviderResult) deserialize() : provider;
+            Object copy = state != null || block != null ? deserialize() : value;
+            long start = System.nanoTime();
+            ProviderResult result = generate(sg, fillObject, copy);
+            if (slot != null && !slot.accept(result, System.nanoTime() - start)) {
+                truncated = true;
+                return null;
+            }
+            return result;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Frees arena block of the snapshot, for example when its record is dropped.
+     */
+    public void release() {
+        if (block != null) block.free();
+    }
+
+    public boolean isDeferred() {
+        return !generated;
+    }
+
+    /**
+     * @return true if the value was over its capture budget, known for deferred snapshots after
+     * {@link #createProvider}
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private static ProviderResult generate(SourceGenerator sg, boolean fillObject, Object value) {
+        LatencyTimer timer = fillObject ? METRICS.getFillObjectTimer() : METRICS.getDataProviderTimer();
+        long start = timer.start();
+        try {
+            return fillObject ? sg.createFillObjectMethod(value) : sg.createDataProviderMethod(value);
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Number && value.getClass().getName().startsWith("java.lang.")
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Enum;
+    }
+
+    /**
+     * @return serialized state or null if value can't be serialized within maxBytes
+     */
+    private static byte[] serialize(Serializable value, int maxBytes) {
+        BoundedOutputStream bos = new BoundedOutputStream(maxBytes);
+        try {
+            ObjectOutputStream oos = new CopyOutputStream(bos);
+            oos.writeObject(value);
+            oos.close();
+            return bos.toByteArray();
+        } catch (IOException iex) {
+            // not serializable, not copyable or too large
+            return null;
+        } catch (RuntimeException rex) {
+            // concurrent modification of value by other application threads
+            return null;
+        }
+    }
+
+    /**
+     * @return true if serialization of the class restores the same state
+     */
+    private static boolean isCopyable(Class clazz) {
+        return COPYABLE.get(clazz);
+    }
+
+    private static boolean checkCopyable(Class clazz) {
+        if (clazz.isArray()) return true;
+        String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) return true;
+        if (Externalizable.class.isAssignableFrom(clazz)) return false;
+        try {
+            for (Class c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers)) {
+                        if (field.getName().equals("serialPersistentFields")) return false;
+                    } else if (Modifier.isTransient(modifiers)) {
+                        return false;
+                    }
+                }
+                try {
+                    c.getDeclaredMethod("writeObject", ObjectOutputStream.class);
+                    return false;
+                } catch (NoSuchMethodException nex) {
+                    // default serialization of the class
+                }
+            }
+        } catch (RuntimeException rex) {
+            // classes which can't be introspected are generated synchronously
+            return false;
+        }
+        return true;
+    }
+
+    private Object deserialize() {
+        try {
+            ClassLoaderObjectInputStream ois = new ClassLoaderObjectInputStream(
+                    classLoader != null ? classLoader : ProviderSnapshot.class.getClassLoader(),
+                    block != null ? block.openStream() : new ByteArrayInputStream(state));
+            try {
+                return ois.readObject();
+            } finally {
+                ois.close();
+            }
+        } catch (IOException iex) {
+            throw new IllegalStateException("Can't restore snapshot", iex);
+        } catch (ClassNotFoundException cex) {
+            throw new IllegalStateException("Can't restore snapshot", cex);
+        }
+    }
+
+    /**
+     * Stream which refuses objects of classes not restored faithfully by deserialization.
+     */
+    private static class CopyOutputStream extends ObjectOutputStream {
+        private CopyOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj != null && !isCopyable(obj.getClass())) {
+                throw new NotSerializableException(obj.getClass().getName() + " is not copied faithfully");
+            }
+            return obj;
+        }
+    }
+
+    private static class BoundedOutputStream extends OutputStream {
+        private final ByteArrayOutputStream bytes;
+        private final int maxBytes;
+
+        private BoundedOutputStream(int maxBytes) {
+            this.bytes = new ByteArrayOutputStream(Math.min(maxBytes, 512));
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            bytes.write(b, off, len);
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (bytes.size() + len > maxBytes) {
+                throw new IOException("Snapshot exceeds " + maxBytes + " bytes");
+            }
+        }
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.BlobRef;
+import com.github.tankist88.carpenter.collector.codec.BlobStore;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.BLOB_EXTENSION;
+
+/**
+ * {@link BlobStore} appending blobs to {@code .blob} files of a directory. Blob frame is
+ * {@code int length, byte[32] hash, byte[length - 32] body}.
+ * <p>
+ * Blobs of files already in the directory are indexed on open, so stored hashes are neither
+ * encoded nor written again. New blobs go to a file of this store, created on the first write.
+ * {@link #force()} must be called before records referring to the blobs are forced to disk.
+ */
+public class FileBlobStore implements BlobStore {
+    private final File dir;
+    private final String fileName;
+    private final Map<BlobRef, BlobPointer> index = new ConcurrentHashMap<BlobRef, BlobPointer>();
+
+    private FileChannel channel;
+    private boolean closed;
+
+    /**
+     * Store for reading blobs of directory.
+     */
+    public FileBlobStore(File dir) throws IOException {
+        this(dir, null);
+    }
+
+    /**
+     * @param fileName name of the file new blobs are appended to
+     */
+    public FileBlobStore(File dir, String fileName) throws IOException {
+        FileUtils.forceMkdir(dir);
+        this.dir = dir;
+        this.fileName = fileName;
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith("." + BLOB_EXTENSION);
+            }
+        });
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                scan(file);
+            }
+        }
+    }
+
+    @Override
+    public BlobRef put(byte[] body) throws IOException {
+        BlobRef ref = BlobRef.of(body);
+        if (index.containsKey(ref)) return ref;
+        synchronized (this) {
+            // rechecked, so a record never refers to a blob being written by other thread
+            if (!index.containsKey(ref)) {
+                append(ref, body);
+            }
+        }
+        return ref;
+    }
+
+    @Override
+    public byte[] get(BlobRef ref) throws IOException {
+        BlobPointer pointer = index.get(ref);
+        if (pointer == null) throw new IOException("Blob " + ref + " not found");
+        RandomAccessFile raf = new RandomAccessFile(new File(dir, pointer.fileName), "r");
+        try {
+            raf.seek(pointer.offset);
+            byte[] body = new byte[pointer.length];
+            raf.readFully(body);
+            return body;
+        } finally {
+            raf.close();
+        }
+    }
+
+    public boolean contains(BlobRef ref) {
+        return index.containsKey(ref);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public synchronized void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private void append(BlobRef ref, byte[] body) throws IOException {
+        if (closed) throw new IOException("Blob store is closed");
+        if (fileName == null) throw new IOException("Blob store is read only");
+        if (channel == null) {
+            channel = new RandomAccessFile(new File(dir, fileName), "rw").getChannel();
+            channel.position(channel.size());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + BlobRef.HASH_LENGTH + body.length);
+        buffer.putInt(BlobRef.HASH_LENGTH + body.length);
+        buffer.put(ref.getHash());
+        buffer.put(body);
+        buffer.flip();
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException iex) {
+            // partial frame would hide blobs appended after it
+            channel.truncate(start);
+            channel.position(start);
+            throw iex;
+        }
+        index.put(ref, new BlobPointer(fileName, start + 4 + BlobRef.HASH_LENGTH, body.length));
+    }
+
+    /**
+     * Indexes blobs of file. A frame cut short by a crash ends the file.
+     */
+    private void scan(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            long position = 0;
+            while (true) {
+                int length = in.readInt();
+                if (length < BlobRef.HASH_LENGTH) break;
+                byte[] hash = new byte[BlobRef.HASH_LENGTH];
+                in.readFully(hash);
+                int bodyLength = length - BlobRef.HASH_LENGTH;
+                if (in.skipBytes(bodyLength) < bodyLength) break;
+                index.put(new BlobRef(hash), new BlobPointer(file.getName(), position + 4 + BlobRef.HASH_LENGTH, bodyLength));
+                position += 4 + length;
+            }
+        } catch (EOFException eof) {
+            // end of file
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class BlobPointer {
+        private final String fileName;
+        private final long offset;
+        private final int length;
+
+        private BlobPointer(String fileName, long offset, int length) {
+            this.fileName = fileName;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
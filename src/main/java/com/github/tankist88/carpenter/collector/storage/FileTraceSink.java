@@ -0,0 +1,87 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.OBJ_FILE_EXTENSION;
+import static com.github.tankist88.object2source.util.GenerationUtil.getPackage;
+
+/**
+ * Writes every record to its own file {@code <dumpDir>/<package path>/<key>.obj}.
+ * Writers of different keys don't block each other, writers of the same key are serialized by lock striping.
+ */
+public class FileTraceSink implements TraceSink {
+    private static final int LOCK_STRIPES = 64;
+
+    private final String dumpDir;
+    private final Object[] locks;
+    private final Set<String> createdDirs;
+
+    public FileTraceSink(String dumpDir) {
+        this.dumpDir = dumpDir;
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.createdDirs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    @Override
+    public int write(String key, String className, Serializable object) throws IOException {
+        return writeSerialized(key, className, SerializationUtils.serialize(object));
+    }
+
+    /**
+     * Writes record already Java serialized, for example received by {@link TraceReceiver}.
+     */
+    public int writeSerialized(String key, String className, byte[] bytes) throws IOException {
+        String packageFileStruct = dumpDir + "/" + getPackage(className).replaceAll("\\.", "/");
+        if (!createdDirs.contains(packageFileStruct)) {
+            FileUtils.forceMkdir(new File(packageFileStruct));
+            createdDirs.add(packageFileStruct);
+        }
+        File file = new File(packageFileStruct, key + "." + OBJ_FILE_EXTENSION);
+        synchronized (locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES]) {
+            try {
+                writeFile(file, bytes);
+            } catch (FileNotFoundException fex) {
+                // directory may be removed at runtime, for example by cleanup of the dump dir
+                createdDirs.remove(packageFileStruct);
+                FileUtils.forceMkdir(new File(packageFileStruct));
+                createdDirs.add(packageFileStruct);
+                writeFile(file, bytes);
+            }
+        }
+        return bytes.length + 4;
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+        try {
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        } finally {
+            dos.close();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // every record is written and closed immediately
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,262 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.JavaSerializationCodec;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.carpenter.collector.util.ThreadSupport;
+import org.apache.commons.lang3.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.createHeader;
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.encodeRecordFrame;
+
+/**
+ * Streams records to a {@link TraceReceiver} over TCP instead of writing them to local disk.
+ * <p>
+ * Writers append record frames of {@link SegmentFormat} to a batch buffer of {@code bufferBytes}, a sender
+ * thread swaps the batch out and writes it to a non-blocking channel, so writers never wait for the network.
+ * Records which don't fit into the batch are dropped. Every connection starts with a segment header, records
+ * are Java serialized like in {@link FileTraceSink}.
+ * <p>
+ * When the connection is lost the batch being sent is dropped, since the receiver discards an incomplete
+ * frame anyway, and the sender reconnects after {@code reconnectMillis}.
+ */
+public class NetworkTraceSink implements TraceSink {
+    private static final Logger logger = LoggerFactory.getLogger(NetworkTraceSink.class);
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000L;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final InetSocketAddress address;
+    private final long reconnectMillis;
+    private final Thread sender;
+
+    private final AtomicLong sentRecords = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    // guarded by this
+    private ByteBuffer batch;
+    private int batchRecords;
+    private ByteBuffer sending;
+    private int sendingRecords;
+    private boolean closed;
+
+    private volatile boolean connected;
+
+    public NetworkTraceSink(InetSocketAddress address, int bufferBytes, long reconnectMillis) {
+        this.address = address;
+        this.reconnectMillis = reconnectMillis;
+        this.batch = ByteBuffer.allocate(bufferBytes);
+        this.sending = ByteBuffer.allocate(bufferBytes);
+        this.sending.flip();
+        this.sender = ThreadSupport.newThread(new Runnable() {
+            @Override
+            public void run() {
+                send();
+            }
+        }, "carpenter-network-sink", false);
+        this.sender.start();
+    }
+
+    @Override
+    public int write(String key, String className, Serializable object) throws IOException {
+        byte[] frame = encodeRecordFrame(new TraceRecord(key, className, SerializationUtils.serialize(object)));
+        synchronized (this) {
+            if (closed) throw new IOException("Network trace sink is closed");
+            if (frame.length > batch.remaining()) {
+                droppedRecords.incrementAndGet();
+                return 0;
+            }
+            boolean wasEmpty = batch.position() == 0;
+            batch.put(frame);
+            batchRecords++;
+            if (wasEmpty) notifyAll();
+        }
+        return frame.length;
+    }
+
+    /**
+     * Waits until all records written before are sent.
+     * @throws IOException if they are not sent within 5 seconds, for example because receiver is down
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MILLIS;
+        while (batch.position() > 0 || sending.hasRemaining()) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) throw new IOException("Records are not sent to " + address + " in time");
+            try {
+                wait(wait);
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted flush");
+            }
+        }
+    }
+
+    /**
+     * Sends records written before within 5 seconds and stops the sender.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            sender.join(FLUSH_TIMEOUT_MILLIS);
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+        }
+        sender.interrupt();
+    }
+
+    private void send() {
+        SocketChannel channel = null;
+        Selector selector = null;
+        ByteBuffer header = ByteBuffer.wrap(createHeader(JavaSerializationCodec.PAYLOAD_FORMAT));
+        try {
+            while (takeBatch()) {
+                try {
+                    if (channel == null) {
+                        channel = SocketChannel.open();
+                        channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                        channel.configureBlocking(false);
+                        selector = Selector.open();
+                        channel.register(selector, SelectionKey.OP_WRITE);
+                        header.rewind();
+                        writeFully(channel, selector, header);
+                        connected = true;
+                        logger.info("Sending trace records to " + address);
+                    }
+                    writeFully(channel, selector, sending);
+                    sent();
+                } catch (IOException iex) {
+                    if (connected || reconnects.get() == 0) {
+                        logger.warn("Can't send trace records to " + address + ". " + iex.getMessage());
+                    }
+                    connected = false;
+                    close(channel, selector);
+                    channel = null;
+                    selector = null;
+                    lost();
+                    reconnects.incrementAndGet();
+                    if (!sleep(reconnectMillis)) break;
+                }
+            }
+        } finally {
+            connected = false;
+            close(channel, selector);
+            synchronized (this) {
+                droppedRecords.addAndGet(batchRecords + sendingRecords);
+                batch.clear();
+                batchRecords = 0;
+                sending.clear().flip();
+                sendingRecords = 0;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for records and moves them from the batch to the sending buffer.
+     * @return false if the sink is closed and everything is sent
+     */
+    private synchronized boolean takeBatch() {
+        while (!sending.hasRemaining()) {
+            if (batch.position() > 0) {
+                ByteBuffer empty = sending;
+                sending = batch;
+                sending.flip();
+                sendingRecords = batchRecords;
+                empty.clear();
+                batch = empty;
+                batchRecords = 0;
+                return true;
+            }
+            if (closed) return false;
+            try {
+                wait();
+            } catch (InterruptedException iex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void sent() {
+        sentRecords.addAndGet(sendingRecords);
+        sendingRecords = 0;
+        notifyAll();
+    }
+
+    private synchronized void lost() {
+        droppedRecords.addAndGet(sendingRecords);
+        sendingRecords = 0;
+        sending.position(sending.limit());
+        notifyAll();
+    }
+
+    private synchronized boolean sleep(long millis) {
+        if (closed) return false;
+        try {
+            wait(millis);
+        } catch (InterruptedException iex) {
+            return false;
+        }
+        return !closed || batch.position() > 0;
+    }
+
+    private static void writeFully(SocketChannel channel, Selector selector, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (Thread.currentThread().isInterrupted()) throw new IOException("Interrupted write");
+            if (channel.write(buffer) == 0) {
+                selector.select(CONNECT_TIMEOUT_MILLIS);
+                selector.selectedKeys().clear();
+            }
+        }
+    }
+
+    private static void close(SocketChannel channel, Selector selector) {
+        try {
+            if (selector != null) selector.close();
+            if (channel != null) channel.close();
+        } catch (IOException iex) {
+            logger.warn("Can't close connection. " + iex.getMessage());
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getSentRecords() {
+        return sentRecords.get();
+    }
+
+    /**
+     * @return records dropped because the batch was full or the connection was lost
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    public synchronized int getBufferedBytes() {
+        return batch.position() + sending.remaining();
+    }
+}
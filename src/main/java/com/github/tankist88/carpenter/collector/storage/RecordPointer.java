@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+/**
+ * Location of a record frame inside the segment directory. Records of compressed segments are
+ * located by the offset of their block and the offset of the frame in the uncompressed block.
+ */
+public class RecordPointer {
+    private final String segmentName;
+    private final long offset;
+    private final int blockOffset;
+
+    public RecordPointer(String segmentName, long offset) {
+        this(segmentName, offset, -1);
+    }
+
+    /**
+     * @param blockOffset offset of the frame in the uncompressed block, -1 if record is not in a block
+     */
+    public RecordPointer(String segmentName, long offset, int blockOffset) {
+        this.segmentName = segmentName;
+        this.offset = offset;
+        this.blockOffset = blockOffset;
+    }
+
+    public String getSegmentName() {
+        return segmentName;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getBlockOffset() {
+        return blockOffset;
+    }
+
+    public boolean isInBlock() {
+        return blockOffset >= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecordPointer that = (RecordPointer) o;
+        return offset == that.offset && blockOffset == that.blockOffset && segmentName.equals(that.segmentName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * segmentName.hashCode() + (int) (offset ^ (offset >>> 32));
+        return 31 * result + blockOffset;
+    }
+
+    @Override
+    public String toString() {
+        return isInBlock() ? segmentName + "@" + offset + "+" + blockOffset : segmentName + "@" + offset;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.StringDictionary;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary layout of trace segment files.
+ * <pre>
+ * segment = header frame*
+ * header  = int MAGIC, int version, byte payloadFormat
+ * frame   = int length, byte type, body[length - 1]
+ * record body = UTF key, UTF className, int payloadLength, byte[payloadLength] payload
+ * dictionary body = int id, UTF value
+ * compression dictionary body = byte[length - 1] preset dictionary
+ * block body = byte compression, int uncompressedLength, byte[length - 6] compressed frames
+ * index   = int INDEX_VERSION_BLOCKS, int size, (UTF key, long offset, int blockOffset)[size]
+ * </pre>
+ * A dictionary frame precedes the first record of the segment using the entry.
+ * Payload format is the id of the {@link com.github.tankist88.carpenter.collector.codec.TraceRecordCodec}.
+ * <p>
+ * Segments of {@link #VERSION_BLOCKS} start with a compression dictionary frame, all other frames are
+ * packed into block frames. Record offset in the index is then the offset of its block, and block offset
+ * is the offset of the record frame in the uncompressed block, -1 for records outside of blocks. Index
+ * files written before blocks have no version and no block offsets.
+ */
+public class SegmentFormat {
+    public static final int MAGIC = 0x43545247;
+    public static final int VERSION = 1;
+    public static final int VERSION_BLOCKS = 2;
+    public static final int HEADER_LENGTH = 9;
+    public static final int INDEX_VERSION_BLOCKS = -2;
+
+    public static final byte FRAME_RECORD = 1;
+    public static final byte FRAME_DICTIONARY = 2;
+    public static final byte FRAME_BLOCK = 3;
+    public static final byte FRAME_COMPRESSION_DICTIONARY = 4;
+
+    /**
+     * Type, compression and uncompressed length of block frame
+     */
+    public static final int BLOCK_HEADER_LENGTH = 6;
+
+    public static final String SEGMENT_EXTENSION = "seg";
+    public static final String INDEX_EXTENSION = "idx";
+    public static final String BLOB_EXTENSION = "blob";
+
+    public static byte[] createHeader(byte payloadFormat) {
+        return createHeader(payloadFormat, VERSION);
+    }
+
+    public static byte[] createHeader(byte payloadFormat, int version) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_LENGTH);
+            DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeInt(MAGIC);
+            dos.writeInt(version);
+            dos.writeByte(payloadFormat);
+            return bos.toByteArray();
+        } catch (IOException iex) {
+            throw new IllegalStateException(iex);
+        }
+    }
+
+    /**
+     * @return payload format of segment
+     */
+    public static byte readHeader(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a trace segment");
+        }
+        int version = in.readInt();
+        if (version != VERSION && version != VERSION_BLOCKS) {
+            throw new IOException("Unsupported trace segment version " + version);
+        }
+        return in.readByte();
+    }
+
+    public static byte[] encodeRecordFrame(TraceRecord record) {
+        try {
+            byte[] payload = record.getPayload();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(payload.length + 128);
+            DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeInt(0);
+            dos.writeByte(FRAME_RECORD);
+            dos.writeUTF(record.getKey());
+            dos.writeUTF(record.getClassName());
+            dos.writeInt(payload.length);
+            dos.write(payload);
+            byte[] frame = bos.toByteArray();
+            writeInt(frame, 0, frame.length - 4);
+            return frame;
+        } catch (IOException iex) {
+            throw new IllegalStateException(iex);
+        }
+    }
+
+    public static TraceRecord decodeRecordBody(byte[] frameBody) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frameBody, 1, frameBody.length - 1));
+        String key = in.readUTF();
+        String className = in.readUTF();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new TraceRecord(key, className, payload);
+    }
+
+    public static byte[] encodeDictionaryFrame(int id, String value) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(value.length() + 16);
+            DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeInt(0);
+            dos.writeByte(FRAME_DICTIONARY);
+            dos.writeInt(id);
+            dos.writeUTF(value);
+            byte[] frame = bos.toByteArray();
+            writeInt(frame, 0, frame.length - 4);
+            return frame;
+        } catch (IOException iex) {
+            throw new IllegalStateException(iex);
+        }
+    }
+
+    public static void decodeDictionaryBody(byte[] frameBody, StringDictionary dictionary) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frameBody, 1, frameBody.length - 1));
+        int id = in.readInt();
+        dictionary.define(id, in.readUTF());
+    }
+
+    public static byte[] encodeCompressionDictionaryFrame(byte[] dictionary) {
+        byte[] frame = new byte[5 + dictionary.length];
+        writeInt(frame, 0, frame.length - 4);
+        frame[4] = FRAME_COMPRESSION_DICTIONARY;
+        System.arraycopy(dictionary, 0, frame, 5, dictionary.length);
+        return frame;
+    }
+
+    public static byte[] encodeBlockFrame(byte compression, int uncompressedLength, byte[] compressed) {
+        byte[] frame = new byte[4 + BLOCK_HEADER_LENGTH + compressed.length];
+        writeInt(frame, 0, frame.length - 4);
+        frame[4] = FRAME_BLOCK;
+        frame[5] = compression;
+        writeInt(frame, 6, uncompressedLength);
+        System.arraycopy(compressed, 0, frame, 4 + BLOCK_HEADER_LENGTH, compressed.length);
+        return frame;
+    }
+
+    private static void writeInt(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) (value >>> 24);
+        buf[offset + 1] = (byte) (value >>> 16);
+        buf[offset + 2] = (byte) (value >>> 8);
+        buf[offset + 3] = (byte) value;
+    }
+}
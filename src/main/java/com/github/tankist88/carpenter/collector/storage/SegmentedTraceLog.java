@@ -0,0 +1,330 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.CompactBinaryCodec;
+import com.github.tankist88.carpenter.collector.codec.StringDictionary;
+import com.github.tankist88.carpenter.collector.codec.TraceRecordCodec;
+import com.github.tankist88.carpenter.collector.compress.BlockCompressor;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.*;
+
+/**
+ * Append-only trace log. Records are appended as length-prefixed frames to the current segment file
+ * through a {@link FileChannel}, the segment is rolled when it reaches the configured size.
+ * The channel is forced to disk once per {@code syncEveryRecords} records or {@code syncIntervalMillis},
+ * whichever comes first. The interval is also checked by a timer, so the last records of an idle
+ * application don't wait for the next write. For every closed segment an index file {@code <segment>.idx} with
+ * the latest offset of each record key is written next to it.
+ * <p>
+ * Records are encoded by the {@link TraceRecordCodec} outside of the log lock. Dictionary entries
+ * created by the codec are written to the current segment before the next record, so every segment
+ * can be decoded on its own.
+ * <p>
+ * With a {@link FileBlobStore} data providers are stored in it once per distinct content, and records
+ * refer to them by hash. The blob store is forced to disk before the segment, so a synced record never
+ * refers to a lost blob.
+ * <p>
+ * With a {@link BlockCompressor} frames are collected into blocks of {@code blockSize} bytes, and every
+ * block is compressed as a whole. A block is also written before every sync, so compression doesn't
+ * delay durability of records.
+ */
+public class SegmentedTraceLog implements TraceSink {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedTraceLog.class);
+
+    private final File dir;
+    private final long maxSegmentBytes;
+    private final int syncEveryRecords;
+    private final long syncIntervalMillis;
+    private final TraceRecordCodec codec;
+    private final FileBlobStore blobStore;
+    private final BlockCompressor compressor;
+    private final int blockSize;
+    private final BlockBuffer block;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final String namePrefix;
+    private final Timer syncTimer;
+
+    private FileChannel channel;
+    private String segmentName;
+    private Map<String, RecordPointer> segmentIndex;
+    private int segmentSeq;
+    private int segmentDictionarySize;
+    private int unsyncedRecords;
+    private long lastSyncTime;
+    private boolean closed;
+
+    public SegmentedTraceLog(
+            File dir,
+            long maxSegmentBytes,
+            int syncEveryRecords,
+            long syncIntervalMillis,
+            TraceRecordCodec codec
+    ) throws IOException {
+        this(dir, maxSegmentBytes, syncEveryRecords, syncIntervalMillis, codec, null, null, 0);
+    }
+
+    /**
+     * Log with {@link CompactBinaryCodec} moving data providers to the blob store.
+     */
+    public SegmentedTraceLog(
+            File dir,
+            long maxSegmentBytes,
+            int syncEveryRecords,
+            long syncIntervalMillis,
+            FileBlobStore blobStore
+    ) throws IOException {
+        this(dir, maxSegmentBytes, syncEveryRecords, syncIntervalMillis, new CompactBinaryCodec(blobStore), blobStore, null, 0);
+    }
+
+    /**
+     * @param blobStore blob store of the codec or null
+     * @param compressor compressor of blocks or null to write frames as is
+     * @param blockSize uncompressed size after which block is compressed and written
+     */
+    public SegmentedTraceLog(
+            File dir,
+            long maxSegmentBytes,
+            int syncEveryRecords,
+            long syncIntervalMillis,
+            TraceRecordCodec codec,
+            FileBlobStore blobStore,
+            BlockCompressor compressor,
+            int blockSize
+    ) throws IOException {
+        FileUtils.forceMkdir(dir);
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.codec = codec;
+        this.blobStore = blobStore;
+        this.compressor = compressor;
+        this.blockSize = blockSize;
+        this.block = compressor != null ? new BlockBuffer(blockSize) : null;
+        this.namePrefix = "trace-" + System.currentTimeMillis() + "-";
+        // longer intervals, like Long.MAX_VALUE of DumpCompactor, sync by record count and on close only
+        this.syncTimer = syncIntervalMillis > 0 && syncIntervalMillis <= Integer.MAX_VALUE ? startSyncTimer() : null;
+    }
+
+    @Override
+    public int write(String key, String className, Serializable object) throws IOException {
+        return writeEncoded(new TraceRecord(key, className, codec.encode(object, dictionary)));
+    }
+
+    /**
+     * Appends record already encoded by the codec of this log and its dictionary.
+     * @return size of record frame, not counting dictionary frames written before it
+     */
+    public int writeEncoded(TraceRecord record) throws IOException {
+        byte[] frame = encodeRecordFrame(record);
+        synchronized (this) {
+            if (closed) throw new IOException("Trace log is closed");
+            // size of compressed block is not known yet, so the segment may end up smaller than max
+            long pending = block != null ? block.size() : 0;
+            if (channel == null || channel.position() + pending + frame.length > maxSegmentBytes) {
+                rollSegment();
+            }
+            int dictionarySize = dictionary.size();
+            for (int id = segmentDictionarySize; id < dictionarySize; id++) {
+                append(encodeDictionaryFrame(id, dictionary.get(id)));
+            }
+            segmentDictionarySize = dictionarySize;
+            // block is written at the current position of the channel
+            RecordPointer pointer = new RecordPointer(segmentName, channel.position(), block != null ? block.size() : -1);
+            append(frame);
+            segmentIndex.put(record.getKey(), pointer);
+            unsyncedRecords++;
+            long now = System.currentTimeMillis();
+            if (unsyncedRecords >= syncEveryRecords || now - lastSyncTime >= syncIntervalMillis) {
+                sync(now);
+            }
+        }
+        return frame.length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (channel != null) {
+            sync(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (syncTimer != null) {
+            syncTimer.cancel();
+        }
+        if (blobStore != null) {
+            blobStore.force();
+        }
+        closeSegment();
+        if (blobStore != null) {
+            blobStore.close();
+        }
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public TraceRecordCodec getCodec() {
+        return codec;
+    }
+
+    public FileBlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    public BlockCompressor getCompressor() {
+        return compressor;
+    }
+
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void append(byte[] frame) throws IOException {
+        if (block == null) {
+            writeFully(frame);
+        } else {
+            block.write(frame, 0, frame.length);
+            if (block.size() >= blockSize) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (block == null || block.size() == 0) return;
+        long start = METRICS.getCompressionTimer().start();
+        byte[] compressed = compressor.compress(block.buffer(), 0, block.size());
+        METRICS.getCompressionTimer().stop(start);
+        METRICS.recordCompressedBlock(block.size(), compressed.length);
+        writeFully(encodeBlockFrame(compressor.getId(), block.size(), compressed));
+        block.reset();
+    }
+
+    /**
+     * Syncs records written more than syncIntervalMillis ago, called by the timer.
+     */
+    private synchronized void syncIfDue() {
+        if (closed || channel == null || unsyncedRecords == 0) return;
+        long now = System.currentTimeMillis();
+        if (now - lastSyncTime < syncIntervalMillis) return;
+        try {
+            sync(now);
+        } catch (IOException iex) {
+            logger.error("Can't sync trace log " + dir + ". " + iex.getMessage(), iex);
+        }
+    }
+
+    private Timer startSyncTimer() {
+        Timer timer = new Timer("carpenter-trace-log-sync", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                syncIfDue();
+            }
+        }, syncIntervalMillis, syncIntervalMillis);
+        return timer;
+    }
+
+    private void sync(long now) throws IOException {
+        writeBlock();
+        if (blobStore != null) {
+            blobStore.force();
+        }
+        channel.force(false);
+        unsyncedRecords = 0;
+        lastSyncTime = now;
+    }
+
+    private void rollSegment() throws IOException {
+        closeSegment();
+        File file;
+        do {
+            file = new File(dir, namePrefix + String.format("%05d", segmentSeq++) + "." + SEGMENT_EXTENSION);
+        } while (!file.createNewFile());
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        segmentName = file.getName();
+        if (compressor != null) {
+            writeFully(createHeader(codec.getPayloadFormat(), VERSION_BLOCKS));
+            byte[] compressionDictionary = compressor.getDictionary();
+            writeFully(encodeCompressionDictionaryFrame(compressionDictionary != null ? compressionDictionary : new byte[0]));
+        } else {
+            writeFully(createHeader(codec.getPayloadFormat()));
+        }
+        segmentDictionarySize = 0;
+        segmentIndex = new LinkedHashMap<String, RecordPointer>();
+        unsyncedRecords = 0;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel == null) return;
+        try {
+            writeBlock();
+            channel.force(true);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+        writeSegmentIndex(new File(dir, segmentName + "." + INDEX_EXTENSION), segmentIndex);
+    }
+
+    static void writeSegmentIndex(File file, Map<String, RecordPointer> segmentIndex) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            dos.writeInt(INDEX_VERSION_BLOCKS);
+            dos.writeInt(segmentIndex.size());
+            for (Map.Entry<String, RecordPointer> entry : segmentIndex.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeLong(entry.getValue().getOffset());
+                dos.writeInt(entry.getValue().getBlockOffset());
+            }
+        } finally {
+            dos.close();
+        }
+    }
+
+    /**
+     * Gives compressor the internal array without copying it.
+     */
+    private static class BlockBuffer extends ByteArrayOutputStream {
+        private BlockBuffer(int size) {
+            super(size + size / 4);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.CodecType;
+import com.github.tankist88.carpenter.collector.codec.CompactBinaryCodec;
+import com.github.tankist88.carpenter.collector.codec.JavaSerializationCodec;
+import com.github.tankist88.carpenter.collector.codec.StringDictionary;
+import com.github.tankist88.carpenter.collector.codec.TraceRecordCodec;
+import com.github.tankist88.carpenter.collector.compress.BlockCompressor;
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.Deflater;
+
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.*;
+
+/**
+ * Reads segments written by {@link SegmentedTraceLog}. A frame cut short by a crash ends its segment.
+ * Compressed blocks are decompressed as a stream while iterating, one frame at a time.
+ */
+public class SegmentedTraceLogReader {
+    private final File dir;
+    private final Map<String, SegmentDictionary> segmentDictionaries = new HashMap<String, SegmentDictionary>();
+    private final Map<String, byte[]> compressionDictionaries = new HashMap<String, byte[]>();
+    private FileBlobStore blobStore;
+
+    public SegmentedTraceLogReader(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return segment files in write order
+     */
+    public List<File> getSegments() {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith("." + SEGMENT_EXTENSION);
+            }
+        });
+        if (files == null) return new ArrayList<File>();
+        Arrays.sort(files);
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    /**
+     * Iterates over all records of all segments, including records later overwritten by the same key.
+     */
+    public RecordIterator iterator() {
+        return new RecordIterator(this, getSegments());
+    }
+
+    /**
+     * Builds the key to latest location map from segment index files. Segments without index
+     * (not closed properly) are scanned.
+     */
+    public Map<String, RecordPointer> readIndex() throws IOException {
+        Map<String, RecordPointer> index = new HashMap<String, RecordPointer>();
+        for (File segment : getSegments()) {
+            File indexFile = new File(dir, segment.getName() + "." + INDEX_EXTENSION);
+            if (indexFile.exists()) {
+                readSegmentIndex(indexFile, segment.getName(), index);
+            } else {
+                scanSegment(segment, index);
+            }
+        }
+        return index;
+    }
+
+    public TraceRecord read(RecordPointer pointer) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(new File(dir, pointer.getSegmentName()), "r");
+        try {
+            raf.seek(pointer.getOffset());
+            byte[] body = new byte[checkFrameLength(raf.readInt(), raf.length() - raf.getFilePointer(), pointer)];
+            raf.readFully(body);
+            if (!pointer.isInBlock()) {
+                return decodeRecordBody(body);
+            }
+            if (body[0] != FRAME_BLOCK || body.length < BLOCK_HEADER_LENGTH) {
+                throw new IOException("No block at " + pointer);
+            }
+            int uncompressedLength = readInt(body, 2);
+            byte[] compressionDictionary = getCompressionDictionary(pointer.getSegmentName(), raf);
+            DataInputStream block = new DataInputStream(decompressor(body[1], compressionDictionary).decompress(
+                    new ByteArrayInputStream(body, BLOCK_HEADER_LENGTH, body.length - BLOCK_HEADER_LENGTH)));
+            try {
+                int toSkip = pointer.getBlockOffset();
+                while (toSkip > 0) {
+                    int skipped = block.skipBytes(toSkip);
+                    if (skipped <= 0) throw new EOFException("Block is shorter than " + pointer);
+                    toSkip -= skipped;
+                }
+                long available = (long) uncompressedLength - pointer.getBlockOffset() - 4;
+                byte[] frameBody = new byte[checkFrameLength(block.readInt(), available, pointer)];
+                block.readFully(frameBody);
+                return decodeRecordBody(frameBody);
+            } finally {
+                block.close();
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private byte[] getCompressionDictionary(String segmentName, RandomAccessFile raf) throws IOException {
+        synchronized (compressionDictionaries) {
+            byte[] dictionary = compressionDictionaries.get(segmentName);
+            if (dictionary == null) {
+                raf.seek(HEADER_LENGTH);
+                byte[] body = new byte[checkFrameLength(raf.readInt(), raf.length() - raf.getFilePointer(), segmentName)];
+                raf.readFully(body);
+                if (body[0] != FRAME_COMPRESSION_DICTIONARY) {
+                    throw new IOException("No compression dictionary in " + segmentName);
+                }
+                dictionary = Arrays.copyOfRange(body, 1, body.length);
+                compressionDictionaries.put(segmentName, dictionary);
+            }
+            return dictionary;
+        }
+    }
+
+    /**
+     * @param available bytes left in the file or block after the length
+     * @return length of frame body
+     */
+    private static int checkFrameLength(int length, long available, Object location) throws IOException {
+        if (length <= 0 || length > available) {
+            throw new IOException("Invalid frame length " + length + " at " + location + ", " + available + " bytes left");
+        }
+        return length;
+    }
+
+    private static int readInt(byte[] buf, int offset) {
+        return (buf[offset] & 0xFF) << 24
+                | (buf[offset + 1] & 0xFF) << 16
+                | (buf[offset + 2] & 0xFF) << 8
+                | (buf[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Compressor of block, only used to decompress it.
+     */
+    static BlockCompressor decompressor(byte compression, byte[] dictionary) throws IOException {
+        BlockCompressor compressor;
+        try {
+            compressor = CompressionType.forId(compression).create(Deflater.DEFAULT_COMPRESSION, dictionary);
+        } catch (IllegalArgumentException iex) {
+            throw new IOException(iex.getMessage());
+        }
+        if (compressor == null) throw new IOException("Block without compression");
+        return compressor;
+    }
+
+    /**
+     * Reads and decodes the record at pointer. Dictionary entries precede the records using them, so
+     * the dictionary of a segment is scanned only up to the end of the segment seen so far, and only
+     * again for pointers beyond it. Segments with index file are closed and scanned at most once.
+     */
+    public Object readObject(RecordPointer pointer) throws IOException {
+        SegmentDictionary segment = getSegmentDictionary(pointer.getSegmentName());
+        synchronized (segment) {
+            if (!segment.complete && pointer.getOffset() >= segment.scannedLength) {
+                scanDictionary(segment);
+            }
+        }
+        return segment.codec.decode(read(pointer).getPayload(), segment.dictionary);
+    }
+
+    private SegmentDictionary getSegmentDictionary(String segmentName) throws IOException {
+        synchronized (segmentDictionaries) {
+            SegmentDictionary segment = segmentDictionaries.get(segmentName);
+            if (segment == null) {
+                SegmentInput in = new SegmentInput(new File(dir, segmentName));
+                try {
+                    segment = new SegmentDictionary(segmentName, in.getPayloadFormat(), getCodec(in.getPayloadFormat()));
+                } finally {
+                    in.close();
+                }
+                segmentDictionaries.put(segmentName, segment);
+            }
+            return segment;
+        }
+    }
+
+    private void scanDictionary(SegmentDictionary segment) throws IOException {
+        boolean closed = new File(dir, segment.name + "." + INDEX_EXTENSION).exists();
+        SegmentInput in = new SegmentInput(new File(dir, segment.name), segment.scannedLength, segment.compressionDictionary);
+        try {
+            byte[] body;
+            while ((body = in.nextFrame()) != null) {
+                if (body[0] == FRAME_DICTIONARY) {
+                    decodeDictionaryBody(body, segment.dictionary);
+                }
+            }
+            segment.scannedLength = in.position();
+            segment.compressionDictionary = in.compressionDictionary();
+        } finally {
+            in.close();
+        }
+        if (closed) segment.complete = true;
+    }
+
+    /**
+     * Codec of payload format. Blob store of the directory is opened on first use.
+     */
+    TraceRecordCodec getCodec(byte payloadFormat) throws IOException {
+        if (payloadFormat != CompactBinaryCodec.PAYLOAD_FORMAT_BLOBS) {
+            return CodecType.forPayloadFormat(payloadFormat);
+        }
+        synchronized (this) {
+            if (blobStore == null) {
+                blobStore = new FileBlobStore(dir);
+            }
+        }
+        return new CompactBinaryCodec(blobStore);
+    }
+
+    private static void readSegmentIndex(File indexFile, String segmentName, Map<String, RecordPointer> index) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            int first = in.readInt();
+            if (first == INDEX_VERSION_BLOCKS) {
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    long offset = in.readLong();
+                    index.put(key, new RecordPointer(segmentName, offset, in.readInt()));
+                }
+            } else {
+                // index written before blocks, starts with size
+                for (int i = 0; i < first; i++) {
+                    String key = in.readUTF();
+                    index.put(key, new RecordPointer(segmentName, in.readLong()));
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void scanSegment(File segment, Map<String, RecordPointer> index) throws IOException {
+        SegmentInput in = new SegmentInput(segment);
+        try {
+            byte[] body;
+            while ((body = in.nextFrame()) != null) {
+                if (body[0] == FRAME_RECORD) {
+                    RecordPointer pointer = new RecordPointer(segment.getName(), in.frameOffset(), in.frameBlockOffset());
+                    index.put(decodeRecordBody(body).getKey(), pointer);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * String dictionary of a segment read so far. Java serialization doesn't use dictionaries, its
+     * segments are never scanned.
+     */
+    private static class SegmentDictionary {
+        private final String name;
+        private final TraceRecordCodec codec;
+        private final StringDictionary dictionary = new StringDictionary();
+        private long scannedLength = HEADER_LENGTH;
+        private byte[] compressionDictionary;
+        private boolean complete;
+
+        private SegmentDictionary(String name, byte payloadFormat, TraceRecordCodec codec) {
+            this.name = name;
+            this.codec = codec;
+            this.complete = payloadFormat == JavaSerializationCodec.PAYLOAD_FORMAT;
+        }
+    }
+
+    static class SegmentInput implements Closeable {
+        private final DataInputStream in;
+        private final byte payloadFormat;
+        private final long length;
+        private long position;
+        private long frameOffset;
+        private int frameBlockOffset;
+        private byte[] compressionDictionary;
+        private DataInputStream block;
+        private long blockStart;
+        private int blockLength;
+        private int blockPosition;
+
+        SegmentInput(File segment) throws IOException {
+            this(segment, HEADER_LENGTH, null);
+        }
+
+        /**
+         * @param position offset of a frame outside of blocks to start from
+         * @param compressionDictionary compression dictionary of the segment if position is after it
+         */
+        SegmentInput(File segment, long position, byte[] compressionDictionary) throws IOException {
+            this.length = segment.length();
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            try {
+                this.payloadFormat = readHeader(in);
+                long toSkip = position - HEADER_LENGTH;
+                while (toSkip > 0) {
+                    long skipped = in.skip(toSkip);
+                    if (skipped <= 0) throw new EOFException("Segment is shorter than " + position);
+                    toSkip -= skipped;
+                }
+            } catch (IOException iex) {
+                in.close();
+                throw iex;
+            }
+            this.position = position;
+            this.compressionDictionary = compressionDictionary;
+        }
+
+        byte getPayloadFormat() {
+            return payloadFormat;
+        }
+
+        /**
+         * @return offset after the last frame read outside of blocks, the end of read frames once
+         * {@link #nextFrame()} returned null
+         */
+        long position() {
+            return position;
+        }
+
+        byte[] compressionDictionary() {
+            return compressionDictionary;
+        }
+
+        /**
+         * @return offset of the last returned frame, or of its block
+         */
+        long frameOffset() {
+            return frameOffset;
+        }
+
+        /**
+         * @return offset of the last returned frame in its uncompressed block, -1 if it is not in a block
+         */
+        int frameBlockOffset() {
+            return frameBlockOffset;
+        }
+
+        /**
+         * @return frame body or null at the end of segment. Blocks are entered transparently.
+         */
+        byte[] nextFrame() throws IOException {
+            while (true) {
+                if (block != null) {
+                    byte[] body = readFrame(block, blockLength - blockPosition - 4);
+                    if (body == null && blockPosition < blockLength) {
+                        throw new IOException("Block at " + blockStart + " is cut short at " + blockPosition);
+                    }
+                    if (body != null) {
+                        frameOffset = blockStart;
+                        frameBlockOffset = blockPosition;
+                        blockPosition += 4 + body.length;
+                        return body;
+                    }
+                    block.close();
+                    block = null;
+                    continue;
+                }
+                long start = position;
+                // a frame longer than the rest of the segment is cut short by a crash, or still written
+                byte[] body = readFrame(in, length - position - 4);
+                if (body == null) return null;
+                position += 4 + body.length;
+                if (body[0] == FRAME_BLOCK) {
+                    if (body.length < BLOCK_HEADER_LENGTH) throw new IOException("Invalid block at " + start);
+                    blockLength = readInt(body, 2);
+                    block = new DataInputStream(decompressor(body[1], compressionDictionary).decompress(
+                            new ByteArrayInputStream(body, BLOCK_HEADER_LENGTH, body.length - BLOCK_HEADER_LENGTH)));
+                    blockStart = start;
+                    blockPosition = 0;
+                } else if (body[0] == FRAME_COMPRESSION_DICTIONARY) {
+                    compressionDictionary = Arrays.copyOfRange(body, 1, body.length);
+                } else {
+                    frameOffset = start;
+                    frameBlockOffset = -1;
+                    return body;
+                }
+            }
+        }
+
+        private static byte[] readFrame(DataInputStream in, long available) throws IOException {
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > available) return null;
+                byte[] body = new byte[length];
+                in.readFully(body);
+                return body;
+            } catch (EOFException eof) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (block != null) {
+                block.close();
+                block = null;
+            }
+            in.close();
+        }
+    }
+
+    public static class RecordIterator implements Iterator<TraceRecord>, Closeable {
+        private final SegmentedTraceLogReader reader;
+        private final Iterator<File> segments;
+        private SegmentInput current;
+        private StringDictionary currentDictionary;
+        private TraceRecordCodec currentCodec;
+        private TraceRecord next;
+        private StringDictionary nextDictionary;
+        private TraceRecordCodec nextCodec;
+        private TraceRecord last;
+        private StringDictionary lastDictionary;
+        private TraceRecordCodec lastCodec;
+
+        RecordIterator(SegmentedTraceLogReader reader, List<File> segments) {
+            this.reader = reader;
+            this.segments = segments.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = advance();
+                } catch (IOException iex) {
+                    throw new IllegalStateException("Can't read trace segment", iex);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public TraceRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            last = next;
+            lastDictionary = nextDictionary;
+            lastCodec = nextCodec;
+            next = null;
+            return last;
+        }
+
+        /**
+         * Decodes payload of the record last returned by {@link #next()}.
+         */
+        public Object readObject() throws IOException {
+            if (last == null) throw new IllegalStateException("next() was not called");
+            return lastCodec.decode(last.getPayload(), lastDictionary);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+
+        private TraceRecord advance() throws IOException {
+            while (true) {
+                if (current == null) {
+                    if (!segments.hasNext()) return null;
+                    current = new SegmentInput(segments.next());
+                    currentDictionary = new StringDictionary();
+                    currentCodec = reader.getCodec(current.getPayloadFormat());
+                }
+                byte[] body = current.nextFrame();
+                if (body == null) {
+                    close();
+                } else if (body[0] == FRAME_DICTIONARY) {
+                    decodeDictionaryBody(body, currentDictionary);
+                } else if (body[0] == FRAME_RECORD) {
+                    nextDictionary = currentDictionary;
+                    nextCodec = currentCodec;
+                    return decodeRecordBody(body);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+public enum StorageMode {
+    /** One file per record under package directories, the format read by carpenter-generator. */
+    FILES,
+    /** Append-only rolling segment files, see {@link SegmentedTraceLog}. */
+    SEGMENTS,
+    /** Records are streamed to a {@link TraceReceiver}, see {@link NetworkTraceSink}. */
+    NETWORK
+}
@@ -0,0 +1,226 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.JavaSerializationCodec;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.carpenter.collector.util.ThreadSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.*;
+
+/**
+ * Receives records streamed by {@link NetworkTraceSink} and writes them with a {@link FileTraceSink}, so the
+ * dump directory of the receiver has the same layout as one written by the application itself.
+ * All connections are served by one thread with a {@link Selector}. Frames other than records are skipped.
+ * <p>
+ * Usage: {@code TraceReceiver <port> <dump dir> [bind address]}
+ */
+public class TraceReceiver implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(TraceReceiver.class);
+
+    private static final int MAX_FRAME_BYTES = 256 * 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final FileTraceSink sink;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+    private final AtomicLong receivedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public TraceReceiver(InetSocketAddress bindAddress, FileTraceSink sink) throws IOException {
+        this.sink = sink;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().setReuseAddress(true);
+        this.serverChannel.socket().bind(bindAddress);
+        this.serverChannel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraceReceiver <port> <dump dir> [bind address]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        InetSocketAddress address = args.length > 2 ? new InetSocketAddress(args[2], port) : new InetSocketAddress(port);
+        TraceReceiver receiver = new TraceReceiver(address, new FileTraceSink(args[1]));
+        System.out.println("Receiving trace records on " + address + " to " + args[1]);
+        receiver.run();
+    }
+
+    /**
+     * Serves connections on a daemon thread.
+     */
+    public void start() {
+        ThreadSupport.newThread(this, "carpenter-trace-receiver", false).start();
+    }
+
+    /**
+     * Serves connections on the current thread until {@link #close()}.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (IOException iex) {
+            if (!closed) logger.error("Trace receiver stopped. " + iex.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException iex) {
+                logger.warn("Can't close trace receiver. " + iex.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+        logger.info("Accepted trace records from " + channel.socket().getRemoteSocketAddress());
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        try {
+            readBuffer.clear();
+            if (channel.read(readBuffer) < 0) {
+                closeQuietly(key);
+                return;
+            }
+            readBuffer.flip();
+            connection.consume(readBuffer);
+        } catch (IOException iex) {
+            // incomplete frame of a broken connection is dropped
+            logger.warn("Connection " + channel.socket().getRemoteSocketAddress() + " closed. " + iex.getMessage());
+            closeQuietly(key);
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException iex) {
+            logger.warn("Can't close connection. " + iex.getMessage());
+        }
+    }
+
+    private void receive(byte[] frameBody) throws IOException {
+        if (frameBody[0] != FRAME_RECORD) return;
+        TraceRecord record = decodeRecordBody(frameBody);
+        try {
+            sink.writeSerialized(record.getKey(), record.getClassName(), record.getPayload());
+            receivedRecords.incrementAndGet();
+        } catch (IOException iex) {
+            failedRecords.incrementAndGet();
+            logger.error("Can't save received record " + record.getKey() + ". " + iex.getMessage());
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getReceivedRecords() {
+        return receivedRecords.get();
+    }
+
+    public long getFailedRecords() {
+        return failedRecords.get();
+    }
+
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Reassembles segment header and frames of one connection from the bytes read so far.
+     */
+    private class Connection {
+        private ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        private final ByteBuffer length = ByteBuffer.allocate(4);
+        private ByteBuffer body;
+
+        void consume(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                if (header != null) {
+                    if (fill(header, src)) {
+                        checkHeader(header.array());
+                        header = null;
+                    }
+                } else if (body == null) {
+                    if (fill(length, src)) {
+                        length.flip();
+                        int frameLength = length.getInt();
+                        length.clear();
+                        if (frameLength <= 0 || frameLength > MAX_FRAME_BYTES) {
+                            throw new IOException("Invalid frame length " + frameLength);
+                        }
+                        body = ByteBuffer.allocate(frameLength);
+                    }
+                } else if (fill(body, src)) {
+                    byte[] frameBody = body.array();
+                    body = null;
+                    receive(frameBody);
+                }
+            }
+        }
+
+        private void checkHeader(byte[] bytes) throws IOException {
+            byte payloadFormat = readHeader(new DataInputStream(new ByteArrayInputStream(bytes)));
+            if (payloadFormat != JavaSerializationCodec.PAYLOAD_FORMAT) {
+                throw new IOException("Unsupported payload format " + payloadFormat);
+            }
+        }
+
+        /**
+         * @return true if target is full
+         */
+        private boolean fill(ByteBuffer target, ByteBuffer src) {
+            int n = Math.min(target.remaining(), src.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + n);
+            target.put(src);
+            src.limit(limit);
+            return !target.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Destination of encoded trace records. Implementations must be thread safe.
+ */
+public interface TraceSink {
+    /**
+     * @param key dump key, later records with the same key replace earlier ones
+     * @param className class of traced method, defines package of the record
+     * @return number of bytes written
+     */
+    int write(String key, String className, Serializable object) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
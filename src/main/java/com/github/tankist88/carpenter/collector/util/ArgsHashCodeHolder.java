@@ -1,46 +1,133 @@
 package com.github.tankist88.carpenter.collector.util;
 
-import com.github.tankist88.carpenter.collector.dto.TraceElement;
+import com.github.tankist88.carpenter.collector.keys.MethodKeys;
 
-import java.util.Stack;
+import java.util.Arrays;
 
+/**
+ * Per thread stack of intercepted calls: arguments hash, class and method of each call.
+ * Stored in parallel primitive arrays used as a ring, so push and pop neither lock nor allocate,
+ * and once the stack is {@code MAX_STACK_DEPTH} deep a push overwrites the oldest call in O(1).
+ * Empty stack reports hash 0 and null names.
+ * <p>
+ * Stacks start small and grow on demand, so a JVM with millions of short lived virtual threads doesn't
+ * pay for the full depth in every thread.
+ * <p>
+ * Every {@link #put} must be paired with {@link #pop()} in a finally block, so pooled threads
+ * return to an empty stack after each task. {@link #clear()} drops the stack of the current thread.
+ */
 public class ArgsHashCodeHolder {
     private static final int MAX_STACK_DEPTH = 150;
+    private static final int INITIAL_STACK_CAPACITY = 8;
 
-    private static final ThreadLocal<Stack<TraceElement>> threadLocalScope = new ThreadLocal<Stack<TraceElement>>();
+    private static final SymbolTable SYMBOLS = MethodKeys.NAMES;
 
-    private static Stack<TraceElement> getStack() {
-        Stack<TraceElement> stack = threadLocalScope.get();
-        if (stack == null) {
-            stack = new Stack<TraceElement>();
-            threadLocalScope.set(stack);
+    private static final ThreadLocal<CallStack> threadLocalScope = new ThreadLocal<CallStack>() {
+        @Override
+        protected CallStack initialValue() {
+            return new CallStack(INITIAL_STACK_CAPACITY, MAX_STACK_DEPTH - 1);
         }
-        return stack;
+    };
+
+    public static int peekArgsHashCode() {
+        CallStack stack = threadLocalScope.get();
+        return stack.size > 0 ? stack.hashes[stack.top()] : 0;
     }
 
-    public static TraceElement peek() {
-        Stack<TraceElement> stack = getStack();
-        if (stack.size() > 0) {
-            return stack.peek();
-        } else {
-            return new TraceElement(0, null, null);
-        }
+    public static String peekClassName() {
+        CallStack stack = threadLocalScope.get();
+        return stack.size > 0 ? SYMBOLS.nameOf(stack.classIds[stack.top()]) : null;
+    }
+
+    public static String peekMethodName() {
+        CallStack stack = threadLocalScope.get();
+        return stack.size > 0 ? SYMBOLS.nameOf(stack.methodIds[stack.top()]) : null;
+    }
+
+    /**
+     * @return class and method name ids of the top call packed by {@link MethodKeys#pack(int, int)}
+     */
+    public static long peekMethodId() {
+        CallStack stack = threadLocalScope.get();
+        return stack.size > 0
+                ? MethodKeys.pack(stack.classIds[stack.top()], stack.methodIds[stack.top()])
+                : MethodKeys.NO_METHOD;
+    }
+
+    /**
+     * @return arguments hash of removed call
+     */
+    public static int pop() {
+        CallStack stack = threadLocalScope.get();
+        if (stack.size == 0) return 0;
+        int hash = stack.hashes[stack.top()];
+        stack.size--;
+        return hash;
     }
 
-    public static TraceElement pop() {
-        Stack<TraceElement> stack = getStack();
-        if (stack.size() > 0) {
-            return stack.pop();
+    public static void put(int argsHashCode, String className, String methodName) {
+        CallStack stack = threadLocalScope.get();
+        int index;
+        if (stack.size == stack.hashes.length && stack.size < stack.maxCapacity) {
+            stack.grow();
+        }
+        if (stack.size == stack.hashes.length) {
+            // the oldest call is overwritten
+            index = stack.start;
+            stack.start = stack.next(stack.start);
         } else {
-            return new TraceElement(0, null, null);
+            index = stack.index(stack.size);
+            stack.size++;
         }
+        stack.hashes[index] = argsHashCode;
+        stack.classIds[index] = SYMBOLS.idOf(className);
+        stack.methodIds[index] = SYMBOLS.idOf(methodName);
+    }
+
+    public static int depth() {
+        return threadLocalScope.get().size;
     }
 
-    public static void put(TraceElement hashCode) {
-        Stack<TraceElement> stack = getStack();
-        if (stack.size() + 1 >= MAX_STACK_DEPTH) {
-            stack.removeElementAt(0);
+    public static void clear() {
+        threadLocalScope.remove();
+    }
+
+    private static class CallStack {
+        private final int maxCapacity;
+        private int[] hashes;
+        private int[] classIds;
+        private int[] methodIds;
+        private int start;
+        private int size;
+
+        private CallStack(int capacity, int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            this.hashes = new int[Math.min(capacity, maxCapacity)];
+            this.classIds = new int[hashes.length];
+            this.methodIds = new int[hashes.length];
+        }
+
+        /**
+         * Ring wraps only at full capacity, so the stack starts at index 0 while it can still grow.
+         */
+        private void grow() {
+            int capacity = Math.min(maxCapacity, hashes.length * 2);
+            hashes = Arrays.copyOf(hashes, capacity);
+            classIds = Arrays.copyOf(classIds, capacity);
+            methodIds = Arrays.copyOf(methodIds, capacity);
+        }
+
+        private int index(int position) {
+            int index = start + position;
+            return index < hashes.length ? index : index - hashes.length;
+        }
+
+        private int next(int index) {
+            return index + 1 < hashes.length ? index + 1 : 0;
+        }
+
+        private int top() {
+            return index(size - 1);
         }
-        stack.push(hashCode);
     }
 }
@@ -0,0 +1,104 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent cache of values computed per class, read on application threads without locking.
+ * <p>
+ * Classes are weakly referenced and values softly, as values like {@link java.lang.reflect.Field}
+ * reach their class. So caching doesn't prevent class loaders of redeployed applications from being
+ * unloaded: their values are cleared at the latest when memory runs low, and then the classes.
+ * A cleared value is computed again on the next lookup.
+ */
+public abstract class ClassCache<V> {
+    private final ConcurrentMap<Object, SoftReference<V>> map = new ConcurrentHashMap<Object, SoftReference<V>>();
+    private final ReferenceQueue<Class> queue = new ReferenceQueue<Class>();
+
+    public V get(Class clazz) {
+        SoftReference<V> ref = map.get(new LookupKey(clazz));
+        V value = ref != null ? ref.get() : null;
+        if (value == null) {
+            // computed outside of lock, concurrent computations of the same class give equal results
+            value = compute(clazz);
+            expunge();
+            map.put(new WeakKey(clazz, queue), new SoftReference<V>(value));
+        }
+        return value;
+    }
+
+    protected abstract V compute(Class clazz);
+
+    public int size() {
+        expunge();
+        return map.size();
+    }
+
+    public void clear() {
+        map.clear();
+        expunge();
+    }
+
+    private void expunge() {
+        Reference<? extends Class> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private static boolean sameReferent(int hash, Object referent, Object other) {
+        if (other instanceof WeakKey) {
+            WeakKey key = (WeakKey) other;
+            return key.hash == hash && referent != null && key.get() == referent;
+        }
+        if (other instanceof LookupKey) {
+            LookupKey key = (LookupKey) other;
+            return key.hash == hash && key.clazz == referent;
+        }
+        return false;
+    }
+
+    private static class WeakKey extends WeakReference<Class> {
+        private final int hash;
+
+        private WeakKey(Class clazz, ReferenceQueue<Class> queue) {
+            super(clazz, queue);
+            this.hash = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            // cleared keys are equal only to themselves, so expunge removes the right entry
+            return obj == this || sameReferent(hash, get(), obj);
+        }
+    }
+
+    private static class LookupKey {
+        private final Class clazz;
+        private final int hash;
+
+        private LookupKey(Class clazz) {
+            this.clazz = clazz;
+            this.hash = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return sameReferent(hash, clazz, obj);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accessible instance fields of a class and its superclasses, resolved once per class and shared by
+ * the walks over captured values on application threads.
+ */
+public class ClassFields {
+    private static final ClassCache<ClassFields> CACHE = new ClassCache<ClassFields>() {
+        @Override
+        protected ClassFields compute(Class clazz) {
+            return new ClassFields(clazz);
+        }
+    };
+
+    private static final Field[] NONE = new Field[0];
+
+    private final boolean accessible;
+    private final Field[] referenceFields;
+    private final Field[] hashedFields;
+
+    private ClassFields(Class clazz) {
+        List<Field> references = new ArrayList<Field>();
+        List<Field> hashed = new ArrayList<Field>();
+        boolean resolved = true;
+        try {
+            for (Class c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers)) continue;
+                    field.setAccessible(true);
+                    if (!field.getType().isPrimitive()) references.add(field);
+                    // the same fields as HashCodeBuilder.reflectionHashCode takes
+                    if (!Modifier.isTransient(modifiers) && field.getName().indexOf('$') == -1) hashed.add(field);
+                }
+            }
+        } catch (RuntimeException rex) {
+            // fields of classes in closed modules
+            resolved = false;
+        }
+        this.accessible = resolved;
+        this.referenceFields = resolved ? references.toArray(new Field[references.size()]) : NONE;
+        this.hashedFields = resolved ? hashed.toArray(new Field[hashed.size()]) : NONE;
+    }
+
+    public static ClassFields of(Class clazz) {
+        return CACHE.get(clazz);
+    }
+
+    /**
+     * @return false if fields of the class can't be made accessible, then it has no fields here
+     */
+    public boolean isAccessible() {
+        return accessible;
+    }
+
+    /**
+     * @return fields of reference types, transient included
+     */
+    public Field[] getReferenceFields() {
+        return referenceFields;
+    }
+
+    /**
+     * @return not transient fields of all types, without synthetic fields like {@code this$0}
+     */
+    public Field[] getHashedFields() {
+        return hashedFields;
+    }
+}
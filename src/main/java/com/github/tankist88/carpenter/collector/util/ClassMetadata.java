@@ -0,0 +1,162 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import com.github.tankist88.carpenter.core.dto.argument.GeneratedArgument;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.github.tankist88.carpenter.collector.util.CollectUtils.isMaybeServiceClass;
+import static com.github.tankist88.carpenter.core.util.ConvertUtil.toServiceProperties;
+import static com.github.tankist88.carpenter.core.util.TypeHelper.getMethodArgGenericTypeStr;
+import static com.github.tankist88.object2source.util.AssigmentUtil.hasZeroArgConstructor;
+import static com.github.tankist88.object2source.util.GenerationUtil.*;
+
+/**
+ * Class level part of dump records. It never changes for a class, so it is computed once
+ * and copied into every record. Holds no reference to the class itself, see {@link ClassMetadataCache}.
+ */
+public class ClassMetadata {
+    private final String className;
+    private final String nearestInstantAbleClass;
+    private final boolean anonymousClass;
+    private final GeneratedArgument argumentPrototype;
+
+    private final ConcurrentMap<MethodSignature, String[]> argGenericStrings =
+            new ConcurrentHashMap<MethodSignature, String[]>();
+
+    private volatile TargetMetadata targetMetadata;
+
+    ClassMetadata(Class clazz) {
+        this.className = clazz.getName();
+        this.nearestInstantAbleClass = CollectUtils.getNearestInstantAbleClass(clazz);
+        this.anonymousClass = getLastClassShort(className).matches("\\d+");
+        this.argumentPrototype = new GeneratedArgument(className, null);
+        this.argumentPrototype.setInterfacesHierarchy(getInterfacesHierarchyStr(clazz));
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getNearestInstantAbleClass() {
+        return nearestInstantAbleClass;
+    }
+
+    public boolean isAnonymousClass() {
+        return anonymousClass;
+    }
+
+    public void applyTo(GeneratedArgument argument) {
+        argument.setInterfacesHierarchy(argumentPrototype.getInterfacesHierarchy());
+        argument.setAnonymousClass(anonymousClass);
+        argument.setNearestInstantAbleClass(nearestInstantAbleClass);
+    }
+
+    /**
+     * Fills class level fields of a record about call of a method of this class.
+     */
+    public void applyTo(MethodCallTraceInfo record, Class clazz) {
+        TargetMetadata target = getTargetMetadata(clazz);
+        record.setClassName(className);
+        record.setNearestInstantAbleClass(nearestInstantAbleClass);
+        record.setMemberClass(target.memberClass);
+        record.setClassModifiers(target.modifiers);
+        record.setClassHierarchy(target.prototype.getClassHierarchy());
+        record.setInterfacesHierarchy(target.prototype.getInterfacesHierarchy());
+        record.setServiceFields(target.prototype.getServiceFields());
+        record.setMaybeServiceClass(target.maybeServiceClass);
+        record.setClassHasZeroArgConstructor(target.zeroArgConstructor);
+    }
+
+    public int getServiceFieldsHashCode(Class clazz) {
+        return getTargetMetadata(clazz).serviceFieldsHashCode;
+    }
+
+    /**
+     * Generic strings of method arguments resolved through class hierarchy. Element is null
+     * if method wasn't found, this result is cached too.
+     */
+    public String[] getArgGenericStrings(Class clazz, String methodName, Class[] parameterTypes) {
+        MethodSignature signature = new MethodSignature(methodName, parameterTypes);
+        String[] result = argGenericStrings.get(signature);
+        if (result == null) {
+            List<Class> classHierarchy = getClassHierarchy(clazz);
+            result = new String[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                try {
+                    result[i] = getMethodArgGenericTypeStr(classHierarchy, methodName, i, parameterTypes);
+                } catch (NoSuchMethodException e) {
+                    result[i] = null;
+                }
+            }
+            argGenericStrings.put(signature, result);
+        }
+        return result;
+    }
+
+    private TargetMetadata getTargetMetadata(Class clazz) {
+        TargetMetadata result = targetMetadata;
+        if (result == null) {
+            // computed only for classes which methods are captured, not for every argument class
+            result = new TargetMetadata(clazz);
+            targetMetadata = result;
+        }
+        return result;
+    }
+
+    private static class TargetMetadata {
+        private final boolean memberClass;
+        private final int modifiers;
+        private final boolean maybeServiceClass;
+        private final boolean zeroArgConstructor;
+        private final MethodCallTraceInfo prototype;
+        private final int serviceFieldsHashCode;
+
+        private TargetMetadata(Class clazz) {
+            List<Class> classHierarchy = getClassHierarchy(clazz);
+            this.memberClass = clazz.isMemberClass();
+            this.modifiers = clazz.getModifiers();
+            this.maybeServiceClass = isMaybeServiceClass(classHierarchy);
+            this.zeroArgConstructor = hasZeroArgConstructor(clazz, false);
+            this.prototype = new MethodCallTraceInfo();
+            this.prototype.setClassHierarchy(getClassHierarchyStr(classHierarchy));
+            this.prototype.setInterfacesHierarchy(getInterfacesHierarchyStr(clazz));
+            this.prototype.setServiceFields(toServiceProperties(getAllFieldsOfClass(classHierarchy)));
+            this.serviceFieldsHashCode = prototype.getServiceFields().hashCode();
+        }
+    }
+
+    /**
+     * Method key by type names, so that the cache holds no references to classes.
+     */
+    private static class MethodSignature {
+        private final String methodName;
+        private final String[] parameterTypeNames;
+        private final int hashCode;
+
+        private MethodSignature(String methodName, Class[] parameterTypes) {
+            this.methodName = methodName;
+            this.parameterTypeNames = new String[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypeNames[i] = parameterTypes[i].getName();
+            }
+            this.hashCode = 31 * methodName.hashCode() + Arrays.hashCode(parameterTypeNames);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MethodSignature that = (MethodSignature) o;
+            return methodName.equals(that.methodName) && Arrays.equals(parameterTypeNames, that.parameterTypeNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
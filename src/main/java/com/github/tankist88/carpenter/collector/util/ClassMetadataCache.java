@@ -0,0 +1,32 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * {@link ClassMetadata} by class. Keys are weak, so caching doesn't prevent class loaders of redeployed
+ * applications from being unloaded.
+ */
+public class ClassMetadataCache {
+    private static final Map<Class, ClassMetadata> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<Class, ClassMetadata>());
+
+    public static ClassMetadata getClassMetadata(Class clazz) {
+        ClassMetadata metadata = CACHE.get(clazz);
+        if (metadata == null) {
+            // computed outside of lock, concurrent computations of the same class give equal results
+            metadata = new ClassMetadata(clazz);
+            CACHE.put(clazz, metadata);
+        }
+        return metadata;
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+}
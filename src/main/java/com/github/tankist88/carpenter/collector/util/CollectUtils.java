@@ -1,6 +1,15 @@
 package com.github.tankist88.carpenter.collector.util;
 
 import com.github.tankist88.carpenter.collector.dto.MethodCallInfo;
+import com.github.tankist88.carpenter.collector.filter.JoinPointFilter;
+import com.github.tankist88.carpenter.collector.fingerprint.ArgumentFingerprinter;
+import com.github.tankist88.carpenter.collector.keys.KeyMode;
+import com.github.tankist88.carpenter.collector.keys.MethodKeys;
+import com.github.tankist88.carpenter.collector.offheap.OffHeapArena;
+import com.github.tankist88.carpenter.collector.sampling.CaptureSampler;
+import com.github.tankist88.carpenter.collector.snapshot.CaptureBudget;
+import com.github.tankist88.carpenter.collector.snapshot.ProviderGeneration;
+import com.github.tankist88.carpenter.collector.snapshot.ProviderSnapshot;
 import com.github.tankist88.carpenter.core.dto.argument.GeneratedArgument;
 import com.github.tankist88.carpenter.core.dto.trace.TraceAnalyzeDto;
 import com.github.tankist88.carpenter.core.property.GenerationProperties;
@@ -17,10 +26,25 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getCaptureMaxBytes;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getCaptureMaxMillis;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getCaptureMaxNodes;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getCaptureRetryAfter;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getCaptureSkipAfter;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getFingerprintMode;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getKeyMode;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getOffHeapMaxBytes;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getOffHeapSlabBytes;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getOutsideFingerprintMode;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getProviderGeneration;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getSamplingPolicy;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.getSnapshotMaxBytes;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.isOffHeap;
+import static com.github.tankist88.carpenter.collector.util.ClassMetadataCache.getClassMetadata;
 import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.COMMON_UTIL_POSTFIX;
 import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.TAB;
 import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
-import static com.github.tankist88.carpenter.core.util.TypeHelper.getMethodArgGenericTypeStr;
 import static com.github.tankist88.object2source.util.ExtensionUtil.getActualClassName;
 import static com.github.tankist88.object2source.util.GenerationUtil.*;
 import static java.lang.reflect.Modifier.*;
@@ -34,11 +58,32 @@ public class CollectUtils {
 
     public static final SourceGenerator SG = getSgInstance();
 
+    public static final JoinPointFilter FILTER = createFilter();
+
+    /**
+     * Fingerprints of arguments, target and return value of captured calls.
+     */
+    public static final ArgumentFingerprinter FINGERPRINTER = getFingerprintMode().create();
+
+    /**
+     * Fingerprints of arguments of calls not captured, used only to tell callers apart.
+     */
+    public static final ArgumentFingerprinter OUTSIDE_FINGERPRINTER = getOutsideFingerprintMode().create();
+
+    public static final CaptureSampler SAMPLER = getSamplingPolicy().create();
+
+    public static final KeyMode KEY_MODE = getKeyMode();
+
+    private static final ProviderGeneration PROVIDER_GENERATION = getProviderGeneration();
+    private static final int SNAPSHOT_MAX_BYTES = getSnapshotMaxBytes();
+    private static final OffHeapArena ARENA = createArena();
+
+    public static final CaptureBudget BUDGET = createBudget();
+
     public static GeneratedArgument createGeneratedArgument(Class clazz, ProviderResult provider, int hashCode) {
-        GeneratedArgument ga = new GeneratedArgument(clazz.getName(), provider);
-        ga.setInterfacesHierarchy(getInterfacesHierarchyStr(clazz));
-        ga.setAnonymousClass(getLastClassShort(clazz.getName()).matches("\\d+"));
-        ga.setNearestInstantAbleClass(getNearestInstantAbleClass(clazz));
+        ClassMetadata metadata = getClassMetadata(clazz);
+        GeneratedArgument ga = new GeneratedArgument(metadata.getClassName(), provider);
+        metadata.applyTo(ga);
         ga.setClassHashCode(hashCode);
         return ga;
     }
@@ -58,27 +103,97 @@ public class CollectUtils {
     }
 
     public static List<GeneratedArgument> createGeneratedArgumentList(
+            Class clazz,
             Class[] types,
             Class[] argTypes,
             String methodName,
-            List<Class> classHierarchy,
             ProviderResult[] argsProviderArr
     ) {
+        String[] genericStrings = getClassMetadata(clazz).getArgGenericStrings(clazz, methodName, types);
         List<GeneratedArgument> argList = new ArrayList<GeneratedArgument>();
         for (int i = 0; i < argTypes.length; i++) {
             Class type = argTypes[i];
             ProviderResult providerResult = !isPrivate(type.getModifiers()) ? argsProviderArr[i] : null;
             GeneratedArgument genArg = createGeneratedArgument(type, providerResult, 0);
-            try {
-                genArg.setGenericString(getMethodArgGenericTypeStr(classHierarchy, methodName, i, types));
-            } catch (NoSuchMethodException e) {
-                genArg.setGenericString(null);
-            }
+            genArg.setGenericString(genericStrings[i]);
             argList.add(genArg);
         }
         return argList;
     }
 
+    /**
+     * @param budget budget of the captured method, null if there is no capture budget
+     * @param index argument index or {@link CaptureBudget#RETURN}
+     */
+    public static ProviderSnapshot takeDataProviderSnapshot(Object value, CaptureBudget.MethodBudget budget, int index) {
+        CaptureBudget.Slot slot = budget != null ? budget.slot(index) : null;
+        if (PROVIDER_GENERATION == ProviderGeneration.DEFERRED) {
+            return ProviderSnapshot.dataProvider(SG, value, SNAPSHOT_MAX_BYTES, ARENA, slot);
+        } else {
+            return ProviderSnapshot.generateDataProvider(SG, value, ARENA, slot);
+        }
+    }
+
+    public static ProviderSnapshot takeFillObjectSnapshot(Object value, CaptureBudget.MethodBudget budget) {
+        CaptureBudget.Slot slot = budget != null ? budget.slot(CaptureBudget.TARGET) : null;
+        if (PROVIDER_GENERATION == ProviderGeneration.DEFERRED) {
+            return ProviderSnapshot.fillObject(SG, value, SNAPSHOT_MAX_BYTES, ARENA, slot);
+        } else {
+            return ProviderSnapshot.generateFillObject(SG, value, ARENA, slot);
+        }
+    }
+
+    public static ProviderResult createProvider(ProviderSnapshot snapshot) {
+        return snapshot != null ? snapshot.createProvider(SG) : null;
+    }
+
+    public static ProviderResult[] createProviders(ProviderSnapshot[] snapshots) {
+        ProviderResult[] providers = new ProviderResult[snapshots.length];
+        for (int i = 0; i < snapshots.length; i++) {
+            providers[i] = createProvider(snapshots[i]);
+        }
+        return providers;
+    }
+
+    /**
+     * Frees arena memory of snapshots not turned into providers, for dropped or failed records.
+     */
+    public static void releaseSnapshots(MethodCallInfo info) {
+        releaseSnapshots(info.getArgsSnapshots(), info.getTargetSnapshot());
+        if (info.getReturnSnapshot() != null) info.getReturnSnapshot().release();
+    }
+
+    /**
+     * Frees arena memory of snapshots taken before the captured call, for calls never submitted.
+     */
+    public static void releaseSnapshots(ProviderSnapshot[] argsSnapshots, ProviderSnapshot targetSnapshot) {
+        if (argsSnapshots != null) {
+            for (ProviderSnapshot snapshot : argsSnapshots) {
+                if (snapshot != null) snapshot.release();
+            }
+        }
+        if (targetSnapshot != null) targetSnapshot.release();
+    }
+
+    private static OffHeapArena createArena() {
+        if (!isOffHeap()) return null;
+        OffHeapArena arena = new OffHeapArena(getOffHeapSlabBytes(), getOffHeapMaxBytes());
+        METRICS.setArena(arena);
+        return arena;
+    }
+
+    private static CaptureBudget createBudget() {
+        CaptureBudget budget = new CaptureBudget(
+                getCaptureMaxNodes(),
+                loadProps().getMaxObjectDepth(),
+                getCaptureMaxMillis(),
+                getCaptureMaxBytes(),
+                getCaptureSkipAfter(),
+                getCaptureRetryAfter());
+        if (budget.isEnabled()) METRICS.setCaptureBudget(budget);
+        return budget;
+    }
+
     private static SourceGenerator getSgInstance() {
         GenerationProperties props = loadProps();
         Set<String> allowedPackages = new HashSet<String>(asList(props.getAllowedPackagesForDp()));
@@ -98,34 +213,40 @@ public class CollectUtils {
         return sg;
     }
 
+    private static JoinPointFilter createFilter() {
+        GenerationProperties props = loadProps();
+        return new JoinPointFilter(
+                DENIED_METHODS,
+                DENIED_METHOD_SYMBOLS,
+                props.getExcludedThreadNames(),
+                props.getAllowedPackagesForTests());
+    }
+
     public static boolean excludedThreadName(String threadName) {
-        if (threadName == null) return false;
-        for (String p : loadProps().getExcludedThreadNames()) {
-            if(threadName.contains(p)) return true;
-        }
-        return false;
+        return FILTER.excludedThreadName(threadName);
     }
 
     public static boolean allowedPackageForGen(String className) {
-        if (className == null) return false;
-        for (String p : loadProps().getAllowedPackagesForTests()) {
-            if(className.startsWith(p)) return true;
-        }
-        return false;
+        return FILTER.allowedPackageForGen(className);
     }
 
     public static boolean deniedMethod(String methodName) {
-        for (String m : DENIED_METHODS) {
-            if (methodName.startsWith(m)) return true;
-        }
-        return false;
+        return FILTER.deniedMethod(methodName);
     }
 
     public static boolean deniedMethodSymbol(String methodName) {
-        for (String m : DENIED_METHOD_SYMBOLS) {
-            if (methodName.contains(m)) return true;
+        return FILTER.deniedMethodSymbol(methodName);
+    }
+
+    /**
+     * Combines fingerprints of arguments the same way as {@link HashCodeBuilder#append(int)}.
+     */
+    public static int fingerprintArgs(ArgumentFingerprinter fingerprinter, Object[] args) {
+        int total = 17;
+        for (Object arg : args) {
+            total = total * 37 + fingerprinter.fingerprint(arg);
         }
-        return false;
+        return total;
     }
 
     public static String getMethodKey(String className, String method, String threadName) {
@@ -152,18 +273,19 @@ public class CollectUtils {
 
     public static MethodCallInfo createMethodCallInfo(
             JoinPoint joinPoint,
-            ProviderResult[] argsProviders,
+            ProviderSnapshot[] argsSnapshots,
             Object ret,
             int ownArgsHashCode,
             TraceAnalyzeDto traceAnalyzeDto,
             String threadName,
-            ProviderResult targetProvider,
+            ProviderSnapshot targetSnapshot,
             int targetHashCode,
             long startTime
     ) {
         MethodCallInfo result = new MethodCallInfo();
 
-        result.setArgsProviders(argsProviders);
+        result.setStaticPart(joinPoint.getStaticPart());
+        result.setArgsSnapshots(argsSnapshots);
 
         Class[] parameterTypes = getParameterTypes(joinPoint);
         result.setParameterTypes(parameterTypes);
@@ -177,25 +299,36 @@ public class CollectUtils {
         result.setArgTypes(argTypes);
         result.setClazz(getJoinClass(joinPoint));
         result.setDeclaringTypeName(joinPoint.getSignature().getDeclaringTypeName());
-        result.setMethodKey(createMethodKey(joinPoint, threadName + ownArgsHashCode));
+        if (KEY_MODE == KeyMode.IDS) {
+            // key itself is built by a dump worker
+            result.setThreadId(MethodKeys.threadId());
+            result.setMethodId(MethodKeys.methodId(result.getClazz().getName(), joinPoint.getSignature().getName()));
+            result.setArgsHashCode(ownArgsHashCode);
+        } else {
+            result.setMethodKey(createMethodKey(joinPoint, threadName + ownArgsHashCode));
+        }
         result.setMethodModifiers(joinPoint.getSignature().getModifiers());
         result.setMethodName(joinPoint.getSignature().getName());
         result.setRetType(getReturnType(joinPoint));
-        result.setReturnProvider(SG.createDataProviderMethod(ret));
         result.setTraceAnalyze(traceAnalyzeDto);
-        result.setTargetProvider(targetProvider);
+        result.setTargetSnapshot(targetSnapshot);
         result.setTargetHashCode(targetHashCode);
         result.setStartTime(startTime);
         result.setEndTime(System.nanoTime());
         if (ret != null) {
-            result.setReturnArgHashCode(HashCodeBuilder.reflectionHashCode(ret));
+            long fingerprintStart = METRICS.getFingerprintTimer().start();
+            result.setReturnArgHashCode(FINGERPRINTER.fingerprint(ret));
+            METRICS.getFingerprintTimer().stop(fingerprintStart);
         }
+        // taken last, so nothing throws after the return value is copied to the arena
+        CaptureBudget.MethodBudget budget = BUDGET.forMethod(joinPoint.getStaticPart(), args.length);
+        result.setReturnSnapshot(takeDataProviderSnapshot(ret, budget, CaptureBudget.RETURN));
 
         return result;
     }
 
     public static boolean isMaybeServiceClass(List<Class> classHierarchy) {
-        List<String> fieldTypeNames = new ArrayList<String>();
+        Set<String> fieldTypeNames = new HashSet<String>();
         for (Field f : getAllFieldsOfClass(classHierarchy)) {
             boolean deniedModifier = isStatic(f.getModifiers()) || isNative(f.getModifiers());
             if (deniedModifier) continue;
@@ -1,53 +1,130 @@
 package com.github.tankist88.carpenter.collector.util;
 
+import com.github.tankist88.carpenter.collector.codec.CompactBinaryCodec;
+import com.github.tankist88.carpenter.collector.codec.TraceRecordCodec;
+import com.github.tankist88.carpenter.collector.compress.CompressionDictionary;
+import com.github.tankist88.carpenter.collector.keys.KeyMode;
+import com.github.tankist88.carpenter.collector.keys.MethodKeys;
+import com.github.tankist88.carpenter.collector.keys.SymbolFile;
+import com.github.tankist88.carpenter.collector.storage.FileBlobStore;
+import com.github.tankist88.carpenter.collector.storage.FileTraceSink;
+import com.github.tankist88.carpenter.collector.storage.NetworkTraceSink;
+import com.github.tankist88.carpenter.collector.storage.SegmentedTraceLog;
+import com.github.tankist88.carpenter.collector.storage.StorageMode;
+import com.github.tankist88.carpenter.collector.storage.TraceSink;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
 
-import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.OBJ_FILE_EXTENSION;
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.*;
+import static com.github.tankist88.carpenter.collector.storage.SegmentFormat.BLOB_EXTENSION;
 import static com.github.tankist88.carpenter.core.property.GenerationPropertiesFactory.loadProps;
-import static com.github.tankist88.object2source.util.GenerationUtil.getPackage;
 
 public class DumpUtils {
     private static final Logger logger = LoggerFactory.getLogger(DumpUtils.class);
 
-    public static synchronized void saveObjectDump(
+    private static final TraceSink SINK = createSink();
+
+    private static final SymbolFile SYMBOL_FILE = getKeyMode() == KeyMode.IDS ? createSymbolFile() : null;
+
+    private static TraceSink createSink() {
+        switch (getStorageMode()) {
+            case FILES:
+                return new FileTraceSink(loadProps().getObjectDumpDir());
+            case SEGMENTS:
+                try {
+                    File segmentDir = new File(getSegmentDir());
+                    TraceRecordCodec codec = getCodecType().getCodec();
+                    FileBlobStore blobStore = null;
+                    if (isDedupProviders()) {
+                        String blobFileName = "blobs-" + System.currentTimeMillis() + "." + BLOB_EXTENSION;
+                        blobStore = new FileBlobStore(segmentDir, blobFileName);
+                        codec = new CompactBinaryCodec(blobStore);
+                    }
+                    byte[] compressionDictionary = isCompressionDictionary()
+                            ? CompressionDictionary.build(loadProps().getAllowedPackagesForTests())
+                            : null;
+                    return new SegmentedTraceLog(
+                            segmentDir,
+                            getSegmentSize(),
+                            getSyncEveryRecords(),
+                            getSyncIntervalMillis(),
+                            codec,
+                            blobStore,
+                            getCompression().create(getCompressionLevel(), compressionDictionary),
+                            getCompressionBlockSize());
+                } catch (IOException iex) {
+                    String errorMsg = "Can't open trace log";
+                    logError(errorMsg, iex);
+                    throw new IllegalStateException(errorMsg, iex);
+                }
+            case NETWORK:
+                NetworkTraceSink sink = new NetworkTraceSink(
+                        new InetSocketAddress(getNetworkHost(), getNetworkPort()),
+                        getNetworkBufferBytes(),
+                        getNetworkReconnectMillis());
+                METRICS.setNetworkSink(sink);
+                return sink;
+            default:
+                throw new IllegalStateException("Unknown storage mode " + getStorageMode());
+        }
+    }
+
+    /**
+     * Symbols are written to the dump directory, or to the segment directory in SEGMENTS mode.
+     */
+    private static SymbolFile createSymbolFile() {
+        String dir = getStorageMode() == StorageMode.SEGMENTS ? getSegmentDir() : loadProps().getObjectDumpDir();
+        File file = new File(dir, "symbols-" + System.currentTimeMillis() + "." + SymbolFile.EXTENSION);
+        return new SymbolFile(file, MethodKeys.NAMES, MethodKeys.THREADS);
+    }
+
+    public static void saveObjectDump(
             Serializable object,
             String methodKey,
             String className,
             String upLevelKey,
             int fieldsHashCode
     ) {
-        DataOutputStream dos = null;
+        long start = METRICS.getSaveDumpTimer().start();
+        String key = methodKey + "_" + upLevelKey + "_" + fieldsHashCode;
+        write(object, DigestUtils.md5Hex(key), className, start);
+    }
+
+    /**
+     * @param recordKey key already hashed, for example by {@link MethodKeys#recordKey}
+     */
+    public static void saveObjectDump(Serializable object, String recordKey, String className) {
+        write(object, recordKey, className, METRICS.getSaveDumpTimer().start());
+    }
+
+    private static void write(Serializable object, String keyHash, String className, long start) {
         try {
-            String key = methodKey + "_" + upLevelKey + "_" + fieldsHashCode;
-            String keyHash = DigestUtils.md5Hex(key);
-            String packageFileStruct =
-                    loadProps().getObjectDumpDir() +
-                            "/" +
-                            getPackage(className).replaceAll("\\.", "/");
-            FileUtils.forceMkdir(new File(packageFileStruct));
-            File file = new File(packageFileStruct, keyHash + "." + OBJ_FILE_EXTENSION);
-            dos = new DataOutputStream(new FileOutputStream(file));
-            byte[] bytes = SerializationUtils.serialize(object);
-            dos.writeInt(bytes.length);
-            dos.write(bytes);
+            if (SYMBOL_FILE != null) {
+                // names of ids go to disk before the first record using them
+                SYMBOL_FILE.flush();
+            }
+            int bytes = SINK.write(keyHash, className, object);
+            METRICS.recordSave(start, bytes);
         } catch (IOException iex) {
+            METRICS.recordSaveError();
             String errorMsg = "Can't save object dump";
             logError(errorMsg, iex);
             throw new IllegalStateException(errorMsg, iex);
-        } finally {
-            if (dos != null) {
-                try {
-                    dos.close();
-                } catch (IOException iex) {
-                    logError("Can't close stream", iex);
-                }
-            }
+        }
+    }
+
+    public static void closeSink() {
+        try {
+            SINK.close();
+        } catch (IOException iex) {
+            logError("Can't close trace sink", iex);
         }
     }
 
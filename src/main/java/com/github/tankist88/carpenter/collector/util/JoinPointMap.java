@@ -0,0 +1,116 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import org.aspectj.lang.JoinPoint;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent map by {@link JoinPoint.StaticPart} identity with weak keys. Static parts are held by static
+ * fields of woven classes, so weak keys let class loaders of redeployed applications be unloaded, like
+ * {@link ClassMetadataCache} does for classes. Values must not reference their static part.
+ * <p>
+ * Lookups are lock free, entries of collected static parts are expunged by the next put.
+ */
+public class JoinPointMap<V> {
+    private final ConcurrentMap<Object, V> map = new ConcurrentHashMap<Object, V>();
+    private final ReferenceQueue<JoinPoint.StaticPart> queue = new ReferenceQueue<JoinPoint.StaticPart>();
+
+    public V get(JoinPoint.StaticPart staticPart) {
+        return map.get(new LookupKey(staticPart));
+    }
+
+    /**
+     * @return value already mapped to static part, or null if the given value was put
+     */
+    public V putIfAbsent(JoinPoint.StaticPart staticPart, V value) {
+        expunge();
+        return map.putIfAbsent(new WeakKey(staticPart, queue), value);
+    }
+
+    /**
+     * @return copy of entries whose static parts are not collected
+     */
+    public Map<JoinPoint.StaticPart, V> snapshot() {
+        Map<JoinPoint.StaticPart, V> result = new HashMap<JoinPoint.StaticPart, V>();
+        for (Map.Entry<Object, V> entry : map.entrySet()) {
+            JoinPoint.StaticPart staticPart = ((WeakKey) entry.getKey()).get();
+            if (staticPart != null) result.put(staticPart, entry.getValue());
+        }
+        return result;
+    }
+
+    public int size() {
+        expunge();
+        return map.size();
+    }
+
+    public void clear() {
+        map.clear();
+        expunge();
+    }
+
+    private void expunge() {
+        Reference<? extends JoinPoint.StaticPart> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private static boolean sameReferent(int hash, Object referent, Object other) {
+        if (other instanceof WeakKey) {
+            WeakKey key = (WeakKey) other;
+            return key.hash == hash && referent != null && key.get() == referent;
+        }
+        if (other instanceof LookupKey) {
+            LookupKey key = (LookupKey) other;
+            return key.hash == hash && key.staticPart == referent;
+        }
+        return false;
+    }
+
+    private static class WeakKey extends WeakReference<JoinPoint.StaticPart> {
+        private final int hash;
+
+        private WeakKey(JoinPoint.StaticPart staticPart, ReferenceQueue<JoinPoint.StaticPart> queue) {
+            super(staticPart, queue);
+            this.hash = System.identityHashCode(staticPart);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            // cleared keys are equal only to themselves, so expunge removes the right entry
+            return obj == this || sameReferent(hash, get(), obj);
+        }
+    }
+
+    private static class LookupKey {
+        private final JoinPoint.StaticPart staticPart;
+        private final int hash;
+
+        private LookupKey(JoinPoint.StaticPart staticPart) {
+            this.staticPart = staticPart;
+            this.hash = System.identityHashCode(staticPart);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return sameReferent(hash, staticPart, obj);
+        }
+    }
+}
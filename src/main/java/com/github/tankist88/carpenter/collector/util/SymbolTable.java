@@ -0,0 +1,63 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns class and method names as int ids. Lookup of a known name doesn't allocate or lock.
+ */
+public class SymbolTable {
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] names = new String[256];
+    private int size;
+
+    /**
+     * @return id of name, -1 for null
+     */
+    public int idOf(String name) {
+        if (name == null) return -1;
+        Integer id = ids.get(name);
+        return id != null ? id : define(name);
+    }
+
+    /**
+     * @return id of name, -1 for null or a new name when the table already has maxSize names
+     */
+    public int idOf(String name, int maxSize) {
+        if (name == null) return -1;
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        synchronized (this) {
+            if (size < maxSize) return define(name);
+            id = ids.get(name);
+            return id != null ? id : -1;
+        }
+    }
+
+    /**
+     * @return name of id, null for -1
+     */
+    public String nameOf(int id) {
+        return id >= 0 ? names[id] : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int define(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        String[] current = names;
+        if (size == current.length) {
+            String[] grown = new String[current.length * 2];
+            System.arraycopy(current, 0, grown, 0, size);
+            current = grown;
+        }
+        current[size] = name;
+        // array is published before the id, readers of an id always see its name
+        names = current;
+        ids.put(name, size);
+        return size++;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * Thread features that differ between Java versions. The jar is built for Java 6, so virtual threads of
+ * Java 21+ are looked up and created through reflection. Virtual threads are keyed by id, because they
+ * usually have no name and there may be millions of them.
+ */
+public class ThreadSupport {
+    private static final Method IS_VIRTUAL;
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method isVirtual = null;
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderUnstarted = null;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class builder = Class.forName("java.lang.Thread$Builder");
+            builderName = builder.getMethod("name", String.class);
+            builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (Exception ex) {
+            // Java before 21
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_UNSTARTED = builderUnstarted;
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return IS_VIRTUAL != null;
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) return false;
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return key that tells traces of the thread from traces of other live threads: "virtual-" and id
+     * for virtual threads, otherwise thread name, or thread id if the name is empty
+     */
+    public static String threadKey(Thread thread) {
+        if (isVirtual(thread)) return "virtual-" + thread.getId();
+        String name = thread.getName();
+        return name != null && !name.isEmpty() ? name : "thread-" + thread.getId();
+    }
+
+    /**
+     * @param virtual ignored before Java 21
+     * @return not started daemon thread, virtual if requested and supported
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        if (virtual && isVirtualThreadsSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Can't create virtual thread " + name, ex);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.tankist88.carpenter.collector.aspect;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class AspectGeneratorTest {
+    @Test
+    public void scopePointcutsTest() {
+        assertEquals(
+                AspectGenerator.scopePointcuts(new String[] {"org.carpenter.web", " org.carpenter.service.* ", "org.carpenter.web."}),
+                Arrays.asList("execution(* org.carpenter.web..*(..))", "execution(* org.carpenter.service..*(..))"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidPackageTest() {
+        AspectGenerator.scopePointcuts(new String[] {"org.carpenter..web"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void noPackagesTest() {
+        AspectGenerator.scopePointcuts(new String[] {" "});
+    }
+
+    @Test
+    public void generateTest() {
+        String source = AspectGenerator.generate("org.carpenter.aspect.ScopedAspect", new String[] {"org.carpenter.web", "org.carpenter.service"});
+        assertTrue(source.startsWith("package org.carpenter.aspect;\n"));
+        assertTrue(source.contains("public class ScopedAspect extends AbstractTraceCollectorAspect {"));
+        assertTrue(source.contains("    @Pointcut(\"execution(* org.carpenter.web..*(..)) || \" +\n"
+                + "            \"execution(* org.carpenter.service..*(..))\")\n"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.tankist88.carpenter.collector.aspect;
+
+import com.github.tankist88.carpenter.collector.util.ArgsHashCodeHolder;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.runtime.internal.AroundClosure;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+
+import static com.github.tankist88.carpenter.collector.metrics.CollectorMetrics.METRICS;
+import static org.testng.Assert.*;
+
+public class TraceCollectorAspectTest {
+    static {
+        // read once by the collector, before the first captured call
+        System.setProperty("carpenter.collector.offHeap", "true");
+        System.setProperty("carpenter.collector.providerGeneration", "DEFERRED");
+    }
+
+    private static final Factory FACTORY = new Factory("TraceCollectorAspectTest.java", TraceCollectorAspectTest.class);
+
+    private static final JoinPoint.StaticPart SAVE = FACTORY.makeSJP(
+            JoinPoint.METHOD_EXECUTION,
+            FACTORY.makeMethodSig(
+                    "1",
+                    "save",
+                    TraceCollectorAspectTest.class.getName(),
+                    "java.util.ArrayList",
+                    "values",
+                    "",
+                    "void"),
+            1);
+
+    public void save(ArrayList<String> values) {
+        throw new IllegalArgumentException("fail " + values);
+    }
+
+    private ProceedingJoinPoint failingCall(ArrayList<String> values) {
+        ProceedingJoinPoint pjp = (ProceedingJoinPoint) Factory.makeJP(SAVE, this, this, new Object[] {values});
+        pjp.set$AroundClosure(new AroundClosure(new Object[] {values}) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object run(Object[] state) {
+                save((ArrayList<String>) state[0]);
+                return null;
+            }
+        });
+        return pjp;
+    }
+
+    @Test
+    public void throwingMethodTest() throws Throwable {
+        ArrayList<String> values = new ArrayList<String>();
+        values.add("value");
+        TraceCollectorAspect aspect = new TraceCollectorAspect();
+        for (int i = 0; i < 10; i++) {
+            // caller in allowedPackagesForTests, so the call is captured
+            ArgsHashCodeHolder.put(0, "org.carpenter.Caller", "call");
+            try {
+                aspect.aroundMethod(failingCall(values));
+                fail("exception of the method is expected");
+            } catch (IllegalArgumentException iex) {
+                assertEquals(iex.getMessage(), "fail [value]");
+            } finally {
+                ArgsHashCodeHolder.pop();
+            }
+        }
+        if (METRICS.getOffHeapReservedBytes() == 0L) {
+            throw new SkipException("Collector was initialized without off-heap arena");
+        }
+        assertEquals(METRICS.getOffHeapUsedBytes(), 0L);
+        assertEquals(METRICS.getEnqueuedRecords(), 0L);
+    }
+}
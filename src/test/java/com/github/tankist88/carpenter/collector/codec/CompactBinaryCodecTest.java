@@ -0,0 +1,136 @@
+package com.github.tankist88.carpenter.collector.codec;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class CompactBinaryCodecTest {
+    private static class Argument implements Serializable {
+        private String className;
+        private Set<String> interfacesHierarchy = new LinkedHashSet<String>();
+        private String body;
+    }
+
+    private static class Call implements Serializable {
+        private String key;
+        private int modifiers;
+        private List<Argument> arguments = new ArrayList<Argument>();
+    }
+
+    private static class Versioned implements Serializable {
+        private static final long serialVersionUID = 0x0123456789ABCDEFL;
+
+        private String name = "versioned";
+    }
+
+    private static Call createCall(int i) {
+        Call call = new Call();
+        call.key = "main123_org.carpenter.Service_find" + i;
+        call.modifiers = i;
+        for (int a = 0; a < 3; a++) {
+            Argument argument = new Argument();
+            argument.className = "org.carpenter.dto.Dto" + a;
+            argument.interfacesHierarchy.add("java.io.Serializable");
+            argument.interfacesHierarchy.add("java.lang.Comparable");
+            StringBuilder body = new StringBuilder();
+            for (int l = 0; l < 50; l++) {
+                body.append("    dto.setField").append(l).append("(").append(i).append(");\n");
+            }
+            argument.body = body.toString();
+            call.arguments.add(argument);
+        }
+        return call;
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        CompactBinaryCodec codec = new CompactBinaryCodec();
+        byte[] bytes = codec.encode(createCall(7), dictionary);
+
+        StringDictionary readDictionary = new StringDictionary();
+        for (int id = 0; id < dictionary.size(); id++) {
+            readDictionary.define(id, dictionary.get(id));
+        }
+        Call call = (Call) codec.decode(bytes, readDictionary);
+        Call expected = createCall(7);
+        assertEquals(call.key, expected.key);
+        assertEquals(call.modifiers, 7);
+        assertEquals(call.arguments.size(), 3);
+        for (int a = 0; a < 3; a++) {
+            assertEquals(call.arguments.get(a).className, expected.arguments.get(a).className);
+            assertEquals(call.arguments.get(a).interfacesHierarchy, expected.arguments.get(a).interfacesHierarchy);
+            assertEquals(call.arguments.get(a).body, expected.arguments.get(a).body);
+        }
+    }
+
+    @Test
+    public void smallerThanJavaSerializationTest() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        TraceRecordCodec compact = new CompactBinaryCodec();
+        TraceRecordCodec java = new JavaSerializationCodec();
+        compact.encode(createCall(0), dictionary);
+        int compactSize = compact.encode(createCall(1), dictionary).length;
+        int javaSize = java.encode(createCall(1), null).length;
+        assertTrue(compactSize < javaSize, compactSize + " >= " + javaSize);
+    }
+
+    @Test
+    public void dictionaryLimitsTest() {
+        StringDictionary dictionary = new StringDictionary(2, 5);
+        assertEquals(dictionary.idOf("a"), 0);
+        assertEquals(dictionary.idOf("long string"), -1);
+        assertEquals(dictionary.idOf("b"), 1);
+        assertEquals(dictionary.idOf("c"), -1);
+        assertEquals(dictionary.idOf("a"), 0);
+        assertEquals(dictionary.get(1), "b");
+    }
+
+    @Test
+    public void repeatedStringsTest() {
+        StringDictionary dictionary = new StringDictionary(16, 64);
+        assertEquals(dictionary.repeatedIdOf("org.carpenter.Service"), -1);
+        assertEquals(dictionary.repeatedIdOf("main_org.carpenter.Service_find12345"), -1);
+        assertEquals(dictionary.size(), 0);
+        assertEquals(dictionary.repeatedIdOf("org.carpenter.Service"), 0);
+        assertEquals(dictionary.repeatedIdOf("org.carpenter.Service"), 0);
+        assertEquals(dictionary.idOf("org.carpenter.Dao"), 1);
+        assertEquals(dictionary.size(), 2);
+    }
+
+    @Test
+    public void serialVersionUidTest() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        CompactBinaryCodec codec = new CompactBinaryCodec();
+        byte[] bytes = codec.encode(new Versioned(), dictionary);
+        assertEquals(((Versioned) codec.decode(bytes, dictionary)).name, "versioned");
+
+        // the record as written by another version of the class
+        int offset = indexOf(bytes, new byte[] {0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF});
+        assertTrue(offset >= 0);
+        bytes[offset + 7] = 0;
+        try {
+            codec.decode(bytes, dictionary);
+            fail("Class of another serialVersionUID is decoded");
+        } catch (InvalidClassException icex) {
+            assertEquals(icex.classname, Versioned.class.getName());
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < part.length && bytes[i + j] == part[j]) j++;
+            if (j == part.length) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.tankist88.carpenter.collector.compact;
+
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.carpenter.collector.storage.FileTraceSink;
+import com.github.tankist88.carpenter.collector.storage.RecordPointer;
+import com.github.tankist88.carpenter.collector.storage.SegmentedTraceLogReader;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.testng.Assert.*;
+
+public class DumpCompactorTest {
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "dump_compactor_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void deleteDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private File dumpDir(String name) {
+        return new File(dir, name);
+    }
+
+    @Test
+    public void compactTest() throws IOException {
+        FileTraceSink first = new FileTraceSink(dumpDir("jvm1").getAbsolutePath());
+        FileTraceSink second = new FileTraceSink(dumpDir("jvm2").getAbsolutePath());
+        for (int i = 0; i < 50; i++) {
+            first.write("service" + i, "org.carpenter.Service", "value" + i);
+            first.write("dao" + i, "org.carpenter.dao.Dao", "dao" + i);
+        }
+        second.write("service0", "org.carpenter.Service", "longer value0");
+        second.write("service1", "org.carpenter.Service", "v");
+        second.write("web", "org.carpenter.web.Controller", "web");
+
+        File output = new File(dir, "compacted");
+        DumpCompactor compactor = new DumpCompactor(output, 3, 1024, CompressionType.DEFLATE, Deflater.BEST_SPEED, 4096);
+        CompactionResult result = compactor.compact(Arrays.asList(dumpDir("jvm1"), dumpDir("jvm2")));
+        assertEquals(result.getPackages(), 3);
+        assertEquals(result.getInputRecords(), 103);
+        assertEquals(result.getOutputRecords(), 101);
+        assertEquals(result.getDuplicates(), 2);
+
+        CompactedDumpReader reader = new CompactedDumpReader(output);
+        assertEquals(reader.getPackages(), Arrays.asList("org.carpenter", "org.carpenter.dao", "org.carpenter.web"));
+        assertTrue(reader.reader("org.carpenter").getSegments().size() > 1);
+
+        Map<String, Object> records = new HashMap<String, Object>();
+        CompactedDumpReader.RecordIterator it = reader.iterator();
+        try {
+            while (it.hasNext()) {
+                TraceRecord record = it.next();
+                assertNull(records.put(record.getClassName() + "/" + record.getKey(), it.readObject()));
+            }
+        } finally {
+            it.close();
+        }
+        assertEquals(records.size(), 101);
+        assertEquals(records.get("org.carpenter/service0"), "longer value0");
+        assertEquals(records.get("org.carpenter/service1"), "value1");
+        assertEquals(records.get("org.carpenter.dao/dao7"), "dao7");
+        assertEquals(records.get("org.carpenter.web/web"), "web");
+
+        SegmentedTraceLogReader daoReader = reader.reader("org.carpenter.dao");
+        RecordPointer pointer = daoReader.readIndex().get("dao42");
+        assertEquals(daoReader.readObject(pointer), "dao42");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void notEmptyOutputTest() throws IOException {
+        new FileTraceSink(dumpDir("jvm1").getAbsolutePath()).write("key", "org.carpenter.Service", "value");
+        new DumpCompactor(dir, 1).compact(Arrays.asList(dumpDir("jvm1")));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void idsKeyModeTest() throws IOException {
+        new FileTraceSink(dumpDir("jvm1").getAbsolutePath()).write("key", "org.carpenter.Service", "value");
+        FileUtils.writeStringToFile(new File(dumpDir("jvm1"), "symbols-1.sym"), "n 0 org.carpenter.Service\n", "UTF-8");
+        new DumpCompactor(new File(dir, "compacted"), 1).compact(Arrays.asList(dumpDir("jvm1")));
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.tankist88.carpenter.collector.control;
+
+import org.apache.commons.io.FileUtils;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.*;
+
+public class CollectorSwitchTest {
+    private static final Factory FACTORY = new Factory("CollectorSwitchTest.java", CollectorSwitchTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String declaringType) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", "call", declaringType, "", "", "", "void"),
+                1);
+    }
+
+    @Test
+    public void packageTest() {
+        CollectorSwitch collectorSwitch = new CollectorSwitch(true, " org.testng , org.test", null);
+        assertEquals(collectorSwitch.getDisabledPackages(), new String[] {"org.testng", "org.test"});
+        assertFalse(collectorSwitch.isEnabled(staticPart("org.testng.Assert")));
+        assertFalse(collectorSwitch.isEnabled(staticPart("org.testng.annotations.Test")));
+        assertTrue(collectorSwitch.isEnabled(staticPart("org.apache.commons.io.FileUtils")));
+
+        collectorSwitch.enablePackage("org.testng");
+        collectorSwitch.disablePackage("org.apache.commons");
+        // org.test is not a package of org.testng.Assert
+        assertTrue(collectorSwitch.isEnabled(staticPart("org.testng.Assert")));
+        assertFalse(collectorSwitch.isEnabled(staticPart("org.apache.commons.io.FileUtils")));
+
+        collectorSwitch.setEnabled(false);
+        assertFalse(collectorSwitch.isEnabled());
+        assertFalse(collectorSwitch.isEnabled(staticPart("org.testng.Assert")));
+    }
+
+    @Test
+    public void switchFileTest() throws Exception {
+        File file = File.createTempFile("carpenter-switch", ".properties");
+        try {
+            CollectorSwitch collectorSwitch = new CollectorSwitch(true, null, file);
+            FileUtils.writeStringToFile(file, "enabled=false\ndisabledPackages=org.testng\n", "UTF-8");
+            assertTrue(file.setLastModified(1000000L));
+            collectorSwitch.poll();
+            assertFalse(collectorSwitch.isEnabled());
+            assertEquals(collectorSwitch.getDisabledPackages(), new String[] {"org.testng"});
+
+            // unchanged file doesn't override state set through JMX
+            collectorSwitch.setEnabled(true);
+            collectorSwitch.poll();
+            assertTrue(collectorSwitch.isEnabled());
+
+            FileUtils.writeStringToFile(file, "enabled=false\n", "UTF-8");
+            assertTrue(file.setLastModified(2000000L));
+            collectorSwitch.poll();
+            assertFalse(collectorSwitch.isEnabled());
+            assertEquals(collectorSwitch.getDisabledPackages(), new String[] {"org.testng"});
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class BoundedDumpPipelineTest {
+    private static class BlockingHandler implements RecordHandler<Integer> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> handled = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        public void handle(Integer record) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(record);
+        }
+    }
+
+    private DumpPipeline<Integer> fillPipeline(OverflowPolicy policy, BlockingHandler handler) throws InterruptedException {
+        DumpPipeline<Integer> pipeline = new BoundedDumpPipeline<Integer>("test-dump", 1, 2, policy, 2, 10L, handler);
+        pipeline.submit(0);
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        pipeline.submit(1);
+        pipeline.submit(2);
+        return pipeline;
+    }
+
+    @Test
+    public void dropNewestTest() throws InterruptedException {
+        BlockingHandler handler = new BlockingHandler();
+        DumpPipeline<Integer> pipeline = fillPipeline(OverflowPolicy.DROP_NEWEST, handler);
+        assertFalse(pipeline.submit(3));
+        handler.release.countDown();
+        assertTrue(pipeline.shutdown(5000L));
+        assertEquals(handler.handled.toString(), "[0, 1, 2]");
+        assertEquals(pipeline.getEnqueuedCount(), 3L);
+        assertEquals(pipeline.getDroppedCount(), 1L);
+        assertEquals(pipeline.getProcessedCount(), 3L);
+    }
+
+    @Test
+    public void dropOldestTest() throws InterruptedException {
+        BlockingHandler handler = new BlockingHandler();
+        DumpPipeline<Integer> pipeline = fillPipeline(OverflowPolicy.DROP_OLDEST, handler);
+        assertTrue(pipeline.submit(3));
+        handler.release.countDown();
+        assertTrue(pipeline.shutdown(5000L));
+        assertEquals(handler.handled.toString(), "[0, 2, 3]");
+        assertEquals(pipeline.getDroppedCount(), 1L);
+    }
+
+    private static class DropListeningHandler extends BlockingHandler implements DropListener<Integer> {
+        private final List<Integer> dropped = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        public void dropped(Integer record) {
+            dropped.add(record);
+        }
+    }
+
+    @Test
+    public void dropListenerTest() throws InterruptedException {
+        DropListeningHandler handler = new DropListeningHandler();
+        DumpPipeline<Integer> oldest = fillPipeline(OverflowPolicy.DROP_OLDEST, handler);
+        oldest.submit(3);
+        ((BlockingHandler) handler).release.countDown();
+        assertTrue(oldest.shutdown(5000L));
+        assertEquals(handler.dropped.toString(), "[1]");
+
+        DropListeningHandler newestHandler = new DropListeningHandler();
+        DumpPipeline<Integer> newest = fillPipeline(OverflowPolicy.DROP_NEWEST, newestHandler);
+        newest.submit(3);
+        ((BlockingHandler) newestHandler).release.countDown();
+        assertTrue(newest.shutdown(5000L));
+        assertEquals(newestHandler.dropped.toString(), "[3]");
+    }
+
+    @Test
+    public void blockWithTimeoutTest() throws InterruptedException {
+        BlockingHandler handler = new BlockingHandler();
+        DumpPipeline<Integer> pipeline = fillPipeline(OverflowPolicy.BLOCK, handler);
+        assertFalse(pipeline.submit(3));
+        handler.release.countDown();
+        assertTrue(pipeline.shutdown(5000L));
+        assertEquals(pipeline.getDroppedCount(), 1L);
+    }
+
+    @Test
+    public void shutdownDrainsQueueTest() {
+        final List<Integer> handled = new CopyOnWriteArrayList<Integer>();
+        DumpPipeline<Integer> pipeline = new BoundedDumpPipeline<Integer>(
+                "test-dump", 2, 100, OverflowPolicy.BLOCK, 1, 1000L,
+                new RecordHandler<Integer>() {
+                    @Override
+                    public void handle(Integer record) {
+                        handled.add(record);
+                    }
+                });
+        for (int i = 0; i < 50; i++) {
+            pipeline.submit(i);
+        }
+        assertTrue(pipeline.shutdown(5000L));
+        assertEquals(handled.size(), 50);
+        assertFalse(pipeline.submit(50));
+        assertEquals(pipeline.getDroppedCount(), 1L);
+    }
+
+    @Test
+    public void workerSurvivesErrorTest() {
+        final List<Integer> handled = new CopyOnWriteArrayList<Integer>();
+        DumpPipeline<Integer> pipeline = new BoundedDumpPipeline<Integer>(
+                "test-dump", 1, 100, OverflowPolicy.DROP_NEWEST, 1, 0L,
+                new RecordHandler<Integer>() {
+                    @Override
+                    public void handle(Integer record) {
+                        if (record == 0) throw new StackOverflowError();
+                        handled.add(record);
+                    }
+                });
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        assertTrue(pipeline.shutdown(5000L));
+        assertEquals(handled.size(), 9);
+        assertEquals(pipeline.getFailedCount(), 1L);
+        assertEquals(pipeline.getProcessedCount(), 9L);
+    }
+}
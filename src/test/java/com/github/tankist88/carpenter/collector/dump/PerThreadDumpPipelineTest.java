@@ -0,0 +1,139 @@
+package com.github.tankist88.carpenter.collector.dump;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class PerThreadDumpPipelineTest {
+    @Test
+    public void ringBufferTest() {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(3);
+        assertEquals(ring.capacity(), 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        List<Integer> out = new ArrayList<Integer>();
+        assertEquals(ring.drainTo(out, 3), 3);
+        assertTrue(ring.offer(4));
+        assertEquals(ring.drainTo(out, 10), 2);
+        assertEquals(out.toString(), "[0, 1, 2, 3, 4]");
+        assertEquals(ring.size(), 0);
+    }
+
+    @Test
+    public void manyProducersTest() throws InterruptedException {
+        final Set<Integer> handled = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        final PerThreadDumpPipeline<Integer> pipeline = new PerThreadDumpPipeline<Integer>(
+                "test-flush", 2, 16, OverflowPolicy.BLOCK, 1, 5000L, 8,
+                new RecordHandler<Integer>() {
+                    @Override
+                    public void handle(Integer record) {
+                        handled.add(record);
+                    }
+                });
+        int threadCount = 8;
+        final int perThread = 1000;
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int base = t * perThread;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        pipeline.submit(base + i);
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(pipeline.shutdown(10000L));
+        assertEquals(handled.size(), threadCount * perThread);
+        assertEquals(pipeline.getEnqueuedCount(), (long) threadCount * perThread);
+        assertEquals(pipeline.getProcessedCount(), (long) threadCount * perThread);
+        assertEquals(pipeline.getDroppedCount(), 0L);
+        assertEquals(pipeline.getThreadBufferCount(), 0);
+    }
+
+    @Test
+    public void dropNewestTest() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        PerThreadDumpPipeline<Integer> pipeline = new PerThreadDumpPipeline<Integer>(
+                "test-flush", 1, 2, OverflowPolicy.DROP_NEWEST, 1, 0L, 1,
+                new RecordHandler<Integer>() {
+                    @Override
+                    public void handle(Integer record) {
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException iex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (pipeline.submit(i)) accepted++;
+        }
+        release.countDown();
+        assertTrue(pipeline.shutdown(5000L));
+        assertTrue(accepted >= 2 && accepted < 10);
+        assertEquals(pipeline.getDroppedCount(), 10L - accepted);
+        assertEquals(pipeline.getProcessedCount(), (long) accepted);
+    }
+
+    @Test
+    public void sharedQueueTest() throws InterruptedException {
+        final Set<Integer> handled = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        // stands for virtual threads, which can't be started on every JVM
+        final PerThreadDumpPipeline<Integer> pipeline = new PerThreadDumpPipeline<Integer>(
+                "test-flush", 2, 16, OverflowPolicy.BLOCK, 1, 5000L, 8,
+                new RecordHandler<Integer>() {
+                    @Override
+                    public void handle(Integer record) {
+                        handled.add(record);
+                    }
+                }) {
+            @Override
+            boolean isShared(Thread thread) {
+                return thread.getName().startsWith("shared-");
+            }
+        };
+        int threadCount = 100;
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int base = t * 10;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        pipeline.submit(base + i);
+                    }
+                }
+            }, "shared-" + t);
+            producers.add(producer);
+            producer.start();
+            assertEquals(pipeline.getThreadBufferCount(), 0);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(pipeline.shutdown(10000L));
+        assertEquals(handled.size(), threadCount * 10);
+        assertEquals(pipeline.getEnqueuedCount(), threadCount * 10L);
+        assertEquals(pipeline.getProcessedCount(), threadCount * 10L);
+        assertEquals(pipeline.getDroppedCount(), 0L);
+        assertEquals(pipeline.getThreadBufferCount(), 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.tankist88.carpenter.collector.filter;
+
+import com.github.tankist88.carpenter.collector.metrics.SkipReason;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class JoinPointFilterTest {
+    private static final Factory FACTORY = new Factory("JoinPointFilterTest.java", JoinPointFilterTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String methodName) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", methodName, "org.carpenter.Service", "", "", "", "void"),
+                1);
+    }
+
+    @Test
+    public void prefixMatcherTest() {
+        PrefixMatcher matcher = new PrefixMatcher("org.carpenter.service", "org.carpenter.dao", "com.app");
+        assertTrue(matcher.matches("org.carpenter.service.UserService"));
+        assertTrue(matcher.matches("org.carpenter.dao"));
+        assertTrue(matcher.matches("com.application.Main"));
+        assertFalse(matcher.matches("org.carpenter.web.Controller"));
+        assertFalse(matcher.matches("org.carpenter"));
+        assertFalse(matcher.matches(null));
+        assertFalse(new PrefixMatcher().matches("org"));
+        assertTrue(new PrefixMatcher("").matches("org"));
+    }
+
+    @Test
+    public void substringMatcherTest() {
+        SubstringMatcher matcher = new SubstringMatcher("he", "she", "his", "hers", "$");
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("this"));
+        assertTrue(matcher.matches("access$000"));
+        assertFalse(matcher.matches("hi"));
+        assertFalse(matcher.matches("shs"));
+        assertFalse(matcher.matches(null));
+        assertTrue(new SubstringMatcher("abcd", "bc").matches("xabcx"));
+        assertFalse(new SubstringMatcher().matches("abc"));
+    }
+
+    @Test
+    public void verdictTest() {
+        JoinPointFilter filter = new JoinPointFilter(
+                new String[] {"hashCode", "equals"},
+                new String[] {"$"},
+                new String[] {"carpenter-dump"},
+                new String[] {"org.carpenter"});
+
+        JoinPoint.StaticPart find = staticPart("find");
+        assertFalse(filter.isSkip(find));
+        assertTrue(filter.isSkip(staticPart("hashCode")));
+        assertEquals(filter.getSkipReason(staticPart("equals")), SkipReason.DENIED_METHOD);
+        assertNull(filter.getSkipReason(find));
+        assertTrue(filter.isSkip(staticPart("access$000")));
+
+        assertFalse(filter.allowedPackageForGen(find, String.class));
+        assertFalse(filter.allowedPackageForGen(find, String.class));
+        assertTrue(filter.allowedPackageForGen("org.carpenter.Service"));
+
+        String name = Thread.currentThread().getName();
+        try {
+            Thread.currentThread().setName("carpenter-dump-1");
+            assertTrue(filter.isSkip(find));
+            assertEquals(filter.getSkipReason(find), SkipReason.THREAD_NAME);
+        } finally {
+            Thread.currentThread().setName(name);
+        }
+        assertFalse(filter.isSkip(find));
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.tankist88.carpenter.collector.fingerprint;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class FieldCacheFingerprinterTest {
+    public static class Node {
+        private int value;
+        private String name;
+        private TimeUnit unit = TimeUnit.SECONDS;
+        private Node next;
+        private List<String> tags = new ArrayList<String>();
+        private Map<String, Long> counters = new HashMap<String, Long>();
+        private long[] history = new long[] {1L, 2L, 3L};
+
+        public Node(int value, String name) {
+            this.value = value;
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void contentHashTest() {
+        FieldCacheFingerprinter fingerprinter = new FieldCacheFingerprinter(3, 256);
+        Node first = new Node(1, "first");
+        first.tags.add("a");
+        first.counters.put("calls", 10L);
+        Node second = new Node(1, "first");
+        second.tags.add("a");
+        second.counters.put("calls", 10L);
+        assertEquals(fingerprinter.fingerprint(first), fingerprinter.fingerprint(second));
+
+        second.counters.put("calls", 11L);
+        assertNotEquals(fingerprinter.fingerprint(first), fingerprinter.fingerprint(second));
+        second.counters.put("calls", 10L);
+        second.history[2] = 4L;
+        assertNotEquals(fingerprinter.fingerprint(first), fingerprinter.fingerprint(second));
+        assertEquals(fingerprinter.fingerprint(null), 0);
+    }
+
+    @Test
+    public void boundedWalkTest() {
+        FieldCacheFingerprinter fingerprinter = new FieldCacheFingerprinter(3, 256);
+        Node cycle = new Node(1, "cycle");
+        cycle.next = cycle;
+        assertEquals(fingerprinter.fingerprint(cycle), fingerprinter.fingerprint(cycle));
+
+        // nodes deeper than max depth don't change the fingerprint
+        Node first = new Node(1, "a");
+        first.next = new Node(2, "b");
+        first.next.next = new Node(3, "c");
+        first.next.next.next = new Node(4, "d");
+        Node second = new Node(1, "a");
+        second.next = new Node(2, "b");
+        second.next.next = new Node(3, "c");
+        second.next.next.next = new Node(5, "e");
+        assertEquals(fingerprinter.fingerprint(first), fingerprinter.fingerprint(second));
+        assertNotEquals(
+                new FieldCacheFingerprinter(5, 256).fingerprint(first),
+                new FieldCacheFingerprinter(5, 256).fingerprint(second));
+    }
+
+    @Test
+    public void failingHashTest() {
+        List<String> modified = new ArrayList<String>() {
+            @Override
+            public String get(int index) {
+                throw new ConcurrentModificationException();
+            }
+        };
+        modified.add("value");
+        List<String> list = Collections.unmodifiableList(modified);
+        FieldCacheFingerprinter fingerprinter = new FieldCacheFingerprinter(5, 256);
+        assertEquals(fingerprinter.fingerprint(list), list.getClass().getName().hashCode());
+        assertEquals(fingerprinter.fingerprint(new Node(1, "a")), fingerprinter.fingerprint(new Node(1, "a")));
+    }
+
+    @Test
+    public void shallowTest() {
+        ShallowFingerprinter fingerprinter = new ShallowFingerprinter();
+        assertEquals(fingerprinter.fingerprint("abc"), "abc".hashCode());
+        assertEquals(fingerprinter.fingerprint(TimeUnit.SECONDS), "SECONDS".hashCode());
+        assertEquals(fingerprinter.fingerprint(new Node(1, "a")), fingerprinter.fingerprint(new Node(2, "b")));
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.tankist88.carpenter.collector.governor;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class OverheadGovernorTest {
+    private static final String SERVICE = OverheadGovernorTest.class.getName();
+    private static final Factory FACTORY = new Factory("OverheadGovernorTest.java", OverheadGovernorTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String methodName) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", methodName, SERVICE, "", "", "", "void"),
+                1);
+    }
+
+    private static int admitted(OverheadGovernor governor, JoinPoint.StaticPart staticPart, int calls) {
+        int count = 0;
+        for (int i = 0; i < calls; i++) {
+            if (governor.admit(staticPart)) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void throttleExpensiveMethodTest() {
+        OverheadGovernor governor = new OverheadGovernor(true, 5.0, GovernorScope.METHOD, 4);
+        JoinPoint.StaticPart expensive = staticPart("expensive");
+        JoinPoint.StaticPart cheap = staticPart("cheap");
+
+        governor.recordRequest(1000000L);
+        governor.recordInline(expensive, 80000L);
+        governor.recordInline(cheap, 1000L);
+        governor.adjust();
+
+        assertEquals(governor.getOverheadPercent(), 8.1, 0.001);
+        assertEquals(governor.getLevel(expensive).getStride(), 2);
+        assertEquals(governor.getLevel(cheap).getStride(), 1);
+        assertEquals(governor.getThrottledCount(), 1);
+        assertEquals(admitted(governor, expensive, 10), 5);
+        assertEquals(admitted(governor, cheap, 10), 10);
+
+        for (int i = 0; i < 3; i++) {
+            governor.recordRequest(1000000L);
+            governor.recordInline(expensive, 100000L);
+            governor.adjust();
+        }
+        assertEquals(governor.getLevel(expensive).getStride(), 4);
+        assertEquals(governor.getCaptureLevels().length, 1);
+    }
+
+    @Test
+    public void relaxTest() {
+        OverheadGovernor governor = new OverheadGovernor(true, 5.0, GovernorScope.METHOD, 16);
+        JoinPoint.StaticPart method = staticPart("method");
+
+        governor.recordRequest(1000000L);
+        governor.recordInline(method, 200000L);
+        governor.adjust();
+        governor.recordRequest(1000000L);
+        governor.recordInline(method, 200000L);
+        governor.adjust();
+        assertEquals(governor.getLevel(method).getStride(), 4);
+
+        // overhead within budget but above half of it, nothing changes
+        governor.recordRequest(1000000L);
+        governor.recordInline(method, 40000L);
+        governor.adjust();
+        assertEquals(governor.getLevel(method).getStride(), 4);
+
+        governor.recordRequest(1000000L);
+        governor.recordInline(method, 1000L);
+        governor.adjust();
+        assertEquals(governor.getLevel(method).getStride(), 2);
+
+        governor.resetLevels();
+        assertEquals(governor.getLevel(method).getStride(), 1);
+        assertEquals(governor.getThrottledCount(), 0);
+    }
+
+    @Test
+    public void packageScopeTest() {
+        OverheadGovernor governor = new OverheadGovernor(true, 5.0, GovernorScope.PACKAGE, 16);
+        JoinPoint.StaticPart first = staticPart("first");
+        JoinPoint.StaticPart second = staticPart("second");
+
+        assertSame(governor.getLevel(first), governor.getLevel(second));
+        assertEquals(governor.getLevel(first).getName(), OverheadGovernorTest.class.getPackage().getName());
+
+        governor.recordRequest(1000000L);
+        governor.recordWorker(first, governor.workerStart() - 100000L);
+        governor.adjust();
+        assertTrue(governor.getLastWorkerNanos() >= 100000L);
+        assertEquals(governor.getLevel(second).getStride(), 2);
+    }
+
+    @Test
+    public void disabledTest() {
+        OverheadGovernor governor = new OverheadGovernor(false, 5.0, GovernorScope.METHOD, 16);
+        JoinPoint.StaticPart method = staticPart("method");
+
+        governor.recordRequest(1000000L);
+        governor.recordInline(method, 1000000L);
+        governor.adjust();
+        assertEquals(governor.getOverheadPercent(), 0.0, 0.001);
+        assertEquals(admitted(governor, method, 10), 10);
+    }
+}
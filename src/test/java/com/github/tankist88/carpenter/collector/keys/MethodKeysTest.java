@@ -0,0 +1,78 @@
+package com.github.tankist88.carpenter.collector.keys;
+
+import com.github.tankist88.carpenter.collector.util.SymbolTable;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.*;
+
+public class MethodKeysTest {
+    @Test
+    public void packTest() {
+        long methodId = MethodKeys.pack(7, -3);
+        assertEquals(MethodKeys.classId(methodId), 7);
+        assertEquals(MethodKeys.methodNameId(methodId), -3);
+        assertEquals(MethodKeys.classId(MethodKeys.NO_METHOD), -1);
+        assertEquals(MethodKeys.methodNameId(MethodKeys.NO_METHOD), -1);
+
+        long serviceSave = MethodKeys.methodId("org.carpenter.Service", "save");
+        assertEquals(MethodKeys.methodId("org.carpenter.Service", "save"), serviceSave);
+        assertNotEquals(MethodKeys.methodId("org.carpenter.Service", "load"), serviceSave);
+        assertEquals(MethodKeys.threadId(), MethodKeys.threadId());
+    }
+
+    @Test
+    public void threadIdTest() {
+        SymbolTable threads = new SymbolTable();
+        Thread first = new Thread("first");
+        Thread second = new Thread("second");
+        assertEquals(MethodKeys.threadId(first, threads, 1), 0);
+        assertEquals(MethodKeys.threadId(new Thread("first"), threads, 1), 0);
+
+        int notInterned = MethodKeys.threadId(second, threads, 1);
+        assertTrue(notInterned < 0);
+        assertEquals(threads.size(), 1);
+        assertEquals(MethodKeys.threadKey(notInterned), "thread-" + second.getId());
+        assertEquals(new KeySymbols().getThreadKey(notInterned), "thread-" + second.getId());
+        assertEquals(MethodKeys.threadKey(Integer.MIN_VALUE | 42), "virtual-42");
+    }
+
+    @Test
+    public void recordKeyTest() {
+        String key = MethodKeys.recordKey(1, MethodKeys.pack(2, 3), 4, MethodKeys.pack(5, 6), 7, 8);
+        assertEquals(MethodKeys.recordKey(1, MethodKeys.pack(2, 3), 4, MethodKeys.pack(5, 6), 7, 8), key);
+        assertNotEquals(MethodKeys.recordKey(1, MethodKeys.pack(2, 3), 4, MethodKeys.pack(5, 6), 7, 9), key);
+        assertNotEquals(MethodKeys.recordKey(1, MethodKeys.pack(5, 6), 7, MethodKeys.pack(2, 3), 4, 8), key);
+        assertNotEquals(MethodKeys.recordKey(2, MethodKeys.pack(2, 3), 4, MethodKeys.pack(5, 6), 7, 8), key);
+    }
+
+    @Test
+    public void symbolFileTest() throws Exception {
+        File file = File.createTempFile("carpenter-keys", "." + SymbolFile.EXTENSION);
+        FileUtils.deleteQuietly(file);
+        try {
+            SymbolTable names = new SymbolTable();
+            SymbolTable threads = new SymbolTable();
+            SymbolFile symbolFile = new SymbolFile(file, names, threads);
+            long save = MethodKeys.pack(names.idOf("org.carpenter.Service"), names.idOf("save"));
+            int main = threads.idOf("main");
+            symbolFile.flush();
+            long post = MethodKeys.pack(names.idOf("org.carpenter.Controller"), names.idOf("post"));
+            int worker = threads.idOf("worker\n1");
+            symbolFile.flush();
+            symbolFile.flush();
+
+            KeySymbols symbols = SymbolFile.read(file);
+            assertEquals(symbols.getClassName(save), "org.carpenter.Service");
+            assertEquals(symbols.getMethodName(post), "post");
+            assertEquals(symbols.getThreadKey(worker), "worker 1");
+            assertEquals(symbols.toNameKey(MethodKeys.key(main, save, -12)), "main-12_org.carpenter.Service_save");
+            assertEquals(symbols.toNameKey(MethodKeys.key(main, MethodKeys.NO_METHOD, 0)), "main0_null_null");
+            assertEquals(FileUtils.readLines(file, "UTF-8").size(), 6);
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.tankist88.carpenter.collector.metrics;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class CollectorMetricsTest {
+    private static final String SERVICE = CollectorMetricsTest.class.getName();
+    private static final Factory FACTORY = new Factory("CollectorMetricsTest.java", CollectorMetricsTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String methodName) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", methodName, SERVICE, "", "", "", "void"),
+                1);
+    }
+
+    @Test
+    public void stripedCounterTest() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        counter.increment();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        assertEquals(counter.sum(), 80000L);
+        counter.reset();
+        assertEquals(counter.sum(), 0L);
+    }
+
+    @Test
+    public void latencyTimerTest() {
+        LatencyTimer timer = new LatencyTimer(true);
+        timer.record(100L);
+        timer.record(300L);
+        assertEquals(timer.getCount(), 2L);
+        assertEquals(timer.getTotalNanos(), 400L);
+        assertEquals(timer.getMeanNanos(), 200L);
+        assertEquals(timer.getMaxNanos(), 300L);
+
+        LatencyTimer disabled = new LatencyTimer(false);
+        assertEquals(disabled.start(), 0L);
+        disabled.stop(0L);
+        disabled.record(100L);
+        assertEquals(disabled.getCount(), 0L);
+    }
+
+    @Test
+    public void metricsTest() {
+        CollectorMetrics metrics = new CollectorMetrics(true, 2);
+        JoinPoint.StaticPart find = staticPart("find");
+        JoinPoint.StaticPart save = staticPart("save");
+        JoinPoint.StaticPart delete = staticPart("delete");
+        for (int i = 0; i < 3; i++) metrics.recordCapture(find);
+        for (int i = 0; i < 5; i++) metrics.recordCapture(save);
+        metrics.recordCapture(delete);
+        metrics.recordSkip(SkipReason.THREAD_NAME);
+        metrics.recordSkip(SkipReason.PACKAGE);
+        metrics.recordSkip(SkipReason.PACKAGE);
+        metrics.recordSave(metrics.getSaveDumpTimer().start(), 128);
+        metrics.recordSaveError();
+
+        assertEquals(metrics.getCapturedCalls(), 9L);
+        assertEquals(metrics.getSkippedThreadName(), 1L);
+        assertEquals(metrics.getSkippedPackage(), 2L);
+        assertEquals(metrics.getSkippedDeniedMethod(), 0L);
+        assertEquals(metrics.getSaveDumpCount(), 1L);
+        assertEquals(metrics.getBytesWritten(), 128L);
+        assertEquals(metrics.getSaveErrors(), 1L);
+        assertEquals(metrics.getQueueSize(), 0);
+        assertEquals(metrics.getTopMethods(), new String[] {"5 " + SERVICE + ".save", "3 " + SERVICE + ".find"});
+
+        String dump = metrics.dump();
+        assertTrue(dump.contains("capturedCalls: 9\n"));
+        assertTrue(dump.contains("skipped.PACKAGE: 2\n"));
+        assertTrue(dump.contains("  5 " + SERVICE + ".save\n"));
+
+        metrics.reset();
+        assertEquals(metrics.getCapturedCalls(), 0L);
+        assertEquals(metrics.getTopMethods().length, 0);
+    }
+
+    @Test
+    public void disabledMetricsTest() {
+        CollectorMetrics metrics = new CollectorMetrics(false, 2);
+        metrics.recordCapture(staticPart("find"));
+        metrics.recordSkip(SkipReason.DENIED_METHOD);
+        assertEquals(metrics.getCapturedCalls(), 0L);
+        assertEquals(metrics.getSkippedDeniedMethod(), 0L);
+        assertEquals(metrics.getTopMethods().length, 0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.tankist88.carpenter.collector.offheap;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class OffHeapArenaTest {
+    @Test
+    public void allocateAndFreeTest() throws Exception {
+        OffHeapArena arena = new OffHeapArena(1000, 4096);
+        assertEquals(arena.getSlabSize(), 1024);
+
+        ArenaBlock block = arena.copyOf("payload".getBytes("UTF-8"));
+        assertEquals(block.getLength(), 7);
+        assertEquals(block.getCapacity(), OffHeapArena.MIN_BLOCK_SIZE);
+        assertEquals(new String(IOUtils.toByteArray(block.openStream()), "UTF-8"), "payload");
+        assertEquals(arena.getReservedBytes(), 1024L);
+        assertEquals(arena.getUsedBytes(), 64L);
+
+        assertEquals(arena.allocate(65).getCapacity(), 128);
+        assertEquals(arena.allocate(1024).getCapacity(), 1024);
+        assertEquals(arena.getReservedBytes(), 2048L);
+
+        block.free();
+        block.free();
+        assertTrue(block.isFreed());
+        assertEquals(arena.getUsedBytes(), 128L + 1024L);
+        assertEquals(arena.getAllocationCount(), 3L);
+    }
+
+    @Test
+    public void overflowTest() {
+        OffHeapArena arena = new OffHeapArena(1024, 2048);
+        assertNull(arena.allocate(2000));
+        ArenaBlock first = arena.allocate(1024);
+        ArenaBlock second = arena.allocate(1024);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(arena.allocate(64));
+        assertEquals(arena.getOverflowCount(), 2L);
+
+        // freed block is reused without reserving more memory
+        first.free();
+        assertNotNull(arena.allocate(1000));
+        assertEquals(arena.getReservedBytes(), 2048L);
+    }
+
+    @Test
+    public void slabTailReuseTest() {
+        OffHeapArena arena = new OffHeapArena(1024, 2048);
+        arena.allocate(64);
+        arena.allocate(512);
+        // 448 bytes left in the first slab are split into free blocks of 256, 128 and 64 bytes
+        arena.allocate(1024);
+        assertEquals(arena.getReservedBytes(), 2048L);
+        assertNotNull(arena.allocate(256));
+        assertNotNull(arena.allocate(128));
+        assertNotNull(arena.allocate(64));
+        assertNull(arena.allocate(64));
+    }
+}
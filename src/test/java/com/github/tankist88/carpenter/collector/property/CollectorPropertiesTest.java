@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.property;
+
+import com.github.tankist88.carpenter.collector.fingerprint.FingerprintMode;
+import com.github.tankist88.carpenter.collector.keys.KeyMode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Locale;
+
+import static com.github.tankist88.carpenter.collector.property.CollectorProperties.PREFIX;
+import static org.testng.Assert.*;
+
+public class CollectorPropertiesTest {
+    private static final String NAME = "testSetting";
+
+    @AfterMethod
+    public void clearProperty() {
+        System.clearProperty(PREFIX + NAME);
+    }
+
+    @Test
+    public void invalidValueTest() {
+        System.setProperty(PREFIX + NAME, "yes");
+        assertTrue(CollectorProperties.getBoolean(NAME, true));
+        assertEquals(CollectorProperties.getInt(NAME, 7), 7);
+        assertEquals(CollectorProperties.getLong(NAME, 7L), 7L);
+        assertEquals(CollectorProperties.getDouble(NAME, 0.5), 0.5);
+        assertEquals(CollectorProperties.getEnum(NAME, FingerprintMode.class, FingerprintMode.SHALLOW), FingerprintMode.SHALLOW);
+
+        System.setProperty(PREFIX + NAME, " 42 ");
+        assertEquals(CollectorProperties.getInt(NAME, 7), 42);
+    }
+
+    @Test
+    public void enumLocaleTest() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            System.setProperty(PREFIX + NAME, "identity");
+            assertEquals(CollectorProperties.getEnum(NAME, FingerprintMode.class, FingerprintMode.SHALLOW), FingerprintMode.IDENTITY);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void idsKeysOverNetworkTest() {
+        System.setProperty(PREFIX + "keyMode", "IDS");
+        System.setProperty(PREFIX + "storageMode", "NETWORK");
+        try {
+            assertEquals(CollectorProperties.getKeyMode(), KeyMode.NAMES);
+            System.clearProperty(PREFIX + "storageMode");
+            assertEquals(CollectorProperties.getKeyMode(), KeyMode.IDS);
+        } finally {
+            System.clearProperty(PREFIX + "keyMode");
+            System.clearProperty(PREFIX + "storageMode");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.tankist88.carpenter.collector.sampling;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class CaptureSamplerTest {
+    private static final Factory FACTORY = new Factory("CaptureSamplerTest.java", CaptureSamplerTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String methodName) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", methodName, "org.carpenter.Service", "", "", "", "void"),
+                1);
+    }
+
+    private static int count(CaptureSampler sampler, JoinPoint.StaticPart staticPart, int calls, int distinct) {
+        int sampled = 0;
+        for (int i = 0; i < calls; i++) {
+            if (sampler.sample(staticPart, i % distinct)) sampled++;
+        }
+        return sampled;
+    }
+
+    @Test
+    public void tokenBucketTest() {
+        CaptureSampler sampler = new TokenBucketSampler(0.001, 5);
+        assertEquals(count(sampler, staticPart("find"), 100, 100), 5);
+        assertEquals(count(sampler, staticPart("save"), 100, 100), 5);
+
+        CaptureSampler invalid = new TokenBucketSampler(-1, 0);
+        assertEquals(count(invalid, staticPart("find"), 100, 100), 1);
+    }
+
+    @Test
+    public void reservoirTest() {
+        CaptureSampler sampler = new ReservoirSampler(10);
+        JoinPoint.StaticPart find = staticPart("find");
+        assertEquals(count(sampler, find, 100, 5), 5);
+        int sampled = count(sampler, find, 10000, 10000);
+        assertTrue(sampled >= 10 && sampled < 1000, "sampled " + sampled);
+
+        CaptureSampler invalid = new ReservoirSampler(-1);
+        assertEquals(count(invalid, find, 5, 1), 1);
+    }
+
+    @Test
+    public void firstDistinctTest() {
+        CaptureSampler sampler = new FirstDistinctSampler(3, 10);
+        JoinPoint.StaticPart find = staticPart("find");
+        assertEquals(count(sampler, find, 20, 2), 2);
+        assertTrue(sampler.sample(find, 100));
+        assertFalse(sampler.sample(find, 100));
+        assertEquals(count(sampler, find, 100, 100), 10);
+
+        CaptureSampler everyCall = new FirstDistinctSampler(0, 0);
+        assertEquals(count(everyCall, find, 20, 2), 20);
+    }
+}
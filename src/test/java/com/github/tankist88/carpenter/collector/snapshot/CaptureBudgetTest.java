@@ -0,0 +1,156 @@
+package com.github.tankist88.carpenter.collector.snapshot;
+
+import com.github.tankist88.object2source.SourceGenerator;
+import com.github.tankist88.object2source.dto.ProviderResult;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class CaptureBudgetTest {
+    private static final Factory FACTORY = new Factory("CaptureBudgetTest.java", CaptureBudgetTest.class);
+
+    private static JoinPoint.StaticPart staticPart(String methodName) {
+        return FACTORY.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                FACTORY.makeMethodSig("1", methodName, CaptureBudgetTest.class.getName(), "", "", "", "void"),
+                1);
+    }
+
+    private static class LargeProvider extends ProviderResult {
+        private final byte[] source = new byte[4096];
+    }
+
+    private static class CountingSourceGenerator extends SourceGenerator {
+        private final long sleepMillis;
+        private int calls;
+
+        private CountingSourceGenerator(long sleepMillis) {
+            super("    ", new HashSet<String>(), "TestUtils");
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public ProviderResult createDataProviderMethod(Object obj) {
+            calls++;
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new LargeProvider();
+        }
+    }
+
+    private static class Node {
+        private Node next;
+        private final String name;
+
+        private Node(String name, Node next) {
+            this.name = name;
+            this.next = next;
+        }
+    }
+
+    private static List<String> list(int size) {
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            list.add("value" + i);
+        }
+        return list;
+    }
+
+    @Test
+    public void nodesTest() {
+        CaptureBudget budget = new CaptureBudget(10, 5, 0L, 0, 2, 0);
+        CountingSourceGenerator sg = new CountingSourceGenerator(0L);
+        CaptureBudget.MethodBudget method = budget.forMethod(staticPart("find"), 1);
+
+        ProviderSnapshot small = ProviderSnapshot.generateDataProvider(sg, list(5), null, method.slot(0));
+        assertFalse(small.isTruncated());
+        assertEquals(sg.calls, 1);
+
+        ProviderSnapshot large = ProviderSnapshot.dataProvider(sg, list(100), 1024, null, method.slot(0));
+        assertTrue(large.isTruncated());
+        assertNull(large.createProvider(sg));
+        assertEquals(sg.calls, 1);
+
+        Node cycle = new Node("first", null);
+        cycle.next = new Node("second", cycle);
+        assertFalse(ProviderSnapshot.generateDataProvider(sg, cycle, null, method.slot(CaptureBudget.TARGET)).isTruncated());
+
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(100), null, method.slot(0)).isTruncated());
+        assertTrue(method.slot(0).isSkipped());
+        assertFalse(method.slot(CaptureBudget.RETURN).isSkipped());
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(1), null, method.slot(0)).isTruncated());
+
+        assertEquals(method.getExceeded(), 2L);
+        assertEquals(budget.getExceeded(), 2L);
+        assertEquals(budget.getSkipped(), 1L);
+        assertEquals(budget.getTopExceeded(10), new String[] {"2 " + CaptureBudgetTest.class.getName() + ".find"});
+    }
+
+    @Test
+    public void recoveryTest() {
+        CaptureBudget budget = new CaptureBudget(10, 5, 0L, 0, 2, 3);
+        CountingSourceGenerator sg = new CountingSourceGenerator(0L);
+        CaptureBudget.MethodBudget method = budget.forMethod(staticPart("update"), 1);
+
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(100), null, method.slot(0)).isTruncated());
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(100), null, method.slot(0)).isTruncated());
+        assertTrue(method.slot(0).isSkipped());
+
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(1), null, method.slot(0)).isTruncated());
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, list(1), null, method.slot(0)).isTruncated());
+        assertEquals(sg.calls, 0);
+        assertEquals(budget.getSkipped(), 2L);
+
+        assertFalse(ProviderSnapshot.generateDataProvider(sg, list(1), null, method.slot(0)).isTruncated());
+        assertEquals(sg.calls, 1);
+        assertFalse(method.slot(0).isSkipped());
+        assertFalse(ProviderSnapshot.generateDataProvider(sg, list(1), null, method.slot(0)).isTruncated());
+    }
+
+    @Test
+    public void bytesTest() {
+        CaptureBudget budget = new CaptureBudget(0, 5, 0L, 1024, 0, 0);
+        CountingSourceGenerator sg = new CountingSourceGenerator(0L);
+        CaptureBudget.MethodBudget method = budget.forMethod(staticPart("save"), 1);
+
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, new Object(), null, method.slot(0)).isTruncated());
+
+        ProviderSnapshot deferred = ProviderSnapshot.dataProvider(sg, list(1), 1024, null, method.slot(0));
+        assertTrue(deferred.isDeferred());
+        assertFalse(deferred.isTruncated());
+        assertNull(deferred.createProvider(sg));
+        assertTrue(deferred.isTruncated());
+        assertFalse(method.slot(0).isSkipped());
+        assertEquals(method.getExceeded(), 2L);
+
+        CaptureBudget large = new CaptureBudget(0, 5, 0L, 64 * 1024, 0, 0);
+        ProviderSnapshot fits = ProviderSnapshot.generateDataProvider(
+                sg, new Object(), null, large.forMethod(staticPart("save"), 1).slot(0));
+        assertFalse(fits.isTruncated());
+        assertTrue(fits.createProvider(sg) instanceof LargeProvider);
+    }
+
+    @Test
+    public void timeTest() {
+        CaptureBudget budget = new CaptureBudget(0, 5, 1L, 0, 1, 0);
+        CountingSourceGenerator sg = new CountingSourceGenerator(20L);
+        CaptureBudget.MethodBudget method = budget.forMethod(staticPart("load"), 0);
+
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, new Object(), null, method.slot(CaptureBudget.RETURN)).isTruncated());
+        assertTrue(method.slot(CaptureBudget.RETURN).isSkipped());
+        assertTrue(ProviderSnapshot.generateDataProvider(sg, new Object(), null, method.slot(CaptureBudget.RETURN)).isTruncated());
+        assertEquals(sg.calls, 1);
+        assertNull(new CaptureBudget(0, 5, 0L, 0, 1, 0).forMethod(staticPart("load"), 0));
+    }
+}
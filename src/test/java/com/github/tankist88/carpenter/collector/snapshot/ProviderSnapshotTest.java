@@ -0,0 +1,154 @@
+package com.github.tankist88.carpenter.collector.snapshot;
+
+import com.github.tankist88.carpenter.collector.offheap.OffHeapArena;
+import com.github.tankist88.object2source.SourceGenerator;
+import com.github.tankist88.object2source.dto.ProviderResult;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ProviderSnapshotTest {
+    private static class RecordingSourceGenerator extends SourceGenerator {
+        private final List<Object> values = new ArrayList<Object>();
+
+        private RecordingSourceGenerator() {
+            super("    ", new HashSet<String>(), "TestUtils");
+        }
+
+        @Override
+        public ProviderResult createDataProviderMethod(Object obj) {
+            values.add(obj instanceof List ? new ArrayList<Object>((List<?>) obj) : obj);
+            return null;
+        }
+    }
+
+    @Test
+    public void deferredCopyTest() {
+        RecordingSourceGenerator sg = new RecordingSourceGenerator();
+        ArrayList<String> value = new ArrayList<String>();
+        value.add("before");
+        ProviderSnapshot snapshot = ProviderSnapshot.dataProvider(sg, value, 1024);
+        value.add("after");
+        assertTrue(snapshot.isDeferred());
+        assertTrue(sg.values.isEmpty());
+
+        snapshot.createProvider(sg);
+        assertEquals(sg.values.size(), 1);
+        assertEquals(sg.values.get(0), Collections.singletonList("before"));
+
+        ProviderSnapshot immutable = ProviderSnapshot.dataProvider(sg, "value", 1024);
+        assertTrue(immutable.isDeferred());
+        immutable.createProvider(sg);
+        assertEquals(sg.values.get(1), "value");
+    }
+
+    private static class Session implements Serializable {
+        private transient String token = "secret";
+    }
+
+    private static class Account implements Serializable {
+        private String name = "account";
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.writeUTF(name);
+        }
+    }
+
+    public static class Plain implements Serializable {
+        private String name = "plain";
+    }
+
+    @Test
+    public void lossyCopyTest() {
+        RecordingSourceGenerator sg = new RecordingSourceGenerator();
+        Session session = new Session();
+        assertFalse(ProviderSnapshot.dataProvider(sg, session, 1024).isDeferred());
+        assertSame(sg.values.get(0), session);
+
+        assertFalse(ProviderSnapshot.dataProvider(sg, new Account(), 1024).isDeferred());
+
+        ArrayList<Object> nested = new ArrayList<Object>();
+        nested.add(new Plain());
+        nested.add(new Session());
+        assertFalse(ProviderSnapshot.dataProvider(sg, nested, 1024).isDeferred());
+        assertEquals(sg.values.size(), 3);
+
+        nested.remove(1);
+        assertTrue(ProviderSnapshot.dataProvider(sg, nested, 1024).isDeferred());
+        assertEquals(sg.values.size(), 3);
+    }
+
+    @Test
+    public void fallbackTest() {
+        RecordingSourceGenerator sg = new RecordingSourceGenerator();
+        ProviderSnapshot notSerializable = ProviderSnapshot.dataProvider(sg, new Object(), 1024);
+        assertFalse(notSerializable.isDeferred());
+        assertEquals(sg.values.size(), 1);
+
+        ArrayList<String> large = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            large.add("value" + i);
+        }
+        ProviderSnapshot tooLarge = ProviderSnapshot.dataProvider(sg, large, 256);
+        assertFalse(tooLarge.isDeferred());
+        assertEquals(sg.values.size(), 2);
+
+        tooLarge.createProvider(sg);
+        assertEquals(sg.values.size(), 2);
+    }
+
+    @Test
+    public void offHeapTest() {
+        RecordingSourceGenerator sg = new RecordingSourceGenerator();
+        OffHeapArena arena = new OffHeapArena(4096, 4096);
+        ArrayList<String> value = new ArrayList<String>();
+        value.add("before");
+        ProviderSnapshot snapshot = ProviderSnapshot.dataProvider(sg, value, 1024, arena);
+        value.add("after");
+        assertTrue(arena.getUsedBytes() > 0);
+
+        snapshot.createProvider(sg);
+        assertEquals(sg.values.get(0), Collections.singletonList("before"));
+        assertEquals(arena.getUsedBytes(), 0L);
+
+        ProviderResult provider = new ProviderResult();
+        ProviderSnapshot generated = ProviderSnapshot.generated(provider, arena);
+        assertTrue(arena.getUsedBytes() > 0);
+        generated.release();
+        generated.release();
+        assertEquals(arena.getUsedBytes(), 0L);
+    }
+
+    @Test
+    public void contextClassLoaderTest() throws Exception {
+        URL classes = ProviderSnapshotTest.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] {classes}, null);
+        Class clazz = loader.loadClass(Plain.class.getName());
+        ArrayList<Object> value = new ArrayList<Object>();
+        value.add(clazz.newInstance());
+
+        RecordingSourceGenerator sg = new RecordingSourceGenerator();
+        Thread thread = Thread.currentThread();
+        ClassLoader contextLoader = thread.getContextClassLoader();
+        ProviderSnapshot snapshot;
+        thread.setContextClassLoader(loader);
+        try {
+            snapshot = ProviderSnapshot.dataProvider(sg, value, 1024);
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+        }
+        assertTrue(snapshot.isDeferred());
+        snapshot.createProvider(sg);
+        assertSame(((List<?>) sg.values.get(0)).get(0).getClass(), clazz);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import com.github.tankist88.object2source.dto.ProviderResult;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class FileBlobStoreTest {
+    public static class SourceProvider extends ProviderResult {
+        private final String source;
+
+        public SourceProvider(String source) {
+            this.source = source;
+        }
+    }
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "file_blob_store_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void deleteDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static String source(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < 100; j++) {
+            sb.append("    public static Customer getCustomer").append(i).append("() { return null; }\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void dedupProvidersTest() throws IOException {
+        FileBlobStore blobStore = new FileBlobStore(dir, "blobs-1." + SegmentFormat.BLOB_EXTENSION);
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 1024 * 1024, 10, 1000L, blobStore);
+        for (int i = 0; i < 100; i++) {
+            ArrayList<Object> record = new ArrayList<Object>();
+            record.add(new SourceProvider(source(i % 3)));
+            record.add(new SourceProvider(source(i % 5)));
+            log.write("key" + i, "org.carpenter.Service", record);
+        }
+        assertEquals(blobStore.size(), 5);
+        log.close();
+
+        long blobBytes = new File(dir, "blobs-1." + SegmentFormat.BLOB_EXTENSION).length();
+        long segmentBytes = 0;
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        for (File segment : reader.getSegments()) {
+            segmentBytes += segment.length();
+        }
+        assertTrue(blobBytes < 5 * source(0).length() * 2);
+        assertTrue(segmentBytes < 100 * 200, "segment bytes " + segmentBytes);
+
+        int count = 0;
+        SegmentedTraceLogReader.RecordIterator it = reader.iterator();
+        try {
+            while (it.hasNext()) {
+                TraceRecord record = it.next();
+                int i = Integer.parseInt(record.getKey().substring(3));
+                List<?> value = (List<?>) it.readObject();
+                assertEquals(((SourceProvider) value.get(0)).source, source(i % 3));
+                assertEquals(((SourceProvider) value.get(1)).source, source(i % 5));
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+        assertEquals(count, 100);
+
+        // blobs of previous runs are not written again
+        FileBlobStore reopened = new FileBlobStore(dir, "blobs-2." + SegmentFormat.BLOB_EXTENSION);
+        assertEquals(reopened.size(), 5);
+        reopened.put(new byte[] {1, 2, 3});
+        reopened.close();
+        assertEquals(new FileBlobStore(dir).size(), 6);
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.github.tankist88.carpenter.core.property.AbstractGenerationProperties.OBJ_FILE_EXTENSION;
+import static org.testng.Assert.*;
+
+public class FileTraceSinkTest {
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "file_trace_sink_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void deleteDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void removedDirTest() throws IOException {
+        FileTraceSink sink = new FileTraceSink(dir.getAbsolutePath());
+        sink.write("first", "org.carpenter.Service", "value");
+        File packageDir = new File(dir, "org/carpenter");
+        assertTrue(new File(packageDir, "first." + OBJ_FILE_EXTENSION).isFile());
+
+        FileUtils.deleteDirectory(dir);
+        sink.write("second", "org.carpenter.Service", "value");
+        assertTrue(new File(packageDir, "second." + OBJ_FILE_EXTENSION).isFile());
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SerializationUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import static org.testng.Assert.*;
+
+public class NetworkTraceSinkTest {
+    private static final String CLASS_NAME = "org.carpenter.Service";
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "network_trace_sink_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void deleteDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void awaitReceived(TraceReceiver receiver, long records) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (receiver.getReceivedRecords() < records && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(receiver.getReceivedRecords(), records);
+    }
+
+    private Object readRecord(String key) throws IOException {
+        File file = new File(dir, "org/carpenter/" + key + ".obj");
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return SerializationUtils.deserialize(bytes);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void streamTest() throws Exception {
+        TraceReceiver receiver = new TraceReceiver(new InetSocketAddress("localhost", 0), new FileTraceSink(dir.getAbsolutePath()));
+        receiver.start();
+        NetworkTraceSink sink = new NetworkTraceSink(new InetSocketAddress("localhost", receiver.getPort()), 64 * 1024, 50L);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(sink.write("key" + i, CLASS_NAME, "value" + i) > 0);
+            }
+            sink.flush();
+            awaitReceived(receiver, 100);
+            assertEquals(sink.getSentRecords(), 100);
+            assertEquals(sink.getDroppedRecords(), 0);
+            assertEquals(readRecord("key99"), "value99");
+            assertTrue(sink.isConnected());
+        } finally {
+            sink.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void reconnectTest() throws Exception {
+        int port = freePort();
+        NetworkTraceSink sink = new NetworkTraceSink(new InetSocketAddress("localhost", port), 4096, 50L);
+        TraceReceiver receiver = null;
+        try {
+            sink.write("lost", CLASS_NAME, "lost");
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (sink.getDroppedRecords() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(sink.getDroppedRecords(), 1);
+            assertTrue(sink.getReconnects() > 0);
+
+            receiver = new TraceReceiver(new InetSocketAddress("localhost", port), new FileTraceSink(dir.getAbsolutePath()));
+            receiver.start();
+            sink.write("key", CLASS_NAME, "value");
+            sink.flush();
+            awaitReceived(receiver, 1);
+            assertEquals(readRecord("key"), "value");
+            assertFalse(new File(dir, "org/carpenter/lost.obj").exists());
+        } finally {
+            sink.close();
+            if (receiver != null) receiver.close();
+        }
+    }
+
+    @Test
+    public void bufferFullTest() throws Exception {
+        NetworkTraceSink sink = new NetworkTraceSink(new InetSocketAddress("localhost", freePort()), 256, 60000L);
+        try {
+            assertEquals(sink.write("key", CLASS_NAME, new byte[1024]), 0);
+            assertEquals(sink.getDroppedRecords(), 1);
+        } finally {
+            sink.close();
+        }
+    }
+}
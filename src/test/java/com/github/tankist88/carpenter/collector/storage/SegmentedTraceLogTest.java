@@ -0,0 +1,274 @@
+package com.github.tankist88.carpenter.collector.storage;
+
+import com.github.tankist88.carpenter.collector.codec.CodecType;
+import com.github.tankist88.carpenter.collector.compress.CompressionDictionary;
+import com.github.tankist88.carpenter.collector.compress.CompressionType;
+import com.github.tankist88.carpenter.collector.dto.TraceRecord;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.testng.Assert.*;
+
+public class SegmentedTraceLogTest {
+    private static final String CLASS_NAME = "org.carpenter.Service";
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "segmented_trace_log_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void deleteDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static byte[] payload(String key, int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++) {
+            payload[i] = (byte) (key.hashCode() + i);
+        }
+        return payload;
+    }
+
+    @Test
+    public void writeAndIterateTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 1024, 10, 1000L, CodecType.JAVA.getCodec());
+        for (int i = 0; i < 20; i++) {
+            log.write("key" + i, CLASS_NAME, payload("key" + i, 200));
+        }
+        log.write("key0", CLASS_NAME, payload("key0", 300));
+        log.close();
+
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        assertTrue(reader.getSegments().size() > 1);
+        List<String> keys = new ArrayList<String>();
+        SegmentedTraceLogReader.RecordIterator it = reader.iterator();
+        try {
+            while (it.hasNext()) {
+                TraceRecord record = it.next();
+                assertEquals(record.getClassName(), CLASS_NAME);
+                byte[] value = (byte[]) it.readObject();
+                assertEquals(value, payload(record.getKey(), value.length));
+                keys.add(record.getKey());
+            }
+        } finally {
+            it.close();
+        }
+        assertEquals(keys.size(), 21);
+        assertEquals(keys.get(20), "key0");
+
+        Map<String, RecordPointer> index = reader.readIndex();
+        assertEquals(index.size(), 20);
+        assertEquals(reader.readObject(index.get("key0")), payload("key0", 300));
+    }
+
+    @Test
+    public void compactCodecTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 2048, 10, 1000L, CodecType.COMPACT.getCodec());
+        for (int i = 0; i < 50; i++) {
+            ArrayList<String> value = new ArrayList<String>();
+            value.add(CLASS_NAME);
+            value.add("java.io.Serializable");
+            value.add("value" + i);
+            log.write("key" + i, CLASS_NAME, value);
+        }
+        log.close();
+
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        assertTrue(reader.getSegments().size() > 1);
+        int count = 0;
+        SegmentedTraceLogReader.RecordIterator it = reader.iterator();
+        try {
+            while (it.hasNext()) {
+                TraceRecord record = it.next();
+                List<?> value = (List<?>) it.readObject();
+                assertEquals(value.get(0), CLASS_NAME);
+                assertEquals("key" + value.get(2).toString().substring(5), record.getKey());
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+        assertEquals(count, 50);
+        Map<String, RecordPointer> index = reader.readIndex();
+        assertEquals(((List<?>) reader.readObject(index.get("key49"))).get(2), "value49");
+    }
+
+    @Test
+    public void compressedSegmentsTest() throws IOException {
+        byte[] dictionary = CompressionDictionary.build(new String[] {"org.carpenter"});
+        SegmentedTraceLog log = new SegmentedTraceLog(
+                dir, 2048, 10, 1000L, CodecType.JAVA.getCodec(), null,
+                CompressionType.DEFLATE.create(Deflater.BEST_SPEED, dictionary), 1024);
+        for (int i = 0; i < 100; i++) {
+            log.write("key" + i, CLASS_NAME, CLASS_NAME + ".method" + i + "(20)");
+        }
+        log.write("key0", CLASS_NAME, "last");
+        log.close();
+
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        assertTrue(reader.getSegments().size() > 1);
+        long totalSize = 0;
+        for (File segment : reader.getSegments()) {
+            totalSize += segment.length();
+        }
+        int count = 0;
+        SegmentedTraceLogReader.RecordIterator it = reader.iterator();
+        try {
+            while (it.hasNext()) {
+                TraceRecord record = it.next();
+                assertEquals(record.getClassName(), CLASS_NAME);
+                assertNotNull(it.readObject());
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+        assertEquals(count, 101);
+
+        Map<String, RecordPointer> index = reader.readIndex();
+        assertEquals(index.size(), 100);
+        assertTrue(index.get("key50").isInBlock());
+        assertEquals(reader.readObject(index.get("key50")), CLASS_NAME + ".method50(20)");
+        assertEquals(reader.readObject(index.get("key0")), "last");
+
+        // the same records without compression
+        File plainDir = new File(dir, "plain");
+        SegmentedTraceLog plain = new SegmentedTraceLog(plainDir, 1024 * 1024, 10, 1000L, CodecType.JAVA.getCodec());
+        for (int i = 0; i < 100; i++) {
+            plain.write("key" + i, CLASS_NAME, CLASS_NAME + ".method" + i + "(20)");
+        }
+        plain.close();
+        assertTrue(totalSize < new SegmentedTraceLogReader(plainDir).getSegments().get(0).length() / 2);
+    }
+
+    private static ArrayList<String> repeated(String value) {
+        ArrayList<String> list = new ArrayList<String>();
+        // distinct instances, so serialization doesn't write the second one as a back reference
+        list.add(new String(value));
+        list.add(new String(value));
+        return list;
+    }
+
+    @Test
+    public void liveSegmentDictionaryTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 1024 * 1024, 1000, 60000L, CodecType.COMPACT.getCodec());
+        try {
+            log.write("first", CLASS_NAME, repeated("org.carpenter.first.value"));
+            log.flush();
+            SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+            assertEquals(reader.readObject(reader.readIndex().get("first")), repeated("org.carpenter.first.value"));
+
+            log.write("second", CLASS_NAME, repeated("org.carpenter.second.value"));
+            log.flush();
+            assertEquals(reader.readObject(reader.readIndex().get("second")), repeated("org.carpenter.second.value"));
+            assertEquals(reader.readObject(reader.readIndex().get("first")), repeated("org.carpenter.first.value"));
+
+            log.write("third", CLASS_NAME, repeated("org.carpenter.third.value"));
+            log.flush();
+            assertEquals(reader.readObject(reader.readIndex().get("third")), repeated("org.carpenter.third.value"));
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void idleSyncTest() throws Exception {
+        SegmentedTraceLog log = new SegmentedTraceLog(
+                dir, 1024 * 1024, 1000, 20L, CodecType.JAVA.getCodec(), null,
+                CompressionType.DEFLATE.create(Deflater.BEST_SPEED, null), 64 * 1024);
+        try {
+            log.write("first", CLASS_NAME, payload("first", 300));
+            Map<String, RecordPointer> index = new SegmentedTraceLogReader(dir).readIndex();
+            for (int i = 0; i < 100 && index.isEmpty(); i++) {
+                Thread.sleep(10);
+                index = new SegmentedTraceLogReader(dir).readIndex();
+            }
+            assertEquals(new SegmentedTraceLogReader(dir).readObject(index.get("first")), payload("first", 300));
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void truncatedCompressedSegmentTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(
+                dir, 1024 * 1024, 10, 1000L, CodecType.JAVA.getCodec(), null,
+                CompressionType.DEFLATE.create(Deflater.BEST_SPEED, null), 256);
+        log.write("first", CLASS_NAME, payload("first", 300));
+        log.write("second", CLASS_NAME, payload("second", 300));
+        log.close();
+
+        File segment = new SegmentedTraceLogReader(dir).getSegments().get(0);
+        new File(dir, segment.getName() + "." + SegmentFormat.INDEX_EXTENSION).delete();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        Map<String, RecordPointer> index = reader.readIndex();
+        assertEquals(index.size(), 1);
+        assertEquals(reader.readObject(index.get("first")), payload("first", 300));
+    }
+
+    @Test
+    public void truncatedSegmentTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 1024 * 1024, 10, 1000L, CodecType.JAVA.getCodec());
+        log.write("first", CLASS_NAME, payload("first", 100));
+        log.write("second", CLASS_NAME, payload("second", 100));
+        log.close();
+
+        File segment = new SegmentedTraceLogReader(dir).getSegments().get(0);
+        new File(dir, segment.getName() + "." + SegmentFormat.INDEX_EXTENSION).delete();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        Map<String, RecordPointer> index = new SegmentedTraceLogReader(dir).readIndex();
+        assertEquals(index.size(), 1);
+        assertTrue(index.containsKey("first"));
+    }
+
+    @Test
+    public void invalidFrameLengthTest() throws IOException {
+        SegmentedTraceLog log = new SegmentedTraceLog(dir, 1024 * 1024, 10, 1000L, CodecType.JAVA.getCodec());
+        log.write("first", CLASS_NAME, payload("first", 100));
+        log.close();
+
+        SegmentedTraceLogReader reader = new SegmentedTraceLogReader(dir);
+        RecordPointer pointer = reader.readIndex().get("first");
+        for (int length : new int[] {Integer.MAX_VALUE, -1}) {
+            RandomAccessFile raf = new RandomAccessFile(new File(dir, pointer.getSegmentName()), "rw");
+            try {
+                raf.seek(pointer.getOffset());
+                raf.writeInt(length);
+            } finally {
+                raf.close();
+            }
+            try {
+                reader.read(pointer);
+                fail("Frame of length " + length + " is read");
+            } catch (IOException iex) {
+                assertTrue(iex.getMessage().startsWith("Invalid frame length " + length), iex.getMessage());
+            }
+        }
+    }
+}
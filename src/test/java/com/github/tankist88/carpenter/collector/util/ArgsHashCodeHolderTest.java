@@ -0,0 +1,59 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ArgsHashCodeHolderTest {
+    @AfterMethod
+    public void clear() {
+        ArgsHashCodeHolder.clear();
+    }
+
+    @Test
+    public void pushPopTest() {
+        assertEquals(ArgsHashCodeHolder.peekArgsHashCode(), 0);
+        assertNull(ArgsHashCodeHolder.peekClassName());
+        assertEquals(ArgsHashCodeHolder.pop(), 0);
+
+        ArgsHashCodeHolder.put(1, "org.carpenter.Controller", "post");
+        ArgsHashCodeHolder.put(2, "org.carpenter.Service", "save");
+        assertEquals(ArgsHashCodeHolder.depth(), 2);
+        assertEquals(ArgsHashCodeHolder.peekArgsHashCode(), 2);
+        assertEquals(ArgsHashCodeHolder.peekClassName(), "org.carpenter.Service");
+        assertEquals(ArgsHashCodeHolder.peekMethodName(), "save");
+        assertEquals(ArgsHashCodeHolder.pop(), 2);
+        assertEquals(ArgsHashCodeHolder.peekMethodName(), "post");
+        assertEquals(ArgsHashCodeHolder.pop(), 1);
+        assertEquals(ArgsHashCodeHolder.depth(), 0);
+    }
+
+    @Test
+    public void growTest() {
+        for (int i = 1; i <= 100; i++) {
+            ArgsHashCodeHolder.put(i, "org.carpenter.Service", "recursive" + i);
+        }
+        assertEquals(ArgsHashCodeHolder.depth(), 100);
+        for (int i = 100; i > 0; i--) {
+            assertEquals(ArgsHashCodeHolder.peekMethodName(), "recursive" + i);
+            assertEquals(ArgsHashCodeHolder.pop(), i);
+        }
+        assertEquals(ArgsHashCodeHolder.depth(), 0);
+    }
+
+    @Test
+    public void overflowTest() {
+        for (int i = 1; i <= 1000; i++) {
+            ArgsHashCodeHolder.put(i, "org.carpenter.Service", "recursive" + i);
+        }
+        int depth = ArgsHashCodeHolder.depth();
+        assertTrue(depth < 1000);
+        for (int i = 1000; i > 1000 - depth; i--) {
+            assertEquals(ArgsHashCodeHolder.peekMethodName(), "recursive" + i);
+            assertEquals(ArgsHashCodeHolder.pop(), i);
+        }
+        assertEquals(ArgsHashCodeHolder.depth(), 0);
+        assertEquals(ArgsHashCodeHolder.pop(), 0);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.testng.Assert.*;
+
+public class ClassCacheTest {
+    public static class Parent {
+        private String name;
+        private int size;
+    }
+
+    public static class Child extends Parent {
+        private transient Object cache;
+        private long id;
+    }
+
+    private static class CountingCache extends ClassCache<String> {
+        private int computed;
+
+        @Override
+        protected String compute(Class clazz) {
+            computed++;
+            return clazz.getName();
+        }
+    }
+
+    @Test
+    public void cacheTest() throws Exception {
+        CountingCache cache = new CountingCache();
+        assertEquals(cache.get(Child.class), Child.class.getName());
+        assertEquals(cache.get(Child.class), Child.class.getName());
+        assertEquals(cache.computed, 1);
+
+        URL classes = ClassCacheTest.class.getProtectionDomain().getCodeSource().getLocation();
+        Class other = new URLClassLoader(new URL[] {classes}, null).loadClass(Child.class.getName());
+        cache.get(other);
+        assertEquals(cache.computed, 2);
+        assertEquals(cache.size(), 2);
+
+        cache.clear();
+        cache.get(Child.class);
+        assertEquals(cache.computed, 3);
+    }
+
+    @Test
+    public void classFieldsTest() {
+        ClassFields fields = ClassFields.of(Child.class);
+        assertSame(ClassFields.of(Child.class), fields);
+        assertTrue(fields.isAccessible());
+        assertEquals(names(fields.getReferenceFields()), "cache,name");
+        assertEquals(names(fields.getHashedFields()), "id,name,size");
+    }
+
+    private static String names(Field[] fields) {
+        StringBuilder sb = new StringBuilder();
+        for (Field field : fields) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(field.getName());
+        }
+        return sb.toString();
+    }
+}
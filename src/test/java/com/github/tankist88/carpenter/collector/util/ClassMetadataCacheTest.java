@@ -0,0 +1,81 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import com.github.tankist88.carpenter.core.dto.argument.GeneratedArgument;
+import com.github.tankist88.carpenter.core.dto.unit.method.MethodCallTraceInfo;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ClassMetadataCacheTest {
+    public static class Repository {
+        private String table;
+    }
+
+    public static class Service {
+        private Repository repository;
+
+        public String find() {
+            return null;
+        }
+
+        public void save(List<String> values) {
+        }
+    }
+
+    @Test
+    public void metadataTest() {
+        ClassMetadata metadata = ClassMetadataCache.getClassMetadata(Service.class);
+        assertSame(ClassMetadataCache.getClassMetadata(Service.class), metadata);
+        assertEquals(metadata.getClassName(), Service.class.getName());
+
+        MethodCallTraceInfo first = new MethodCallTraceInfo();
+        metadata.applyTo(first, Service.class);
+        MethodCallTraceInfo second = new MethodCallTraceInfo();
+        metadata.applyTo(second, Service.class);
+        assertEquals(first.getClassName(), Service.class.getName());
+        assertSame(first.getServiceFields(), second.getServiceFields());
+        assertSame(first.getClassHierarchy(), second.getClassHierarchy());
+        assertEquals(metadata.getServiceFieldsHashCode(Service.class), first.getServiceFields().hashCode());
+
+        GeneratedArgument argument = new GeneratedArgument(Service.class.getName(), null);
+        metadata.applyTo(argument);
+        assertEquals(argument.getNearestInstantAbleClass(), metadata.getNearestInstantAbleClass());
+    }
+
+    @Test
+    public void argGenericStringsTest() {
+        ClassMetadata metadata = ClassMetadataCache.getClassMetadata(Service.class);
+        Class[] types = new Class[] {List.class};
+        String[] genericStrings = metadata.getArgGenericStrings(Service.class, "save", types);
+        assertEquals(genericStrings.length, 1);
+        assertNotNull(genericStrings[0]);
+        assertSame(metadata.getArgGenericStrings(Service.class, "save", new Class[] {List.class}), genericStrings);
+
+        String[] notFound = metadata.getArgGenericStrings(Service.class, "missing", types);
+        assertNull(notFound[0]);
+        assertSame(metadata.getArgGenericStrings(Service.class, "missing", types), notFound);
+    }
+
+    @Test
+    public void classCanBeUnloadedTest() throws Exception {
+        URL classes = ClassMetadataCacheTest.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] {classes}, null);
+        Class clazz = loader.loadClass(Repository.class.getName());
+        assertNotSame(clazz, Repository.class);
+        ClassMetadataCache.getClassMetadata(clazz);
+
+        WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        clazz = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loaderRef.get());
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.testng.Assert.*;
+
+public class JoinPointMapTest {
+    public static class Service {
+    }
+
+    private static JoinPoint.StaticPart staticPart(Class clazz, String methodName) {
+        Factory factory = new Factory("Service.java", clazz);
+        return factory.makeSJP(
+                JoinPoint.METHOD_EXECUTION,
+                factory.makeMethodSig("1", methodName, clazz.getName(), "", "", "", "void"),
+                1);
+    }
+
+    @Test
+    public void identityTest() {
+        JoinPointMap<String> map = new JoinPointMap<String>();
+        JoinPoint.StaticPart find = staticPart(Service.class, "find");
+        JoinPoint.StaticPart sameSignature = staticPart(Service.class, "find");
+        assertNull(map.putIfAbsent(find, "first"));
+        assertEquals(map.putIfAbsent(find, "second"), "first");
+        assertEquals(map.get(find), "first");
+        assertNull(map.get(sameSignature));
+        assertNull(map.putIfAbsent(sameSignature, "second"));
+        assertEquals(map.size(), 2);
+        assertEquals(map.snapshot().get(sameSignature), "second");
+        map.clear();
+        assertNull(map.get(find));
+        assertEquals(map.size(), 0);
+    }
+
+    @Test
+    public void classCanBeUnloadedTest() throws Exception {
+        URL classes = JoinPointMapTest.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] {classes}, null);
+        Class clazz = loader.loadClass(Service.class.getName());
+        assertNotSame(clazz, Service.class);
+
+        JoinPointMap<String> map = new JoinPointMap<String>();
+        map.putIfAbsent(staticPart(clazz, "find"), "value");
+        assertEquals(map.size(), 1);
+
+        WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        clazz = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loaderRef.get());
+        assertEquals(map.size(), 0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.tankist88.carpenter.collector.util;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+public class ThreadSupportTest {
+    @Test
+    public void newThreadTest() throws InterruptedException {
+        final AtomicReference<String> key = new AtomicReference<String>();
+        Thread thread = ThreadSupport.newThread(new Runnable() {
+            @Override
+            public void run() {
+                key.set(ThreadSupport.threadKey(Thread.currentThread()));
+            }
+        }, "worker", true);
+        assertEquals(ThreadSupport.isVirtual(thread), ThreadSupport.isVirtualThreadsSupported());
+        assertTrue(thread.isDaemon());
+        thread.start();
+        thread.join(5000L);
+        if (ThreadSupport.isVirtualThreadsSupported()) {
+            assertEquals(key.get(), "virtual-" + thread.getId());
+        } else {
+            assertEquals(key.get(), "worker");
+        }
+    }
+
+    @Test
+    public void platformThreadKeyTest() {
+        Thread thread = ThreadSupport.newThread(null, "", false);
+        assertFalse(ThreadSupport.isVirtual(thread));
+        assertEquals(ThreadSupport.threadKey(thread), "thread-" + thread.getId());
+    }
+}